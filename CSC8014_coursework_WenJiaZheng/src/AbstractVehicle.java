@@ -1,17 +1,47 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Objects;
 
 /**
  * This class represents a vehicle in the Hire Management System.
  * Provides common vehicle properties and behaviour.
+ * The lifecycle state, mileage and inspection flag are packed into one versioned word and changed
+ * with compare-and-set, so the vehicle itself is never seen half-updated and telematics, the workshop
+ * and snapshot readers can read or move it without a lock.
+ * The word does not take hires off VehicleManager's lock: the manager still claims and returns
+ * vehicles inside its synchronized methods, because the renter index, hire history, analytics
+ * and snapshot change together with the state. Hires and returns therefore run one at a time.
  */
 
 public abstract class AbstractVehicle implements Vehicle {
+    // Layout of the state word: mileage in bits 0-31, state in bits 32-34,
+    // the inspection-due-on-return flag (only set while HIRED) in bit 35 and a version counter in bits 36-63
+    private static final long MILEAGE_MASK = 0xFFFF_FFFFL;
+    private static final int STATE_SHIFT = 32;
+    private static final long STATE_MASK = 0x7L;
+    private static final long INSPECTION_BIT = 1L << 35;
+    private static final int VERSION_SHIFT = 36;
+    private static final VarHandle WORD;
+
+    static {
+        try {
+            WORD = MethodHandles.lookup().findVarHandle(AbstractVehicle.class, "word", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final VehicleID id;
-    private int currentMileage;
-    private boolean hired;
+    // State, mileage and inspection flag change together with one compare-and-set
+    private volatile long word;
+    // The customer hiring this vehicle, kept by the manager; null while it is not hired
+    private String renterID;
+    // The manager whose fleet holds this vehicle, or null if it is in none
+    private volatile VehicleManager owner;
 
     /**
      * Constructs an abstract vehicle with the given ID.
+     * The vehicle starts AVAILABLE with no mileage.
      * @param id the unique identifier for this vehicle
      * @throws IllegalArgumentException if id is null
      */
@@ -21,8 +51,101 @@ public abstract class AbstractVehicle implements Vehicle {
             throw new IllegalArgumentException("Vehicle ID cannot be null");
         }
         this.id = id;
-        this.currentMileage = 0;
-        this.hired = false;
+        this.word = (long) VehicleState.AVAILABLE.ordinal() << STATE_SHIFT;
+    }
+
+    /**
+     * Returns the ID of the customer the manager has recorded as hiring this vehicle.
+     * Only called while the manager's lock is held.
+     * @return the renter's customer ID, or null if the vehicle is not hired
+     */
+    final String getRenterID() {
+        return renterID;
+    }
+
+    /**
+     * Records the customer hiring this vehicle. Only called while the manager's lock is held.
+     * @param renterID the renter's customer ID, or null when the vehicle is returned
+     */
+    final void setRenterID(String renterID) {
+        this.renterID = renterID;
+    }
+
+    /**
+     * Returns the manager whose fleet holds this vehicle.
+     * @return the manager, or null if the vehicle is in no fleet
+     */
+    final VehicleManager getOwner() {
+        return owner;
+    }
+
+    /**
+     * Records the manager whose fleet holds this vehicle, so changes made on the vehicle itself
+     * can go through it. Called once when the manager registers the vehicle.
+     * @param owner the manager
+     */
+    final void setOwner(VehicleManager owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Sets the state, mileage and inspection flag of a vehicle read back from a repository.
+     * Only for a vehicle no other thread can see yet.
+     * @param state the stored state
+     * @param mileage the stored mileage
+     * @param inspectionDue the stored inspection-due-on-return flag; only kept for a HIRED vehicle
+     * @throws IllegalArgumentException if mileage is negative
+     */
+    final void restore(VehicleState state, int mileage, boolean inspectionDue) {
+        if (mileage < 0) {
+            throw new IllegalArgumentException("Current mileage can not be negative");
+        }
+        word = next(word, state, inspectionDue && state == VehicleState.HIRED, mileage);
+    }
+
+    /**
+     * Builds the successor of a state word, bumping its version.
+     * @param w the current word
+     * @param state the new state
+     * @param inspection the new inspection-due flag
+     * @param mileage the new mileage
+     * @return the new word
+     */
+    private static long next(long w, VehicleState state, boolean inspection, int mileage) {
+        return (((w >>> VERSION_SHIFT) + 1) << VERSION_SHIFT)
+                | (inspection ? INSPECTION_BIT : 0)
+                | ((long) state.ordinal() << STATE_SHIFT)
+                | (mileage & MILEAGE_MASK);
+    }
+
+    /**
+     * Extracts the state from a state word.
+     * @param w the word
+     * @return the state
+     */
+    private static VehicleState stateOf(long w) {
+        return VehicleState.of((int) ((w >>> STATE_SHIFT) & STATE_MASK));
+    }
+
+    /**
+     * Extracts the mileage from a state word.
+     * @param w the word
+     * @return the mileage
+     */
+    private static int mileageOf(long w) {
+        return (int) (w & MILEAGE_MASK);
+    }
+
+    /**
+     * Returns the lower-case type of a vehicle, for use as a map key.
+     * Cars and vans get constants, so hot paths do not lower-case getVehicleType() on every call.
+     * @param v the vehicle
+     * @return "car", "van", or the lower-cased type of any other vehicle
+     */
+    static String typeKey(Vehicle v) {
+        if (v instanceof Car) return "car";
+        if (v instanceof Van) return "van";
+        return v.getVehicleType().toLowerCase();
     }
 
     /**
@@ -34,13 +157,115 @@ public abstract class AbstractVehicle implements Vehicle {
         return id;
     }
 
+    /**
+     * Returns the current lifecycle state.
+     * @return the VehicleState of this vehicle
+     */
+    @Override
+    public final VehicleState getState() {
+        return stateOf(word);
+    }
+
+    /**
+     * Returns the number of changes made to this vehicle's state, mileage or inspection flag.
+     * The counter wraps around after 2^28 changes.
+     * @return the state version
+     */
+    public final int getStateVersion() {
+        return (int) (word >>> VERSION_SHIFT);
+    }
+
+    /**
+     * Moves the vehicle from one state to another, if it is still in the expected state.
+     * @param expected the state the vehicle must be in
+     * @param next the new state
+     * @return true if the transition was made, false if the vehicle was not in the expected state
+     * @throws IllegalStateException if the transition is not allowed
+     */
+    @Override
+    public final boolean transition(VehicleState expected, VehicleState next) {
+        if (!expected.canBecome(next)) {
+            throw new IllegalStateException("A vehicle can not go from " + expected + " to " + next);
+        }
+        while (true) {
+            long w = word;
+            if (stateOf(w) != expected) return false;
+            // The inspection flag only applies during a hire
+            if (WORD.compareAndSet(this, w, next(w, next, false, mileageOf(w)))) return true;
+        }
+    }
+
+    /**
+     * Claims an available vehicle for a hire.
+     * @return true if the vehicle was AVAILABLE and is now HIRED, false otherwise
+     */
+    @Override
+    public final boolean tryHire() {
+        return transition(VehicleState.AVAILABLE, VehicleState.HIRED);
+    }
+
+    /**
+     * Ends a hire and adds the miles driven, in one step. The vehicle becomes AWAITING_INSPECTION
+     * if an inspection was required during the hire, and AVAILABLE otherwise.
+     * @param addedMileage the miles driven during the hire
+     * @return true if the vehicle was HIRED and has been returned, false otherwise
+     * @throws IllegalArgumentException if addedMileage is negative
+     */
+    @Override
+    public final boolean tryReturn(int addedMileage) {
+        if (addedMileage < 0) {
+            throw new IllegalArgumentException("Mileage can not be negative");
+        }
+        while (true) {
+            long w = word;
+            if (stateOf(w) != VehicleState.HIRED) return false;
+            boolean inspection = (w & INSPECTION_BIT) != 0;
+            VehicleState next = inspection ? VehicleState.AWAITING_INSPECTION : VehicleState.AVAILABLE;
+            int mileage = (int) Math.min(Integer.MAX_VALUE, (long) mileageOf(w) + addedMileage);
+            if (WORD.compareAndSet(this, w, next(w, next, false, mileage))) return true;
+        }
+    }
+
+    /**
+     * Indicates whether an inspection is required, either on return or before the next hire.
+     * @return true if an inspection is due or awaited, false otherwise
+     */
+    protected final boolean isInspectionDue() {
+        long w = word;
+        return (w & INSPECTION_BIT) != 0 || stateOf(w) == VehicleState.AWAITING_INSPECTION;
+    }
+
+    /**
+     * Sets or clears the inspection requirement. During a hire this marks the vehicle for inspection
+     * on return. Setting it on a free vehicle moves the vehicle to AWAITING_INSPECTION; clearing it on
+     * a vehicle awaiting inspection makes it AVAILABLE. Vehicles in service or retired are unchanged.
+     * @param due true if an inspection is required, false otherwise
+     */
+    protected final void setInspectionDue(boolean due) {
+        while (true) {
+            long w = word;
+            VehicleState state = stateOf(w);
+            boolean flag = false;
+            if (state == VehicleState.HIRED) {
+                flag = due;
+            } else if (due && state == VehicleState.AVAILABLE) {
+                state = VehicleState.AWAITING_INSPECTION;
+            } else if (!due && state == VehicleState.AWAITING_INSPECTION) {
+                state = VehicleState.AVAILABLE;
+            } else {
+                return;
+            }
+            if (WORD.compareAndSet(this, w, next(w, state, flag, mileageOf(w)))) return;
+        }
+    }
+
     /**
      * Returns the current mileage since the last service.
      * @return the current mileage in miles
      */
     @Override
     public final int getCurrentMileage() {
-        return currentMileage;
+        return mileageOf(word);
     }
 
     /**
@@ -54,7 +279,10 @@ public abstract class AbstractVehicle implements Vehicle {
         if (currentMileage < 0) {
             throw new IllegalArgumentException("Current mileage can not be negative");
         }
-        this.currentMileage = currentMileage;
+        while (true) {
+            long w = word;
+            if (WORD.compareAndSet(this, w, next(w, stateOf(w), (w & INSPECTION_BIT) != 0, currentMileage))) return;
+        }
     }
 
     /**
@@ -63,16 +291,21 @@ public abstract class AbstractVehicle implements Vehicle {
      */
     @Override
     public final boolean isHired() {
-        return hired;
+        return getState() == VehicleState.HIRED;
     }
 
     /**
      * Sets the hire status of this vehicle.
-     * @param hired true if the vehicle is hired, false otherwise
+     * @param hired true to hire an AVAILABLE vehicle, false to return a HIRED one
+     * @throws IllegalStateException if the vehicle is not in the required state
      */
     @Override
     public void setHired(boolean hired){
-        this.hired = hired;
+        boolean changed = hired ? tryHire() : tryReturn(0);
+        if (!changed) {
+            throw new IllegalStateException("Vehicle " + id + " can not be " + (hired ? "hired" : "returned")
+                    + " while " + getState());
+        }
     }
 
     /**
@@ -83,16 +316,17 @@ public abstract class AbstractVehicle implements Vehicle {
     @Override
     public final boolean performServiceIfDue(){
         // Check if mileage has reached the service threshold
-        if (this.currentMileage >= getDistanceRequirement()) {
-            this.currentMileage = 0;
-            return true;
+        while (true) {
+            long w = word;
+            if (mileageOf(w) < getDistanceRequirement()) return false;
+            if (WORD.compareAndSet(this, w, next(w, stateOf(w), (w & INSPECTION_BIT) != 0, 0))) return true;
         }
-        return false;
     }
 
     /**
      * Compares this vehicle with another object.
-     * Two vehicles are equal if they have the same vehicle ID.
+     * Two vehicles are equal if they have the same vehicle ID, so a vehicle is also equal
+     * to a snapshot view of it.
      * @param obj the object to compare with
      * @return true if equal, false otherwise
      */
@@ -100,11 +334,11 @@ public abstract class AbstractVehicle implements Vehicle {
     public boolean equals(Object obj) {
         if (this == obj)
             return true;
-        if (!(obj instanceof AbstractVehicle))
+        if (!(obj instanceof Vehicle))
             return false;
 
-        AbstractVehicle other = (AbstractVehicle) obj;
-        return Objects.equals(this.id, other.id);
+        Vehicle other = (Vehicle) obj;
+        return Objects.equals(this.id, other.getVehicleID());
 }
 
     /**
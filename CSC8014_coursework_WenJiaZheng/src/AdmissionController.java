@@ -0,0 +1,207 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class limits the request rate of each client and each customer with token buckets.
+ * Each bucket is a single atomic "theoretical arrival time" (the generic cell rate algorithm):
+ * a request is admitted if the bucket would not overflow and the time is advanced by one
+ * token's worth with a compare-and-set. Admission therefore never locks, and a rejected request
+ * costs one map lookup and one atomic read.
+ * A bucket that has refilled completely behaves exactly like a new one, so such idle buckets are
+ * evicted whenever the bucket count has doubled since the last sweep; memory follows the number of
+ * recently active clients and customers rather than every one ever seen.
+ */
+public final class AdmissionController {
+    // Buckets kept before the first sweep
+    private static final int MIN_SWEEP_SIZE = 1024;
+    // Set on a bucket being evicted, so a late taker fetches a new one instead of using it
+    private static final long EVICTED = Long.MAX_VALUE;
+
+    private final long clientInterval;
+    private final long clientTolerance;
+    private final long customerInterval;
+    private final long customerTolerance;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, AtomicLong> clientBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> customerBuckets = new ConcurrentHashMap<>();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedClients = new LongAdder();
+    private final LongAdder rejectedCustomers = new LongAdder();
+    // The bucket count that triggers the next sweep, and whether a sweep is running
+    private volatile int sweepAt = MIN_SWEEP_SIZE;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * Constructs an admission controller using the system clock.
+     * @param clientRate the sustained requests per second allowed for each client
+     * @param clientBurst the number of requests a client can make at once
+     * @param customerRate the sustained requests per second allowed for each customer
+     * @param customerBurst the number of requests a customer can make at once
+     * @throws IllegalArgumentException if a rate or burst is not positive
+     */
+    public AdmissionController(double clientRate, int clientBurst, double customerRate, int customerBurst) {
+        this(clientRate, clientBurst, customerRate, customerBurst, System::nanoTime);
+    }
+
+    /**
+     * Constructs an admission controller.
+     * @param clientRate the sustained requests per second allowed for each client
+     * @param clientBurst the number of requests a client can make at once
+     * @param customerRate the sustained requests per second allowed for each customer
+     * @param customerBurst the number of requests a customer can make at once
+     * @param clock the source of the current time in nanoseconds
+     * @throws IllegalArgumentException if a rate or burst is not positive
+     */
+    AdmissionController(double clientRate, int clientBurst, double customerRate, int customerBurst,
+                        LongSupplier clock) {
+        if (!(clientRate > 0) || !(customerRate > 0) || clientBurst <= 0 || customerBurst <= 0) {
+            throw new IllegalArgumentException("Rates and bursts must be positive");
+        }
+        clientInterval = Math.max(1, (long) (1e9 / clientRate));
+        clientTolerance = clientInterval * (clientBurst - 1);
+        customerInterval = Math.max(1, (long) (1e9 / customerRate));
+        customerTolerance = customerInterval * (customerBurst - 1);
+        this.clock = clock;
+    }
+
+    /**
+     * Takes a token from a key's bucket if one is available.
+     * @param buckets the client or customer buckets
+     * @param key the client or customer ID
+     * @param now the current time in nanoseconds
+     * @param interval the time one token takes to refill
+     * @param tolerance how far ahead of now the arrival time may run
+     * @return true if a token was taken, false otherwise
+     */
+    private boolean tryTake(ConcurrentHashMap<String, AtomicLong> buckets, String key, long now,
+                            long interval, long tolerance) {
+        AtomicLong bucket = bucket(buckets, key, now);
+        while (true) {
+            long tat = bucket.get();
+            if (tat == EVICTED) {
+                // Evicted while full: its replacement starts full too
+                buckets.remove(key, bucket);
+                bucket = bucket(buckets, key, now);
+                continue;
+            }
+            long start = Math.max(tat, now);
+            if (start - now > tolerance) return false;
+            if (bucket.compareAndSet(tat, start + interval)) return true;
+        }
+    }
+
+    /**
+     * Returns the bucket for a key, creating a full bucket if there is none.
+     * Creating one may start a sweep of idle buckets.
+     * @param buckets the client or customer buckets
+     * @param key the client or customer ID
+     * @param now the current time in nanoseconds
+     * @return the bucket
+     */
+    private AtomicLong bucket(ConcurrentHashMap<String, AtomicLong> buckets, String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) return bucket;
+        bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE / 2));
+        if (clientBuckets.size() + customerBuckets.size() >= sweepAt) {
+            sweep(now);
+        }
+        return bucket;
+    }
+
+    /**
+     * Evicts the buckets that have refilled completely, unless another thread is already sweeping.
+     * The next sweep starts when the bucket count has doubled from what is left.
+     * @param now the current time in nanoseconds
+     */
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) return;
+        try {
+            evictIdle(clientBuckets, now);
+            evictIdle(customerBuckets, now);
+            sweepAt = Math.max(MIN_SWEEP_SIZE, 2 * (clientBuckets.size() + customerBuckets.size()));
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * Removes the full buckets of one map. A bucket is marked evicted first, so a request that
+     * already holds it takes its token from a new bucket rather than one no longer in the map.
+     * @param buckets the client or customer buckets
+     * @param now the current time in nanoseconds
+     */
+    private static void evictIdle(ConcurrentHashMap<String, AtomicLong> buckets, long now) {
+        for (Map.Entry<String, AtomicLong> e : buckets.entrySet()) {
+            AtomicLong bucket = e.getValue();
+            long tat = bucket.get();
+            if (tat <= now && bucket.compareAndSet(tat, EVICTED)) {
+                buckets.remove(e.getKey(), bucket);
+            }
+        }
+    }
+
+    /**
+     * Evicts every bucket that has refilled completely. Sweeps also run on their own as buckets are added.
+     */
+    public void evictIdle() {
+        sweep(clock.getAsLong());
+    }
+
+    /**
+     * Returns the number of client and customer buckets held.
+     * @return the bucket count
+     */
+    public int getBucketCount() {
+        return clientBuckets.size() + customerBuckets.size();
+    }
+
+    /**
+     * Decides whether to admit a request. The client's limit is checked first, so a client
+     * flooding requests for many customers is stopped without using up those customers' tokens.
+     * @param clientID the calling client, or null if unknown
+     * @param customerID the customer the request is for, or null if there is none
+     * @return true if the request may proceed, false if it must be rejected
+     */
+    public boolean tryAdmit(String clientID, String customerID) {
+        long now = clock.getAsLong();
+        if (clientID != null && !tryTake(clientBuckets, clientID, now, clientInterval, clientTolerance)) {
+            rejectedClients.increment();
+            return false;
+        }
+        if (customerID != null
+                && !tryTake(customerBuckets, customerID, now, customerInterval, customerTolerance)) {
+            rejectedCustomers.increment();
+            return false;
+        }
+        admitted.increment();
+        return true;
+    }
+
+    /**
+     * Returns the number of admitted requests.
+     * @return the admitted count
+     */
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    /**
+     * Returns the number of requests rejected by a client limit.
+     * @return the client rejection count
+     */
+    public long getRejectedByClient() {
+        return rejectedClients.sum();
+    }
+
+    /**
+     * Returns the number of requests rejected by a customer limit.
+     * @return the customer rejection count
+     */
+    public long getRejectedByCustomer() {
+        return rejectedCustomers.sum();
+    }
+}
@@ -0,0 +1,258 @@
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs VehicleManager operations on a bounded pool of threads and returns CompletableFutures,
+ * so callers can pipeline many requests without blocking.
+ * At most a fixed number of requests may be pending; further requests fail at once with a
+ * RejectedExecutionException instead of queueing without limit.
+ * In single-writer mode requests are split into shards by customer, and each shard runs its requests
+ * one at a time in submission order, so a customer's pipelined hire and return can not overtake each
+ * other. Each shard is a lock-free queue that is scheduled on the pool only while it has work.
+ * Single-writer mode gives ordering, not parallel writes: every operation still takes the manager's
+ * lock, so in either mode the pool threads mainly keep callers from blocking.
+ */
+public final class AsyncVehicleManager implements AutoCloseable {
+    // Requests a shard runs before yielding its thread to other shards
+    private static final int SHARD_BATCH = 64;
+
+    private final VehicleManager manager;
+    private final ThreadPoolExecutor pool;
+    private final Shard[] shards;
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger();
+    // Notified when the last pending request finishes after close
+    private final Object drained = new Object();
+    private volatile boolean closed;
+
+    /**
+     * The requests of one shard, run in order.
+     */
+    private final class Shard implements Runnable {
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Queues a request, scheduling the shard if it is idle.
+         * @param task the request
+         * @throws RejectedExecutionException if the pool refused the shard; the request is not queued
+         */
+        private void submit(Runnable task) {
+            tasks.offer(task);
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    pool.execute(this);
+                } catch (RejectedExecutionException e) {
+                    tasks.remove(task);
+                    scheduled.set(false);
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Runs a batch of queued requests, then reschedules the shard if more arrived.
+         */
+        @Override
+        public void run() {
+            Runnable task;
+            for (int i = 0; i < SHARD_BATCH && (task = tasks.poll()) != null; i++) {
+                task.run();
+            }
+            // Clear the flag before checking again, so a request queued now is never stranded
+            scheduled.set(false);
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                pool.execute(this);
+            }
+        }
+    }
+
+    /**
+     * Constructs an asynchronous facade over a manager.
+     * @param manager the manager to run operations on
+     * @param threads the number of pool threads
+     * @param maxPending the maximum number of requests submitted but not yet finished
+     * @param singleWriter true to run each customer's requests one at a time in submission order
+     * @throws IllegalArgumentException if manager is null, or threads or maxPending is not positive
+     */
+    public AsyncVehicleManager(VehicleManager manager, int threads, int maxPending, boolean singleWriter) {
+        if (manager == null) {
+            throw new IllegalArgumentException("Vehicle manager can not be null");
+        }
+        if (threads <= 0 || maxPending <= 0) {
+            throw new IllegalArgumentException("Threads and pending limit must be positive");
+        }
+        this.manager = manager;
+        this.maxPending = maxPending;
+        // The pending limit bounds the pool's queue: at most one task per request or per shard
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "vehicle-manager-async");
+                    t.setDaemon(true);
+                    return t;
+                });
+        if (singleWriter) {
+            shards = new Shard[threads * 4];
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = new Shard();
+            }
+        } else {
+            shards = null;
+        }
+    }
+
+    /**
+     * Returns the manager the operations run on.
+     * @return the VehicleManager
+     */
+    public VehicleManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Indicates whether each customer's requests run one at a time in submission order.
+     * @return true in single-writer mode, false otherwise
+     */
+    public boolean isSingleWriter() {
+        return shards != null;
+    }
+
+    /**
+     * Returns the number of requests submitted but not yet finished.
+     * @return the pending count
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Hires a vehicle asynchronously.
+     * @param customerRecord the customer requesting the hire
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @param duration the rental duration in days
+     * @return a future completed with true if the hire succeeded, false otherwise
+     */
+    public CompletableFuture<Boolean> hireVehicleAsync(CustomerRecord customerRecord, String vehicleType,
+                                                       int duration) {
+        return submit(customerRecord.getCustomerID(),
+                () -> manager.hireVehicle(customerRecord, vehicleType, duration));
+    }
+
+    /**
+     * Returns a vehicle asynchronously.
+     * @param vehicleID the ID of the vehicle being returned
+     * @param customerRecord the customer returning the vehicle
+     * @param mileage the additional mileage
+     * @return a future completed with true if the vehicle was hired by the customer and has been returned,
+     *         false otherwise
+     */
+    public CompletableFuture<Boolean> returnVehicleAsync(VehicleID vehicleID, CustomerRecord customerRecord,
+                                                         int mileage) {
+        return submit(customerRecord.getCustomerID(),
+                () -> manager.returnHiredVehicle(vehicleID, customerRecord, mileage));
+    }
+
+    /**
+     * Adds a customer record asynchronously. In single-writer mode requests are sharded by name,
+     * so two requests for the same person run in order and the second fails as a duplicate.
+     * @param firstName the customer's first name
+     * @param lastName the customer's last name
+     * @param dob the date of birth
+     * @param hasCommercialLicense whether the customer has a commercial license
+     * @return a future completed with the new CustomerRecord, or failed with an IllegalArgumentException
+     *         if the customer already exists
+     */
+    public CompletableFuture<CustomerRecord> addCustomerRecordAsync(String firstName, String lastName, Date dob,
+                                                                    Boolean hasCommercialLicense) {
+        return submit(firstName + " " + lastName,
+                () -> manager.addCustomerRecord(firstName, lastName, dob, hasCommercialLicense));
+    }
+
+    /**
+     * Runs an operation on the pool, in its shard's order in single-writer mode.
+     * @param key the shard key
+     * @param operation the operation
+     * @param <T> the result type
+     * @return a future completed with the operation's result or exception
+     */
+    private <T> CompletableFuture<T> submit(String key, Callable<T> operation) {
+        // Counted before the closed check, so close() waits for any request that gets past it
+        if (pending.incrementAndGet() > maxPending) {
+            finished();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many pending requests"));
+        }
+        if (closed) {
+            finished();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Async manager is closed"));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            T result = null;
+            Throwable failure = null;
+            try {
+                result = operation.call();
+            } catch (Throwable t) {
+                failure = t;
+            }
+            finished();
+            if (failure == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        };
+        try {
+            if (shards == null) {
+                pool.execute(task);
+            } else {
+                shards[Math.floorMod(key.hashCode(), shards.length)].submit(task);
+            }
+        } catch (RejectedExecutionException e) {
+            finished();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Counts a request as finished, waking close() when it was the last one.
+     */
+    private void finished() {
+        if (pending.decrementAndGet() == 0 && closed) {
+            synchronized (drained) {
+                drained.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting requests and waits for those already submitted to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        // Shards still reschedule themselves until drained, so wait for the pending count first
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try {
+            synchronized (drained) {
+                long left;
+                while (pending.get() > 0 && (left = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(drained, left);
+                }
+            }
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            pool.shutdown();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.Date;
+import java.util.function.IntFunction;
+
+/**
+ * This class finds customers by name and date of birth, for duplicate checks.
+ * Each customer is kept as a 64-bit hash of its name and date of birth, with its customer number,
+ * in open-addressed primitive arrays that are at most half full: 24 to 48 bytes per customer and no objects.
+ * A matching hash is confirmed against the stored record, so a collision never rejects a new customer.
+ * Only the manager's thread adds to or searches the index.
+ */
+final class CustomerKeyIndex {
+    // Marks an empty slot; hashes of real customers are never 0
+    private static final long EMPTY = 0L;
+
+    private final IntFunction<CustomerRecord> lookup;
+    private long[] hashes = new long[1024];
+    private int[] numbers = new int[1024];
+    private int size;
+
+    /**
+     * Constructs an empty index.
+     * @param lookup finds a customer record by customer number
+     */
+    CustomerKeyIndex(IntFunction<CustomerRecord> lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * Hashes a name and date of birth.
+     * @param name the customer's name
+     * @param dob the date of birth
+     * @return a non-zero 64-bit hash
+     */
+    private static long hash(Name name, Date dob) {
+        long h = name.getFirstName().hashCode() * 0x9E3779B97F4A7C15L;
+        h = (h ^ name.getLastName().hashCode()) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ dob.getTime()) * 0x165667B19E3779F9L;
+        h ^= h >>> 32;
+        return h == EMPTY ? 1 : h;
+    }
+
+    /**
+     * Indicates whether a customer with the given name and date of birth is indexed.
+     * @param name the customer's name
+     * @param dob the date of birth
+     * @return true if such a customer exists, false otherwise
+     */
+    boolean contains(Name name, Date dob) {
+        long h = hash(name, dob);
+        int mask = hashes.length - 1;
+        for (int i = (int) h & mask; hashes[i] != EMPTY; i = (i + 1) & mask) {
+            if (hashes[i] == h) {
+                CustomerRecord c = lookup.apply(numbers[i]);
+                if (c != null && c.getName().equals(name) && c.getDateOfBirth().equals(dob)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a customer, growing the arrays when they are half full.
+     * @param customer the customer to add
+     */
+    void add(CustomerRecord customer) {
+        if (size * 2 >= hashes.length) {
+            long[] oldHashes = hashes;
+            int[] oldNumbers = numbers;
+            hashes = new long[oldHashes.length * 2];
+            numbers = new int[oldNumbers.length * 2];
+            for (int i = 0; i < oldHashes.length; i++) {
+                if (oldHashes[i] != EMPTY) insert(oldHashes[i], oldNumbers[i]);
+            }
+        }
+        insert(hash(customer.getName(), customer.getDateOfBirth()),
+                HireHistory.customerNumber(customer.getCustomerID()));
+        size++;
+    }
+
+    /**
+     * Stores a hash and customer number in the first free slot.
+     * @param h the hash
+     * @param number the customer number
+     */
+    private void insert(long h, int number) {
+        int mask = hashes.length - 1;
+        int i = (int) h & mask;
+        while (hashes[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        hashes[i] = h;
+        numbers[i] = number;
+    }
+}
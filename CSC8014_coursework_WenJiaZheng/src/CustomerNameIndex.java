@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * This class indexes customers by first and last name for case-insensitive prefix search.
+ * Each distinct lower-case name is kept once in a sorted map, with the numbers of the customers
+ * who have it in a growing int array, so a prefix search is a range lookup that reads only the
+ * requested page. A customer costs four bytes per index beyond the names themselves, which are
+ * shared by everyone with the same name.
+ * Records are fetched from the customer store for each page, so the index does not keep them on the heap.
+ * Reads need no lock while customers are being added.
+ */
+public final class CustomerNameIndex {
+    private final NavigableMap<String, Numbers> byFirstName = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, Numbers> byLastName = new ConcurrentSkipListMap<>();
+    private final Function<String, CustomerRecord> lookup;
+
+    /**
+     * The customer numbers sharing one name, in the order they were added.
+     * Only one thread appends at a time; readers see a prefix of the numbers without locking.
+     */
+    private static final class Numbers {
+        private volatile int[] numbers = new int[1];
+        // Published after the number it counts has been stored
+        private volatile int size;
+
+        /**
+         * Appends a customer number.
+         * @param number the customer number
+         */
+        private void add(int number) {
+            int[] current = numbers;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+                current[size] = number;
+                numbers = current;
+            } else {
+                current[size] = number;
+            }
+            size++;
+        }
+    }
+
+    /**
+     * Walks the customer numbers of a range of names, in name and then customer number order.
+     */
+    private static final class Cursor {
+        private final Iterator<Map.Entry<String, Numbers>> names;
+        private String name;
+        private int[] numbers;
+        private int size;
+        private int next;
+
+        /**
+         * Positions a cursor on the first match.
+         * @param range the matching names
+         */
+        private Cursor(NavigableMap<String, Numbers> range) {
+            this.names = range.entrySet().iterator();
+            advance();
+        }
+
+        /**
+         * Moves to the next customer number, or past the end.
+         */
+        private void advance() {
+            next++;
+            while (next >= size && names.hasNext()) {
+                Map.Entry<String, Numbers> e = names.next();
+                // Read the size first: the array read after it holds at least that many numbers
+                size = e.getValue().size;
+                numbers = e.getValue().numbers;
+                name = e.getKey();
+                next = 0;
+            }
+        }
+
+        /**
+         * Indicates whether the cursor is on a match.
+         * @return true if there is a current match, false at the end
+         */
+        private boolean hasCurrent() {
+            return next < size;
+        }
+
+        /**
+         * Returns the current customer number.
+         * @return the customer number
+         */
+        private int current() {
+            return numbers[next];
+        }
+
+        /**
+         * Compares the positions of two cursors.
+         * @param other the other cursor
+         * @return negative, zero or positive as this cursor's match sorts before, with or after the other's
+         */
+        private int compareTo(Cursor other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : Integer.compare(current(), other.current());
+        }
+    }
+
+    /**
+     * Constructs an empty index.
+     * @param lookup finds a customer record by customer ID
+     */
+    CustomerNameIndex(Function<String, CustomerRecord> lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * Adds a customer to the index. Called by one thread at a time.
+     * @param customer the customer to add
+     */
+    void add(CustomerRecord customer) {
+        Name name = customer.getName();
+        int number = HireHistory.customerNumber(customer.getCustomerID());
+        byFirstName.computeIfAbsent(name.getFirstName().toLowerCase(), k -> new Numbers()).add(number);
+        byLastName.computeIfAbsent(name.getLastName().toLowerCase(), k -> new Numbers()).add(number);
+    }
+
+    /**
+     * Returns the number of distinct first and last names held.
+     * @return the name count
+     */
+    int nameCount() {
+        return byFirstName.size() + byLastName.size();
+    }
+
+    /**
+     * Returns the names that start with the given prefix.
+     * @param index the first-name or last-name index
+     * @param prefix the prefix to match
+     * @return the matching range of the index
+     */
+    private static NavigableMap<String, Numbers> range(NavigableMap<String, Numbers> index, String prefix) {
+        String from = prefix.toLowerCase();
+        return index.subMap(from, true, from + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Finds customers whose first name starts with the prefix, ordered by first name.
+     * @param prefix the prefix to match, ignoring case
+     * @param offset the number of matches to skip
+     * @param limit the maximum number of matches to return
+     * @return one page of matching customers
+     * @throws IllegalArgumentException if prefix is null, offset is negative or limit is not positive
+     */
+    public List<CustomerRecord> findByFirstName(String prefix, int offset, int limit) {
+        checkPage(prefix, offset, limit);
+        return page(new Cursor(range(byFirstName, prefix)), offset, limit);
+    }
+
+    /**
+     * Finds customers whose last name starts with the prefix, ordered by last name.
+     * @param prefix the prefix to match, ignoring case
+     * @param offset the number of matches to skip
+     * @param limit the maximum number of matches to return
+     * @return one page of matching customers
+     * @throws IllegalArgumentException if prefix is null, offset is negative or limit is not positive
+     */
+    public List<CustomerRecord> findByLastName(String prefix, int offset, int limit) {
+        checkPage(prefix, offset, limit);
+        return page(new Cursor(range(byLastName, prefix)), offset, limit);
+    }
+
+    /**
+     * Finds customers whose first or last name starts with the prefix.
+     * Results are ordered by the matching name; a customer matching both names appears once.
+     * @param prefix the prefix to match, ignoring case
+     * @param offset the number of matches to skip
+     * @param limit the maximum number of matches to return
+     * @return one page of matching customers
+     * @throws IllegalArgumentException if prefix is null, offset is negative or limit is not positive
+     */
+    public List<CustomerRecord> find(String prefix, int offset, int limit) {
+        checkPage(prefix, offset, limit);
+        Cursor first = new Cursor(range(byFirstName, prefix));
+        Cursor last = new Cursor(range(byLastName, prefix));
+
+        // Merge the two sorted ranges, skipping customers already seen
+        List<CustomerRecord> result = new ArrayList<>(limit);
+        Set<Integer> seen = new HashSet<>();
+        int skipped = 0;
+        while ((first.hasCurrent() || last.hasCurrent()) && result.size() < limit) {
+            Cursor from = !last.hasCurrent() || (first.hasCurrent() && first.compareTo(last) <= 0) ? first : last;
+            int next = from.current();
+            from.advance();
+            if (!seen.add(next)) continue;
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(lookup.apply("Customer" + next));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collects one page from a cursor.
+     * @param matches the cursor over matching customers
+     * @param offset the number of matches to skip
+     * @param limit the maximum number of matches to return
+     * @return the page
+     */
+    private List<CustomerRecord> page(Cursor matches, int offset, int limit) {
+        for (int i = 0; i < offset && matches.hasCurrent(); i++) {
+            matches.advance();
+        }
+        List<CustomerRecord> result = new ArrayList<>(limit);
+        while (matches.hasCurrent() && result.size() < limit) {
+            result.add(lookup.apply("Customer" + matches.current()));
+            matches.advance();
+        }
+        return result;
+    }
+
+    /**
+     * Validates search arguments.
+     * @param prefix the prefix to match
+     * @param offset the number of matches to skip
+     * @param limit the maximum number of matches to return
+     * @throws IllegalArgumentException if prefix is null, offset is negative or limit is not positive
+     */
+    private static void checkPage(String prefix, int offset, int limit) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Search prefix can not be null");
+        }
+        if (offset < 0 || limit <= 0) {
+            throw new IllegalArgumentException("Offset can not be negative and limit must be positive");
+        }
+    }
+}
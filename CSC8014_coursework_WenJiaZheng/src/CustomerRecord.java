@@ -1,3 +1,4 @@
+import java.util.Calendar;
 import java.util.Date;
 
 /**
@@ -8,6 +9,7 @@ import java.util.Date;
 public final class CustomerRecord {
     private final Name name;
     private final Date birthDate;
+    private final int birthYear;
     private final boolean commercialLicense;
     private final String customerID;
 
@@ -33,6 +35,9 @@ public final class CustomerRecord {
         this.name = name;
         // Defensive copy of date to preserve immutability
         this.birthDate = new Date(dob.getTime());
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(birthDate);
+        this.birthYear = cal.get(Calendar.YEAR);
         this.commercialLicense = commLicense;
         this.customerID = ID;
     }
@@ -53,6 +58,14 @@ public final class CustomerRecord {
         return new Date(birthDate.getTime());
     }
 
+    /**
+     * Returns the customer's year of birth, without copying the date of birth.
+     * @return the year of birth
+     */
+    public int getBirthYear() {
+        return birthYear;
+    }
+
     /**
      * Indicates whether the customer has a commercial license.
      * @return true if the customer has a commercial license, false otherwise
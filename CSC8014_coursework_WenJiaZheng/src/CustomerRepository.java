@@ -0,0 +1,47 @@
+import java.util.Collection;
+
+/**
+ * Storage for the customer records of a VehicleManager.
+ * Records are never changed or removed, and customer IDs are issued in sequence
+ * ("Customer1", "Customer2", ...), so repositories may rely on both.
+ * Lookups can be made from any thread; additions are made while the manager's lock is held.
+ * Customers a persistent repository already holds are indexed by the manager when it is constructed.
+ */
+public interface CustomerRepository {
+
+    /**
+     * Stores a new customer record. The manager calls this before changing anything else,
+     * so a repository may fail here, but must then be left as it was.
+     * @param customer the record, whose ID is the next in sequence
+     */
+    void add(CustomerRecord customer);
+
+    /**
+     * Finds a customer record by ID.
+     * @param customerID the customer ID
+     * @return the record, or null if there is none
+     */
+    CustomerRecord find(String customerID);
+
+    /**
+     * Returns the number of stored customers.
+     * @return the customer count
+     */
+    int size();
+
+    /**
+     * Returns the customers stored so far, in the order they were added.
+     * Later additions do not appear in the returned collection.
+     * @return an unmodifiable point-in-time collection of customers
+     */
+    Collection<CustomerRecord> snapshot();
+
+    /**
+     * Indicates whether snapshot() returns a view rather than a copy, so it is cheap enough to call
+     * after every change. Repositories that copy keep the default.
+     * @return true if snapshot() takes constant time, false otherwise
+     */
+    default boolean hasSnapshotView() {
+        return false;
+    }
+}
@@ -0,0 +1,345 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This class stores customer records in a local append-only file, with a bounded LRU cache in front.
+ * Only the file offset of each record (8 bytes) and the cached records are kept on the heap.
+ * The cache is bounded by an estimate of the records' size in bytes, and its hit rate is tracked.
+ *
+ * Records are never changed or removed, and IDs must be the sequential IDs VehicleManager generates
+ * ("Customer1", "Customer2", ...), which lets a record's offset be found by position instead of
+ * through a hash map. Each record is stored after its length, so reopening the file finds the
+ * records again with one scan; a record cut short by a crash is dropped.
+ */
+public final class DiskCustomerStore implements CustomerRepository, Closeable {
+    private static final String ID_PREFIX = "Customer";
+    // Rough heap cost of a cached record beyond its encoded bytes (objects, Date, map entry)
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final FileChannel channel;
+    private final long maxCacheBytes;
+    private final LinkedHashMap<String, CustomerRecord> cache;
+    private long cachedBytes;
+    // Where each record's bytes start, after its length
+    private long[] offsets = new long[1024];
+    private volatile int count;
+    private long end;
+    private long hits;
+    private long misses;
+
+    /**
+     * Opens a store, keeping the records already in the file.
+     * @param file the data file, which is created if it does not exist
+     * @param maxCacheBytes the approximate heap budget for cached records, in bytes
+     * @throws IOException if the file can not be opened or read
+     * @throws IllegalArgumentException if maxCacheBytes is negative
+     */
+    public DiskCustomerStore(Path file, long maxCacheBytes) throws IOException {
+        if (maxCacheBytes < 0) {
+            throw new IllegalArgumentException("Cache size can not be negative");
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.maxCacheBytes = maxCacheBytes;
+        // Access order makes the first entry the least recently used
+        this.cache = new LinkedHashMap<>(256, 0.75f, true);
+        try {
+            scan();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the records already in the file and drops a last record that was not fully written.
+     * @throws IOException if the file can not be read
+     */
+    private void scan() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        long position = 0;
+        while (position + Integer.BYTES <= size) {
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.read(header, position + header.position());
+            }
+            int length = header.getInt(0);
+            long next = position + Integer.BYTES + length;
+            if (length <= 0 || next > size) break;
+            append(position + Integer.BYTES);
+            position = next;
+        }
+        end = position;
+        if (end < size) {
+            channel.truncate(end);
+        }
+    }
+
+    /**
+     * Records the offset of a new last record.
+     * @param offset where the record's bytes start
+     */
+    private void append(long offset) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        offsets[count] = offset;
+        count++;
+    }
+
+    /**
+     * Returns the number of bytes a record takes after its length.
+     * @param index the record index
+     * @return the encoded length
+     */
+    private int length(int index) {
+        long next = index + 1 < count ? offsets[index + 1] - Integer.BYTES : end;
+        return (int) (next - offsets[index]);
+    }
+
+    /**
+     * Returns the position of a customer ID in the file, or -1 if it is not a stored ID.
+     * @param id the customer ID
+     * @return the record index, or -1
+     */
+    private int indexOf(String id) {
+        if (id == null || !id.startsWith(ID_PREFIX) || id.length() == ID_PREFIX.length()) return -1;
+        try {
+            int index = Integer.parseInt(id.substring(ID_PREFIX.length())) - 1;
+            return index >= 0 && index < count && id.equals(ID_PREFIX + (index + 1)) ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Finds a customer record by ID, from the cache if possible.
+     * @param customerID the customer ID
+     * @return the record, or null if there is none
+     * @throws UncheckedIOException if the record can not be read
+     */
+    @Override
+    public synchronized CustomerRecord find(String customerID) {
+        CustomerRecord cached = cache.get(customerID);
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+        int index = indexOf(customerID);
+        if (index < 0) return null;
+        misses++;
+        CustomerRecord record = read(index);
+        cacheRecord(record, length(index));
+        return record;
+    }
+
+    /**
+     * Appends a customer record to the file.
+     * @param customer the record, whose ID must be the next sequential ID
+     * @throws IllegalArgumentException if the ID is not the next sequential ID
+     * @throws UncheckedIOException if the record can not be written
+     */
+    @Override
+    public synchronized void add(CustomerRecord customer) {
+        if (customer == null || !customer.getCustomerID().equals(ID_PREFIX + (count + 1))) {
+            throw new IllegalArgumentException("Disk store requires the next sequential customer ID");
+        }
+        byte[] bytes = encode(customer);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+            buffer.putInt(bytes.length).put(bytes).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, end + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write customer " + customer.getCustomerID(), e);
+        }
+        append(end + Integer.BYTES);
+        end += Integer.BYTES + bytes.length;
+        // New customers are likely to hire soon, so keep them hot
+        cacheRecord(customer, bytes.length);
+    }
+
+    /**
+     * Returns the customers stored so far, read from the file while iterating.
+     * As records never change, the view stays the same however many customers are added later.
+     * @return an unmodifiable view of the stored customers
+     */
+    @Override
+    public Collection<CustomerRecord> snapshot() {
+        return firstValues(count);
+    }
+
+    /**
+     * Indicates that snapshot() returns a view over the file rather than a copy.
+     * @return true
+     */
+    @Override
+    public boolean hasSnapshotView() {
+        return true;
+    }
+
+    /**
+     * Returns the number of stored customers.
+     * @return the customer count
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Adds a record to the cache and evicts the least recently used records while over budget.
+     * @param record the record to cache
+     * @param encodedLength the record's size on disk
+     */
+    private void cacheRecord(CustomerRecord record, int encodedLength) {
+        long cost = weight(encodedLength);
+        if (cost > maxCacheBytes) return;
+        cache.put(record.getCustomerID(), record);
+        cachedBytes += cost;
+        Iterator<Map.Entry<String, CustomerRecord>> eldest = cache.entrySet().iterator();
+        while (cachedBytes > maxCacheBytes && eldest.hasNext()) {
+            CustomerRecord evicted = eldest.next().getValue();
+            eldest.remove();
+            cachedBytes -= weight(length(indexOf(evicted.getCustomerID())));
+        }
+    }
+
+    /**
+     * Estimates the heap cost of a cached record.
+     * @param encodedLength the record's size on disk
+     * @return the estimated heap bytes
+     */
+    private static long weight(int encodedLength) {
+        // Strings are decoded to two bytes per character
+        return ENTRY_OVERHEAD + 2L * encodedLength;
+    }
+
+    /**
+     * Reads a record from the file.
+     * @param index the record index
+     * @return the decoded record
+     * @throws UncheckedIOException if the record can not be read
+     */
+    private CustomerRecord read(int index) {
+        ByteBuffer buffer = ByteBuffer.allocate(length(index));
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offsets[index] + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of customer file");
+                }
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+            String id = in.readUTF();
+            Name name = new Name(in.readUTF(), in.readUTF());
+            Date dob = new Date(in.readLong());
+            boolean license = in.readBoolean();
+            return new CustomerRecord(name, dob, license, id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read customer " + (index + 1), e);
+        }
+    }
+
+    /**
+     * Encodes a record for the file.
+     * @param record the record to encode
+     * @return the encoded bytes
+     */
+    private static byte[] encode(CustomerRecord record) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(record.getCustomerID());
+            out.writeUTF(record.getName().getFirstName());
+            out.writeUTF(record.getName().getLastName());
+            out.writeLong(record.getDateOfBirth().getTime());
+            out.writeBoolean(record.hasCommercialLicense());
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the customers stored so far, in the order they were added.
+     * As records never change, the view stays the same however many customers are added later.
+     * Records are read from the file while iterating and are not cached.
+     * @param limit the number of customers in the view
+     * @return an unmodifiable view of the first limit customers
+     */
+    Collection<CustomerRecord> firstValues(int limit) {
+        int n = Math.min(limit, count);
+        return new AbstractCollection<CustomerRecord>() {
+            @Override
+            public Iterator<CustomerRecord> iterator() {
+                return new Iterator<CustomerRecord>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < n;
+                    }
+
+                    @Override
+                    public CustomerRecord next() {
+                        if (next >= n) throw new NoSuchElementException();
+                        synchronized (DiskCustomerStore.this) {
+                            return read(next++);
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Returns the share of lookups served from the cache.
+     * @return the hit rate between 0 and 1; 0 if there were no lookups
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of records in the cache.
+     * @return the cached record count
+     */
+    public synchronized int getCachedCount() {
+        return cache.size();
+    }
+
+    /**
+     * Closes the data file.
+     * @throws IOException if the file can not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class selects the first hireable vehicle of a type, in the order vehicles were added.
+ */
+final class FirstFitStrategy implements VehicleSelectionStrategy {
+    private final Map<String, List<Vehicle>> byType = new HashMap<>();
+
+    /**
+     * Registers a new vehicle in the fleet.
+     * @param v the new vehicle
+     */
+    @Override
+    public void vehicleAdded(Vehicle v) {
+        byType.computeIfAbsent(v.getVehicleType().toLowerCase(), k -> new ArrayList<>()).add(v);
+    }
+
+    /**
+     * Scans the vehicles of the type for the first hireable one.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the chosen vehicle, or null if none is hireable
+     */
+    @Override
+    public Vehicle select(String vehicleType) {
+        List<Vehicle> candidates = byType.get(vehicleType.toLowerCase());
+        if (candidates == null) return null;
+        // Indexed, so a hire does not allocate an iterator
+        for (int i = 0, n = candidates.size(); i < n; i++) {
+            Vehicle v = candidates.get(i);
+            if (VehicleSelectionStrategy.isHireable(v)) return v;
+        }
+        return null;
+    }
+
+    /**
+     * Nothing to do: availability is checked on each scan.
+     * @param v the returned vehicle
+     */
+    @Override
+    public void vehicleReleased(Vehicle v) {
+    }
+}
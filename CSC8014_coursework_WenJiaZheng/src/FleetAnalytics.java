@@ -0,0 +1,306 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * This class provides fleet reports for the Hire Management System.
+ * Full reports are computed with parallel streams over the fleet, while
+ * per-type rollups are kept up to date by VehicleManager for repeated dashboard calls.
+ * Counts and utilization describe the fleet at the moment they are read; daily utilization is
+ * accumulated separately, as hired vehicle-time over fleet vehicle-time for each of the last 32 days.
+ */
+public final class FleetAnalytics {
+    // Days of vehicle-time kept per type, in the local time zone
+    private static final int DAYS = 32;
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private final VehicleManager manager;
+    private final Map<String, TypeRollup> rollups;
+    private final LongSupplier clock;
+    // Kept because TimeZone.getDefault() returns a copy
+    private final TimeZone zone = TimeZone.getDefault();
+
+    /**
+     * Running totals for one vehicle type.
+     * The counts are atomic, so any thread may update them and readers need no lock.
+     * The fleet size and hired count only change while the rollup is held, after the time since
+     * the last change has been credited to the days it fell in.
+     */
+    private static final class TypeRollup {
+        private final AtomicInteger fleetSize = new AtomicInteger();
+        private final AtomicInteger hired = new AtomicInteger();
+        private final AtomicInteger inService = new AtomicInteger();
+        private final AtomicLong totalMileage = new AtomicLong();
+        // Per day slot: the day it holds, and that day's hired and fleet vehicle-milliseconds
+        private final long[] days = new long[DAYS];
+        private final long[] hiredMillis = new long[DAYS];
+        private final long[] fleetMillis = new long[DAYS];
+        private long accruedTo = -1;
+
+        /**
+         * Constructs an empty rollup.
+         */
+        private TypeRollup() {
+            Arrays.fill(days, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Constructs the analytics for the given manager.
+     * @param manager the VehicleManager whose fleet is reported on
+     */
+    FleetAnalytics(VehicleManager manager) {
+        this(manager, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructs the analytics for the given manager, timing daily utilization with the given clock.
+     * @param manager the VehicleManager whose fleet is reported on
+     * @param clock the current time in milliseconds since the epoch
+     */
+    FleetAnalytics(VehicleManager manager, LongSupplier clock) {
+        this.manager = manager;
+        this.rollups = new ConcurrentHashMap<>();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the rollup for a vehicle's type, creating it if needed.
+     * @param v the vehicle
+     * @return the rollup for its type
+     */
+    private TypeRollup rollup(Vehicle v) {
+        return rollups.computeIfAbsent(AbstractVehicle.typeKey(v), k -> new TypeRollup());
+    }
+
+    /**
+     * Returns the day a time falls in, counted from 1 January 1970 in the local time zone.
+     * @param millis the time in milliseconds since the epoch
+     * @return the day number
+     */
+    private long dayOf(long millis) {
+        return Math.floorDiv(millis + zone.getOffset(millis), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Credits the hired and fleet vehicle-time since the rollup's last change to the days it fell in.
+     * Must be called while holding the rollup.
+     * @param r the rollup
+     * @param now the current time in milliseconds since the epoch
+     */
+    private void accrue(TypeRollup r, long now) {
+        long from = r.accruedTo;
+        if (from < 0 || now <= from) {
+            r.accruedTo = Math.max(from, now);
+            return;
+        }
+        int hired = r.hired.get();
+        int fleetSize = r.fleetSize.get();
+        while (from < now) {
+            long day = dayOf(from);
+            long dayEnd = from + MILLIS_PER_DAY - Math.floorMod(from + zone.getOffset(from), MILLIS_PER_DAY);
+            long end = Math.min(now, dayEnd);
+            int slot = (int) Math.floorMod(day, (long) DAYS);
+            if (r.days[slot] != day) {
+                // The slot held a day that is now out of the window
+                r.days[slot] = day;
+                r.hiredMillis[slot] = 0;
+                r.fleetMillis[slot] = 0;
+            }
+            r.hiredMillis[slot] += hired * (end - from);
+            r.fleetMillis[slot] += fleetSize * (end - from);
+            from = end;
+        }
+        r.accruedTo = now;
+    }
+
+    /**
+     * Records a vehicle added to the fleet.
+     * @param v the new vehicle
+     */
+    void vehicleAdded(Vehicle v) {
+        TypeRollup r = rollup(v);
+        synchronized (r) {
+            accrue(r, clock.getAsLong());
+            r.fleetSize.incrementAndGet();
+        }
+        r.totalMileage.addAndGet(v.getCurrentMileage());
+    }
+
+    /**
+     * Records a change of hire status.
+     * @param v the vehicle
+     * @param hired true if the vehicle was hired, false if it was returned
+     */
+    void hireStatusChanged(Vehicle v, boolean hired) {
+        TypeRollup r = rollup(v);
+        synchronized (r) {
+            accrue(r, clock.getAsLong());
+            r.hired.addAndGet(hired ? 1 : -1);
+        }
+    }
+
+    /**
+     * Records a vehicle entering or leaving the workshop.
+     * @param v the vehicle
+     * @param inService true if the vehicle went into service, false if it came back
+     */
+    void serviceStatusChanged(Vehicle v, boolean inService) {
+        rollup(v).inService.addAndGet(inService ? 1 : -1);
+    }
+
+    /**
+     * Records a change of mileage, including a reset after service.
+     * @param v the vehicle
+     * @param oldMileage the mileage before the change
+     */
+    void mileageChanged(Vehicle v, int oldMileage) {
+        rollup(v).totalMileage.addAndGet(v.getCurrentMileage() - oldMileage);
+    }
+
+    /**
+     * Returns the number of vehicles of the given type, from the rollup.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the fleet size for that type
+     */
+    public int getFleetSize(String vehicleType) {
+        TypeRollup r = rollups.get(vehicleType.toLowerCase());
+        return r == null ? 0 : r.fleetSize.get();
+    }
+
+    /**
+     * Returns the number of hired vehicles of the given type, from the rollup.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the number of hired vehicles
+     */
+    public int getHiredCount(String vehicleType) {
+        TypeRollup r = rollups.get(vehicleType.toLowerCase());
+        return r == null ? 0 : r.hired.get();
+    }
+
+    /**
+     * Returns the number of vehicles of the given type in the workshop, from the rollup.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the number of vehicles in service
+     */
+    public int getInServiceCount(String vehicleType) {
+        TypeRollup r = rollups.get(vehicleType.toLowerCase());
+        return r == null ? 0 : r.inService.get();
+    }
+
+    /**
+     * Returns the number of vehicles of the given type free to hire, from the rollup:
+     * those neither hired nor in the workshop.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the number of available vehicles
+     */
+    public int getAvailableCount(String vehicleType) {
+        TypeRollup r = rollups.get(vehicleType.toLowerCase());
+        return r == null ? 0 : r.fleetSize.get() - r.hired.get() - r.inService.get();
+    }
+
+    /**
+     * Returns the share of vehicles of the given type that are hired right now, from the rollup.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the current utilization between 0 and 1; 0 if there are no vehicles
+     */
+    public double getUtilization(String vehicleType) {
+        TypeRollup r = rollups.get(vehicleType.toLowerCase());
+        if (r == null) return 0.0;
+        // Held so the hired count and fleet size are read as a pair
+        synchronized (r) {
+            int fleetSize = r.fleetSize.get();
+            return fleetSize == 0 ? 0.0 : (double) r.hired.get() / fleetSize;
+        }
+    }
+
+    /**
+     * Returns the share of one day's vehicle-time that vehicles of the given type spent hired.
+     * For today, the share so far is returned.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @param day any time within the day, in the local time zone
+     * @return the daily utilization between 0 and 1; 0 if the type had no vehicles that day
+     *         or the day is not one of the last 32
+     */
+    public double getDailyUtilization(String vehicleType, Date day) {
+        TypeRollup r = rollups.get(vehicleType.toLowerCase());
+        if (r == null) return 0.0;
+        long d = dayOf(day.getTime());
+        synchronized (r) {
+            accrue(r, clock.getAsLong());
+            int slot = (int) Math.floorMod(d, (long) DAYS);
+            if (r.days[slot] != d || r.fleetMillis[slot] == 0) return 0.0;
+            return (double) r.hiredMillis[slot] / r.fleetMillis[slot];
+        }
+    }
+
+    /**
+     * Returns the average mileage since last service for the given type, from the rollup.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the average mileage; 0 if there are no vehicles
+     */
+    public double getAverageMileage(String vehicleType) {
+        TypeRollup r = rollups.get(vehicleType.toLowerCase());
+        if (r == null) return 0.0;
+        int fleetSize = r.fleetSize.get();
+        return fleetSize == 0 ? 0.0 : (double) r.totalMileage.get() / fleetSize;
+    }
+
+    /**
+     * Computes the current utilization of every vehicle type with a full parallel scan.
+     * @return a map of vehicle type to the share of hired vehicles
+     */
+    public Map<String, Double> utilizationByType() {
+        Collection<Vehicle> fleet = manager.getAllVehicles();
+        ConcurrentMap<String, Double> result = fleet.parallelStream()
+                .collect(Collectors.groupingByConcurrent(v -> v.getVehicleType().toLowerCase(),
+                        Collectors.averagingDouble(v -> v.isHired() ? 1.0 : 0.0)));
+        return Collections.unmodifiableMap(new TreeMap<>(result));
+    }
+
+    /**
+     * Computes a mileage histogram for every vehicle type with a full parallel scan.
+     * @param bucketWidth the width of each histogram bucket in miles
+     * @return a map of vehicle type to (bucket start mileage to vehicle count)
+     * @throws IllegalArgumentException if bucketWidth is not positive
+     */
+    public Map<String, Map<Integer, Long>> mileageDistribution(int bucketWidth) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("Bucket width must be positive");
+        }
+        Collection<Vehicle> fleet = manager.getAllVehicles();
+        Map<String, Map<Integer, Long>> result = fleet.parallelStream()
+                .collect(Collectors.groupingByConcurrent(v -> v.getVehicleType().toLowerCase(),
+                        Collectors.groupingBy(v -> v.getCurrentMileage() / bucketWidth * bucketWidth,
+                                TreeMap::new, Collectors.counting())));
+        return Collections.unmodifiableMap(new TreeMap<>(result));
+    }
+
+    /**
+     * Counts, per vehicle type, the vehicles that are within the given distance of their next service.
+     * @param milesRemaining how close to the service distance a vehicle must be to count as due
+     * @return a map of vehicle type to the number of vehicles due for service
+     * @throws IllegalArgumentException if milesRemaining is negative
+     */
+    public Map<String, Long> serviceDueByType(int milesRemaining) {
+        if (milesRemaining < 0) {
+            throw new IllegalArgumentException("Miles remaining can not be negative");
+        }
+        Collection<Vehicle> fleet = manager.getAllVehicles();
+        Map<String, Long> result = fleet.parallelStream()
+                .filter(v -> v.getDistanceRequirement() - v.getCurrentMileage() <= milesRemaining)
+                .collect(Collectors.groupingByConcurrent(v -> v.getVehicleType().toLowerCase(),
+                        Collectors.counting()));
+        return Collections.unmodifiableMap(new TreeMap<>(result));
+    }
+}
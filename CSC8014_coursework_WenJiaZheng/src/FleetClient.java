@@ -0,0 +1,350 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * This class is a blocking client for the FleetServer binary protocol.
+ * Requests can be pipelined: the send methods only buffer a request and return its tag, flush sends
+ * everything buffered in as few writes as possible, and receive reads the responses back in order.
+ * The one-call methods send a single request and wait for its response.
+ * A client should not send more than a few thousand requests ahead of the responses it has read,
+ * or both sides may fill their socket buffers and stall.
+ */
+public final class FleetClient implements Closeable {
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+    // Opcodes of the requests sent but not yet answered, so responses can be decoded
+    private final ArrayDeque<Byte> awaiting = new ArrayDeque<>();
+    private int nextTag;
+    private int frameStart;
+
+    /**
+     * The response to one request.
+     */
+    public static final class Response {
+        private final int tag;
+        private final byte status;
+        private final int count;
+        private final String vehicleType;
+        private final VehicleState state;
+        private final int mileage;
+        private final String renterID;
+
+        /**
+         * Constructs a response.
+         * @param tag the tag of the request answered
+         * @param status the response status
+         * @param count the available vehicle count, for an availability request
+         * @param vehicleType the vehicle type, for a lookup
+         * @param state the vehicle state, for a lookup
+         * @param mileage the vehicle mileage, for a lookup
+         * @param renterID the renter's customer ID, or null if not hired, for a lookup
+         */
+        private Response(int tag, byte status, int count, String vehicleType, VehicleState state, int mileage,
+                         String renterID) {
+            this.tag = tag;
+            this.status = status;
+            this.count = count;
+            this.vehicleType = vehicleType;
+            this.state = state;
+            this.mileage = mileage;
+            this.renterID = renterID;
+        }
+
+        /**
+         * Returns the tag of the request this response answers.
+         * @return the request tag
+         */
+        public int getTag() {
+            return tag;
+        }
+
+        /**
+         * Returns the response status, one of the FleetServer status codes.
+         * @return the status
+         */
+        public byte getStatus() {
+            return status;
+        }
+
+        /**
+         * Indicates whether the request succeeded.
+         * @return true if the status is OK, false otherwise
+         */
+        public boolean isOk() {
+            return status == FleetServer.OK;
+        }
+
+        /**
+         * Returns the number of available vehicles, for an availability request.
+         * @return the available count
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the vehicle type, for a lookup.
+         * @return "car" or "van", or null for other requests
+         */
+        public String getVehicleType() {
+            return vehicleType;
+        }
+
+        /**
+         * Returns the vehicle state, for a lookup.
+         * @return the VehicleState, or null for other requests
+         */
+        public VehicleState getState() {
+            return state;
+        }
+
+        /**
+         * Returns the vehicle's mileage since its last service, for a lookup.
+         * @return the mileage
+         */
+        public int getMileage() {
+            return mileage;
+        }
+
+        /**
+         * Returns the customer ID of the renter, for a lookup.
+         * @return the renter's customer ID, or null if the vehicle is not hired
+         */
+        public String getRenterID() {
+            return renterID;
+        }
+    }
+
+    /**
+     * Connects to a server.
+     * @param address the server address
+     * @throws IOException if the connection fails
+     */
+    public FleetClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+        in.flip();
+    }
+
+    /**
+     * Buffers a hire request.
+     * @param customerID the customer ID
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @param duration the rental duration in days
+     * @return the request tag
+     * @throws IOException if the buffer was full and could not be flushed
+     * @throws IllegalArgumentException if the type is not "car" or "van"
+     */
+    public int sendHire(String customerID, String vehicleType, int duration) throws IOException {
+        int tag = begin(FleetServer.OP_HIRE);
+        FleetServer.putString(out, customerID);
+        out.put(typeCode(vehicleType)).putInt(duration);
+        return end(tag);
+    }
+
+    /**
+     * Buffers a return request.
+     * @param vehicleID the ID of the vehicle being returned
+     * @param customerID the ID of the customer returning it
+     * @param mileage the additional mileage
+     * @return the request tag
+     * @throws IOException if the buffer was full and could not be flushed
+     */
+    public int sendReturn(VehicleID vehicleID, String customerID, int mileage) throws IOException {
+        int tag = begin(FleetServer.OP_RETURN);
+        FleetServer.putString(out, vehicleID.toString());
+        FleetServer.putString(out, customerID);
+        out.putInt(mileage);
+        return end(tag);
+    }
+
+    /**
+     * Buffers an availability request.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the request tag
+     * @throws IOException if the buffer was full and could not be flushed
+     * @throws IllegalArgumentException if the type is not "car" or "van"
+     */
+    public int sendAvailability(String vehicleType) throws IOException {
+        int tag = begin(FleetServer.OP_AVAILABILITY);
+        out.put(typeCode(vehicleType));
+        return end(tag);
+    }
+
+    /**
+     * Buffers a vehicle lookup.
+     * @param vehicleID the vehicle ID
+     * @return the request tag
+     * @throws IOException if the buffer was full and could not be flushed
+     */
+    public int sendLookup(VehicleID vehicleID) throws IOException {
+        int tag = begin(FleetServer.OP_LOOKUP);
+        FleetServer.putString(out, vehicleID.toString());
+        return end(tag);
+    }
+
+    /**
+     * Starts a request, flushing first if the buffer is nearly full.
+     * @param opcode the request opcode
+     * @return the request tag
+     * @throws IOException if the buffer could not be flushed
+     */
+    private int begin(byte opcode) throws IOException {
+        if (out.remaining() < 4 + FleetServer.MAX_FRAME) flush();
+        int tag = nextTag++;
+        frameStart = out.position();
+        // The length is filled in by end
+        out.putInt(0).put(opcode).putInt(tag);
+        awaiting.add(opcode);
+        return tag;
+    }
+
+    /**
+     * Finishes a request by writing its length.
+     * @param tag the request tag
+     * @return the request tag
+     */
+    private int end(int tag) {
+        out.putInt(frameStart, out.position() - frameStart - 4);
+        return tag;
+    }
+
+    /**
+     * Sends every buffered request.
+     * @throws IOException if the write fails
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Reads the next response, flushing any buffered requests first.
+     * @return the response
+     * @throws IOException if the read fails or the server closed the connection
+     * @throws IllegalStateException if no request is awaiting a response
+     */
+    public Response receive() throws IOException {
+        if (awaiting.isEmpty()) {
+            throw new IllegalStateException("No request is awaiting a response");
+        }
+        if (out.position() > 0) flush();
+        fill(4);
+        int length = in.getInt();
+        fill(length);
+        int end = in.position() + length;
+        int tag = in.getInt();
+        byte status = in.get();
+        byte opcode = awaiting.poll();
+        Response r;
+        if (status != FleetServer.OK) {
+            r = new Response(tag, status, 0, null, null, 0, null);
+        } else if (opcode == FleetServer.OP_AVAILABILITY) {
+            r = new Response(tag, status, in.getInt(), null, null, 0, null);
+        } else if (opcode == FleetServer.OP_LOOKUP) {
+            String type = in.get() == 1 ? "van" : "car";
+            VehicleState state = VehicleState.of(in.get());
+            int mileage = in.getInt();
+            String renter = FleetServer.getString(in);
+            r = new Response(tag, status, 0, type, state, mileage, renter.isEmpty() ? null : renter);
+        } else {
+            r = new Response(tag, status, 0, null, null, 0, null);
+        }
+        in.position(end);
+        return r;
+    }
+
+    /**
+     * Reads from the server until at least the given number of bytes are buffered.
+     * @param n the number of bytes needed
+     * @throws IOException if the read fails or the server closed the connection
+     */
+    private void fill(int n) throws IOException {
+        if (in.remaining() >= n) return;
+        in.compact();
+        while (in.position() < n) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+        in.flip();
+    }
+
+    /**
+     * Hires a vehicle and waits for the outcome.
+     * @param customerID the customer ID
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @param duration the rental duration in days
+     * @return true if the hire succeeded, false otherwise
+     * @throws IOException if the connection fails
+     */
+    public boolean hire(String customerID, String vehicleType, int duration) throws IOException {
+        sendHire(customerID, vehicleType, duration);
+        return receive().isOk();
+    }
+
+    /**
+     * Returns a vehicle and waits for the outcome.
+     * @param vehicleID the ID of the vehicle being returned
+     * @param customerID the ID of the customer returning it
+     * @param mileage the additional mileage
+     * @return true if the vehicle was returned, false otherwise
+     * @throws IOException if the connection fails
+     */
+    public boolean returnVehicle(VehicleID vehicleID, String customerID, int mileage) throws IOException {
+        sendReturn(vehicleID, customerID, mileage);
+        return receive().isOk();
+    }
+
+    /**
+     * Returns the number of available vehicles of a type.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the available count
+     * @throws IOException if the connection fails
+     */
+    public int availability(String vehicleType) throws IOException {
+        sendAvailability(vehicleType);
+        return receive().getCount();
+    }
+
+    /**
+     * Looks up a vehicle.
+     * @param vehicleID the vehicle ID
+     * @return the response; its status is NOT_FOUND if the vehicle is not in the fleet
+     * @throws IOException if the connection fails
+     */
+    public Response lookup(VehicleID vehicleID) throws IOException {
+        sendLookup(vehicleID);
+        return receive();
+    }
+
+    /**
+     * Returns the protocol code of a vehicle type.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return 0 for car, 1 for van
+     * @throws IllegalArgumentException if the type is not "car" or "van"
+     */
+    private static byte typeCode(String vehicleType) {
+        if ("car".equalsIgnoreCase(vehicleType)) return 0;
+        if ("van".equalsIgnoreCase(vehicleType)) return 1;
+        throw new IllegalArgumentException("Invalid vehicle type: " + vehicleType);
+    }
+
+    /**
+     * Closes the connection.
+     * @throws IOException if the connection can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
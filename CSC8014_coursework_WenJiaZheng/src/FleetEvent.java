@@ -0,0 +1,93 @@
+/**
+ * This class represents a change in the Hire Management System, as published to event subscribers.
+ * Events are immutable.
+ */
+public final class FleetEvent {
+    /**
+     * The kinds of change that are published.
+     */
+    public enum Type {
+        VEHICLE_ADDED,
+        VEHICLE_HIRED,
+        VEHICLE_RETURNED,
+        SERVICE_PERFORMED,
+        INSPECTION_REQUIRED,
+        INSPECTION_CLEARED,
+        SERVICE_DUE
+    }
+
+    private final Type type;
+    private final VehicleID vehicleID;
+    private final String customerID;
+    private final int mileage;
+    private final long timestamp;
+
+    /**
+     * Constructs a new event.
+     * @param type the kind of change
+     * @param vehicleID the vehicle concerned
+     * @param customerID the customer concerned, or null if there is none
+     * @param mileage the vehicle mileage after the change
+     * @param timestamp the time of the change in milliseconds since the epoch
+     * @throws IllegalArgumentException if type or vehicleID is null
+     */
+    public FleetEvent(Type type, VehicleID vehicleID, String customerID, int mileage, long timestamp) {
+        if (type == null || vehicleID == null) {
+            throw new IllegalArgumentException("Event type and vehicle ID can not be null");
+        }
+        this.type = type;
+        this.vehicleID = vehicleID;
+        this.customerID = customerID;
+        this.mileage = mileage;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the kind of change.
+     * @return the event type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the vehicle concerned.
+     * @return the VehicleID
+     */
+    public VehicleID getVehicleID() {
+        return vehicleID;
+    }
+
+    /**
+     * Returns the customer concerned.
+     * @return the customer ID, or null if the event is not about a customer
+     */
+    public String getCustomerID() {
+        return customerID;
+    }
+
+    /**
+     * Returns the vehicle mileage after the change.
+     * @return the mileage in miles
+     */
+    public int getMileage() {
+        return mileage;
+    }
+
+    /**
+     * Returns the time of the change.
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the event as a readable string.
+     * @return the event type, vehicle and customer
+     */
+    @Override
+    public String toString() {
+        return type + " " + vehicleID + (customerID == null ? "" : " " + customerID) + " at " + mileage + " miles";
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class publishes FleetEvents to subscribers of the Hire Management System.
+ * Each subscriber has a bounded buffer and receives events only as it requests them.
+ * Publishing never blocks: when a slow subscriber's buffer is full, the event is dropped
+ * for that subscriber and counted, so hires are never held up.
+ */
+public final class FleetEventPublisher implements Flow.Publisher<FleetEvent> {
+    private final SubmissionPublisher<FleetEvent> publisher;
+    private final AtomicLong dropped;
+
+    /**
+     * Constructs a publisher with the default buffer size, delivering on the common pool.
+     */
+    public FleetEventPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * Constructs a publisher with the given executor and per-subscriber buffer size.
+     * @param executor the executor that delivers events to subscribers
+     * @param bufferSize the maximum number of undelivered events per subscriber
+     * @throws IllegalArgumentException if executor is null or bufferSize is not positive
+     */
+    public FleetEventPublisher(Executor executor, int bufferSize) {
+        if (executor == null || bufferSize <= 0) {
+            throw new IllegalArgumentException("Executor is required and buffer size must be positive");
+        }
+        this.publisher = new SubmissionPublisher<>(executor, bufferSize);
+        this.dropped = new AtomicLong();
+    }
+
+    /**
+     * Adds a subscriber. Events published before subscribing are not delivered.
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super FleetEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Indicates whether anyone is subscribed, so callers can skip building events.
+     * @return true if there is at least one subscriber, false otherwise
+     */
+    public boolean hasSubscribers() {
+        return publisher.hasSubscribers();
+    }
+
+    /**
+     * Publishes an event without blocking. Subscribers with a full buffer miss the event.
+     * @param type the kind of change
+     * @param vehicle the vehicle concerned
+     * @param customerID the customer concerned, or null if there is none
+     */
+    void publish(FleetEvent.Type type, Vehicle vehicle, String customerID) {
+        // Skip building the event when nobody is listening
+        if (!publisher.hasSubscribers() || publisher.isClosed()) {
+            return;
+        }
+        FleetEvent event = new FleetEvent(type, vehicle.getVehicleID(), customerID,
+                vehicle.getCurrentMileage(), System.currentTimeMillis());
+        publisher.offer(event, (subscriber, e) -> {
+            dropped.incrementAndGet();
+            return false;
+        });
+    }
+
+    /**
+     * Returns the number of events dropped because a subscriber's buffer was full.
+     * @return the number of dropped events
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Closes the publisher. Subscribers receive onComplete after their buffered events.
+     */
+    public void close() {
+        publisher.close();
+    }
+}
@@ -0,0 +1,285 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * This class imports vehicles and customers from CSV files into a VehicleManager.
+ * Files are streamed in fixed-size chunks: each chunk is parsed in parallel and then inserted in
+ * file order, so memory use does not grow with file size. Rows are inserted in batches of at most
+ * 256 through VehicleManager.runBatch, so hires and returns are not held up for the whole chunk.
+ * Rows that fail validation are reported by line number and do not stop the import.
+ *
+ * Vehicle files have one column: type ("car" or "van").
+ * Customer files have four columns: firstName, lastName, dateOfBirth (yyyy-MM-dd), commercialLicense (true/false).
+ * A first line starting with "type" or "firstName" is treated as a header and skipped.
+ */
+public final class FleetImporter {
+    private static final int DEFAULT_CHUNK_SIZE = 10000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    // Rows inserted per manager batch
+    private static final int LOCK_BATCH = 256;
+
+    private final VehicleManager manager;
+    private final int chunkSize;
+
+    /**
+     * The outcome of one import.
+     */
+    public static final class ImportReport {
+        private int imported;
+        private int rejected;
+        private final List<String> errors = new ArrayList<>();
+
+        /**
+         * Records a rejected row. Only the first errors are kept, so a bad file can not exhaust memory.
+         * @param line the line number of the row
+         * @param message the reason for rejection
+         */
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("line " + line + ": " + message);
+            }
+        }
+
+        /**
+         * Returns the number of rows imported.
+         * @return the number of imported rows
+         */
+        public int getImported() {
+            return imported;
+        }
+
+        /**
+         * Returns the number of rows rejected.
+         * @return the number of rejected rows
+         */
+        public int getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Returns the reasons for rejected rows, as "line N: reason". At most 1000 are kept.
+         * @return an unmodifiable list of row errors
+         */
+        public List<String> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+    }
+
+    /**
+     * One parsed row, or the reason it could not be parsed.
+     */
+    private static final class Row {
+        private final long line;
+        private final String text;
+        private String[] fields;
+        private Date dob;
+        private boolean commercialLicense;
+        private String error;
+
+        /**
+         * Constructs an unparsed row.
+         * @param line the line number in the file
+         * @param text the raw line
+         */
+        private Row(long line, String text) {
+            this.line = line;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Constructs an importer with the default chunk size.
+     * @param manager the VehicleManager to import into
+     */
+    public FleetImporter(VehicleManager manager) {
+        this(manager, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs an importer.
+     * @param manager the VehicleManager to import into
+     * @param chunkSize the number of rows parsed and inserted together
+     * @throws IllegalArgumentException if manager is null or chunkSize is not positive
+     */
+    public FleetImporter(VehicleManager manager, int chunkSize) {
+        if (manager == null || chunkSize <= 0) {
+            throw new IllegalArgumentException("Manager is required and chunk size must be positive");
+        }
+        this.manager = manager;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports vehicles from a CSV file.
+     * @param path the CSV file
+     * @return the import report
+     * @throws IOException if the file can not be read
+     */
+    public ImportReport importVehicles(Path path) throws IOException {
+        return importFile(path, "type", false);
+    }
+
+    /**
+     * Imports customers from a CSV file. Duplicate name and date of birth combinations are rejected.
+     * @param path the CSV file
+     * @return the import report
+     * @throws IOException if the file can not be read
+     */
+    public ImportReport importCustomers(Path path) throws IOException {
+        return importFile(path, "firstName", true);
+    }
+
+    /**
+     * Streams a file chunk by chunk, parsing and inserting each chunk before reading the next.
+     * @param path the CSV file
+     * @param header the first column name of an optional header line
+     * @param customers true to import customers, false to import vehicles
+     * @return the import report
+     * @throws IOException if the file can not be read
+     */
+    private ImportReport importFile(Path path, String header, boolean customers) throws IOException {
+        ImportReport report = new ImportReport();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        long lineNo = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                // Skip the header and blank lines
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || (lineNo == 1 && trimmed.regionMatches(true, 0, header, 0, header.length()))) {
+                    continue;
+                }
+                chunk.add(new Row(lineNo, line));
+                if (chunk.size() == chunkSize) {
+                    processChunk(chunk, customers, report);
+                    chunk.clear();
+                }
+            }
+        }
+        processChunk(chunk, customers, report);
+        return report;
+    }
+
+    /**
+     * Parses a chunk in parallel and inserts the valid rows in file order.
+     * @param chunk the rows to process
+     * @param customers true for customer rows, false for vehicle rows
+     * @param report the report to update
+     */
+    private void processChunk(List<Row> chunk, boolean customers, ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        chunk.parallelStream().forEach(customers ? FleetImporter::parseCustomer : FleetImporter::parseVehicle);
+
+        // Insert in file order so customer IDs follow the file, in short batches
+        for (int from = 0; from < chunk.size(); from += LOCK_BATCH) {
+            List<Row> batch = chunk.subList(from, Math.min(chunk.size(), from + LOCK_BATCH));
+            manager.runBatch(() -> {
+                for (Row row : batch) {
+                    insert(row, customers, report);
+                }
+            });
+        }
+    }
+
+    /**
+     * Inserts one parsed row, or reports why it was rejected.
+     * @param row the parsed row
+     * @param customers true for a customer row, false for a vehicle row
+     * @param report the report to update
+     */
+    private void insert(Row row, boolean customers, ImportReport report) {
+        if (row.error == null && (row.fields == null || (customers && row.dob == null))) {
+            row.error = "row has missing fields";
+        }
+        if (row.error != null) {
+            report.reject(row.line, row.error);
+            return;
+        }
+        try {
+            if (customers) {
+                manager.addCustomerRecord(row.fields[0], row.fields[1], row.dob, row.commercialLicense);
+            } else {
+                manager.addVehicle(row.fields[0]);
+            }
+            report.imported++;
+        } catch (IllegalArgumentException e) {
+            // The manager refused a parsed row, e.g. a duplicate customer; its message says why
+            report.reject(row.line, e.getMessage());
+        }
+    }
+
+    /**
+     * Parses a vehicle row: a single column with "car" or "van".
+     * @param row the row to parse
+     */
+    private static void parseVehicle(Row row) {
+        String[] fields = split(row.text);
+        if (fields.length != 1) {
+            row.error = "expected 1 column but found " + fields.length;
+            return;
+        }
+        String type = fields[0].toLowerCase();
+        if (!type.equals("car") && !type.equals("van")) {
+            row.error = "Invalid vehicle type: " + fields[0];
+            return;
+        }
+        row.fields = fields;
+    }
+
+    /**
+     * Parses a customer row: first name, last name, date of birth and commercial license.
+     * @param row the row to parse
+     */
+    private static void parseCustomer(Row row) {
+        String[] fields = split(row.text);
+        if (fields.length != 4) {
+            row.error = "expected 4 columns but found " + fields.length;
+            return;
+        }
+        if (fields[0].isEmpty() || fields[1].isEmpty()) {
+            row.error = "First and last names can not be empty";
+            return;
+        }
+        try {
+            LocalDate date = LocalDate.parse(fields[2]);
+            row.dob = Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            row.error = "Invalid date of birth: " + fields[2];
+            return;
+        }
+        if (!fields[3].equalsIgnoreCase("true") && !fields[3].equalsIgnoreCase("false")) {
+            row.error = "Invalid commercial license flag: " + fields[3];
+            return;
+        }
+        row.commercialLicense = Boolean.parseBoolean(fields[3]);
+        row.fields = fields;
+    }
+
+    /**
+     * Splits a CSV line on commas and trims each field. Quoted fields are not supported.
+     * @param line the line to split
+     * @return the trimmed fields
+     */
+    private static String[] split(String line) {
+        String[] fields = line.split(",", -1);
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].trim();
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,485 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class serves a VehicleManager over TCP with a compact binary protocol. One non-blocking
+ * selector thread does all network I/O, and one worker thread runs the requests on the manager, so a
+ * request waiting for the manager's lock never stalls other connections' reads and writes. The manager
+ * is a single monitor, so more workers would add no write parallelism, and one worker runs every
+ * connection's requests in the order they arrived.
+ * All integers are big-endian. A request is {int length, byte opcode, int tag, body}, where length
+ * counts the bytes after itself; a response is {int length, int tag, byte status, body}. Strings are
+ * {short length, UTF-8 bytes}, and vehicle types are one byte: 0 for car, 1 for van.
+ * <ul>
+ *     <li>HIRE: {customer ID, type, int duration}; status OK or REFUSED</li>
+ *     <li>RETURN: {vehicle ID, customer ID, int mileage}; status OK or REFUSED</li>
+ *     <li>AVAILABILITY: {type}; status OK with {int count}</li>
+ *     <li>LOOKUP: {vehicle ID}; status OK with {type, byte state, int mileage, renter ID or ""}</li>
+ * </ul>
+ * An unknown customer or vehicle gives NOT_FOUND, a malformed body BAD_REQUEST, and a failure inside
+ * the manager ERROR.
+ * Clients may pipeline any number of requests: every complete request in a read is handed to the
+ * worker as one batch, and the responses go back in request order in as few writes as possible.
+ * A connection with too many requests waiting for the worker, or whose responses are not being read,
+ * stops being read from until it catches up.
+ */
+public final class FleetServer implements Closeable {
+    /** Opcode of a hire request. */
+    public static final byte OP_HIRE = 1;
+    /** Opcode of a return request. */
+    public static final byte OP_RETURN = 2;
+    /** Opcode of an availability request. */
+    public static final byte OP_AVAILABILITY = 3;
+    /** Opcode of a vehicle lookup. */
+    public static final byte OP_LOOKUP = 4;
+
+    /** The request succeeded. */
+    public static final byte OK = 0;
+    /** The manager refused the hire or return. */
+    public static final byte REFUSED = 1;
+    /** The customer or vehicle does not exist. */
+    public static final byte NOT_FOUND = 2;
+    /** The request could not be decoded. */
+    public static final byte BAD_REQUEST = 3;
+    /** The manager failed while running the request. */
+    public static final byte ERROR = 4;
+
+    /** The largest request accepted, not counting its length prefix. */
+    public static final int MAX_FRAME = 4096;
+
+    private static final String[] TYPES = {"car", "van"};
+    // Room for the largest response, so a response is never split across buffers
+    private static final int MAX_RESPONSE = 256;
+    // Output held for a slow reader before the server stops reading its requests
+    private static final int OUTPUT_LIMIT = 1 << 20;
+    // Requests waiting for the worker before the server stops reading a connection
+    private static final int QUEUED_LIMIT = 4096;
+
+    private final VehicleManager manager;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ExecutorService worker;
+    // Connections the worker has answered, whose output and interest the selector thread must update
+    private final Queue<SelectionKey> answered = new ConcurrentLinkedQueue<>();
+    private final LongAdder requests = new LongAdder();
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * The buffers of one client connection. The input buffer is only used by the selector thread;
+     * the output buffer is filled by the worker and drained by the selector thread, under the
+     * connection's lock.
+     */
+    private static final class Connection {
+        private final ByteBuffer in = ByteBuffer.allocate(4 + MAX_FRAME);
+        private ByteBuffer out = ByteBuffer.allocate(16 * 1024);
+        // Requests handed to the worker and not yet answered
+        private final AtomicInteger queued = new AtomicInteger();
+
+        /**
+         * Makes room for one more response, growing the output buffer if needed.
+         */
+        private void reserve() {
+            if (out.remaining() < MAX_RESPONSE) {
+                ByteBuffer bigger = ByteBuffer.allocate(out.capacity() * 2);
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+            }
+        }
+    }
+
+    /**
+     * Constructs a server and binds it; it accepts no connections until started.
+     * @param manager the manager to serve
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the address can not be bound
+     * @throws IllegalArgumentException if manager or address is null
+     */
+    public FleetServer(VehicleManager manager, InetSocketAddress address) throws IOException {
+        if (manager == null || address == null) {
+            throw new IllegalArgumentException("Manager and address can not be null");
+        }
+        this.manager = manager;
+        this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "fleet-server-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(address);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            worker.shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the address the server listens on.
+     * @return the bound address
+     * @throws IOException if the address can not be read
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * Returns the number of requests handled.
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Starts the selector thread.
+     * @throws IllegalStateException if the server was already started
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Fleet server is already running");
+        }
+        running = true;
+        thread = new Thread(this::serve, "fleet-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs the selector loop until the server is closed.
+     */
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+                flushAnswered();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) read(key);
+                            if (key.isValid() && key.isWritable()) write(key);
+                        }
+                    } catch (IOException e) {
+                        // The client went away; only its connection is closed
+                        disconnect(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The selector failed; the server stops
+            running = false;
+        }
+    }
+
+    /**
+     * Accepts a pending connection. A connection that can not be set up is dropped.
+     */
+    private void accept() {
+        SocketChannel client = null;
+        try {
+            client = server.accept();
+            if (client == null) return;
+            client.configureBlocking(false);
+            client.socket().setTcpNoDelay(true);
+            client.register(selector, SelectionKey.OP_READ, new Connection());
+        } catch (IOException e) {
+            if (client != null) {
+                try {
+                    client.close();
+                } catch (IOException ignored) {
+                    // Already closed
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads from a connection and hands every complete request read so far to the worker, as one batch.
+     * @param key the connection's key
+     * @throws IOException if the connection fails
+     */
+    private void read(SelectionKey key) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        if (channel.read(conn.in) < 0) {
+            disconnect(key);
+            return;
+        }
+        ByteBuffer in = conn.in;
+        in.flip();
+        int start = in.position();
+        int frames = 0;
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < 5 || length > MAX_FRAME) {
+                // The stream can not be resynchronised after a bad length
+                disconnect(key);
+                return;
+            }
+            if (in.remaining() < 4 + length) break;
+            in.position(in.position() + 4 + length);
+            frames++;
+        }
+        if (frames > 0) {
+            // Copied, since the input buffer is reused for the next read
+            ByteBuffer batch = ByteBuffer.allocate(in.position() - start);
+            batch.put(in.array(), in.arrayOffset() + start, batch.capacity()).flip();
+            conn.queued.addAndGet(frames);
+            try {
+                worker.execute(() -> answer(key, conn, batch));
+            } catch (RejectedExecutionException e) {
+                // The server is closing
+                disconnect(key);
+                return;
+            }
+        }
+        in.compact();
+        write(key);
+    }
+
+    /**
+     * Runs a batch of requests on the worker thread and queues their responses, in request order.
+     * @param key the connection's key
+     * @param conn the connection
+     * @param batch the requests, each with its length prefix
+     */
+    private void answer(SelectionKey key, Connection conn, ByteBuffer batch) {
+        int frames = 0;
+        synchronized (conn) {
+            while (batch.hasRemaining()) {
+                int length = batch.getInt();
+                ByteBuffer frame = batch.slice(batch.position(), length);
+                batch.position(batch.position() + length);
+                conn.reserve();
+                handle(frame, conn.out);
+                frames++;
+            }
+        }
+        requests.add(frames);
+        conn.queued.addAndGet(-frames);
+        answered.add(key);
+        selector.wakeup();
+    }
+
+    /**
+     * Writes the responses the worker has queued since the last pass of the selector loop.
+     */
+    private void flushAnswered() {
+        SelectionKey key;
+        while ((key = answered.poll()) != null) {
+            try {
+                if (key.isValid()) write(key);
+            } catch (IOException e) {
+                disconnect(key);
+            }
+        }
+    }
+
+    /**
+     * Writes as much pending output as the connection takes, and sets what the key waits for next.
+     * Reading pauses while the output is over its limit or too many requests wait for the worker.
+     * @param key the connection's key
+     * @throws IOException if the connection fails
+     */
+    private void write(SelectionKey key) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        int pending;
+        synchronized (conn) {
+            conn.out.flip();
+            ((SocketChannel) key.channel()).write(conn.out);
+            conn.out.compact();
+            pending = conn.out.position();
+        }
+        boolean reading = pending <= OUTPUT_LIMIT && conn.queued.get() <= QUEUED_LIMIT;
+        int ops = (reading ? SelectionKey.OP_READ : 0) | (pending == 0 ? 0 : SelectionKey.OP_WRITE);
+        key.interestOps(ops);
+    }
+
+    /**
+     * Closes one client connection.
+     * @param key the connection's key
+     */
+    private void disconnect(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    /**
+     * Decodes one request, runs it on the manager and encodes the response. Called on the worker thread.
+     * @param frame the request, after its length prefix
+     * @param out receives the response
+     */
+    private void handle(ByteBuffer frame, ByteBuffer out) {
+        byte opcode = frame.get();
+        int tag = frame.getInt();
+        int start = out.position();
+        out.putInt(0).putInt(tag).put(OK);
+        try {
+            byte status = execute(opcode, frame, out);
+            out.put(start + 8, status);
+            if (status != OK) out.position(start + 9);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            out.position(start + 9);
+            out.put(start + 8, BAD_REQUEST);
+        } catch (RuntimeException e) {
+            // e.g. a repository failure; the connection and the server stay up
+            out.position(start + 9);
+            out.put(start + 8, ERROR);
+        }
+        out.putInt(start, out.position() - start - 4);
+    }
+
+    /**
+     * Runs one decoded request.
+     * @param opcode the request opcode
+     * @param body the request body
+     * @param out receives the response body
+     * @return the response status
+     * @throws IllegalArgumentException if the body is malformed
+     */
+    private byte execute(byte opcode, ByteBuffer body, ByteBuffer out) {
+        switch (opcode) {
+            case OP_HIRE: {
+                CustomerRecord c = manager.getCustomer(getString(body));
+                String type = getType(body);
+                int duration = body.getInt();
+                if (c == null) return NOT_FOUND;
+                return manager.hireVehicle(c, type, duration) ? OK : REFUSED;
+            }
+            case OP_RETURN: {
+                VehicleID id = VehicleID.lookup(getString(body));
+                CustomerRecord c = manager.getCustomer(getString(body));
+                int mileage = body.getInt();
+                if (id == null || c == null) return NOT_FOUND;
+                return manager.returnHiredVehicle(id, c, mileage) ? OK : REFUSED;
+            }
+            case OP_AVAILABILITY:
+                out.putInt(manager.noOfAvailableVehicles(getType(body)));
+                return OK;
+            case OP_LOOKUP: {
+                VehicleID id = VehicleID.lookup(getString(body));
+                Vehicle v = id == null ? null : manager.getVehicle(id);
+                if (v == null) return NOT_FOUND;
+                CustomerRecord renter = manager.getCurrentRenter(id);
+                out.put((byte) (v instanceof Van ? 1 : 0));
+                out.put((byte) v.getState().ordinal());
+                out.putInt(v.getCurrentMileage());
+                putString(out, renter == null ? "" : renter.getCustomerID());
+                return OK;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        }
+    }
+
+    /**
+     * Reads a vehicle type byte.
+     * @param body the request body
+     * @return "car" or "van"
+     * @throws IllegalArgumentException if the byte is not a vehicle type
+     */
+    private static String getType(ByteBuffer body) {
+        byte type = body.get();
+        if (type != 0 && type != 1) {
+            throw new IllegalArgumentException("Unknown vehicle type: " + type);
+        }
+        return TYPES[type];
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     * @param buffer the buffer to read from
+     * @return the string
+     * @throws IllegalArgumentException if the length is negative
+     */
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative string length");
+        }
+        if (length > buffer.remaining()) throw new BufferUnderflowException();
+        String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     * @param buffer the buffer to write to
+     * @param s the string
+     */
+    static void putString(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * Stops the selector and worker threads and closes every connection.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        try {
+            if (t != null) {
+                t.join(10_000);
+            }
+            worker.shutdown();
+            worker.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            worker.shutdown();
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Nothing more to release
+        }
+    }
+}
@@ -0,0 +1,174 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * This class represents a point-in-time view of the Hire Management System.
+ * A snapshot never changes after it is published, so it can be read from any thread without locking.
+ * Its vehicles are immutable VehicleViews, so their mileage and status are those at the time of the
+ * snapshot, and a vehicle is hired in getAllVehicles exactly when it is listed in getHiredVehicles.
+ * Parts that did not change between two snapshots are shared rather than copied.
+ */
+public final class FleetSnapshot {
+    private final long version;
+    private final SnapshotVector<Vehicle> vehicles;
+    private final Collection<CustomerRecord> customers;
+    private final Map<String, Set<Vehicle>> hiredVehicles;
+
+    /**
+     * The hired vehicles by customer, over a vector indexed by customer number.
+     */
+    private static final class HiredVehicles extends AbstractMap<String, Set<Vehicle>> {
+        private final SnapshotVector<Map.Entry<String, Set<Vehicle>>> rentals;
+        private final int size;
+
+        /**
+         * Constructs the map.
+         * @param rentals each customer's ID and hired vehicles, at index customer number - 1, or null
+         * @param size the number of customers hiring at least one vehicle
+         */
+        private HiredVehicles(SnapshotVector<Map.Entry<String, Set<Vehicle>>> rentals, int size) {
+            this.rentals = rentals;
+            this.size = size;
+        }
+
+        /**
+         * Finds the entry of a customer.
+         * @param key the customer ID
+         * @return the entry, or null if the customer hires nothing
+         */
+        private Map.Entry<String, Set<Vehicle>> entry(Object key) {
+            if (!(key instanceof String)) return null;
+            int n = HireHistory.customerNumber((String) key);
+            return n < 1 || n > rentals.size() ? null : rentals.get(n - 1);
+        }
+
+        /**
+         * Returns the vehicles a customer was hiring.
+         * @param key the customer ID
+         * @return an unmodifiable set of vehicles, or null if the customer hired nothing
+         */
+        @Override
+        public Set<Vehicle> get(Object key) {
+            Map.Entry<String, Set<Vehicle>> e = entry(key);
+            return e == null ? null : e.getValue();
+        }
+
+        /**
+         * Indicates whether a customer was hiring any vehicle.
+         * @param key the customer ID
+         * @return true if the customer hired at least one vehicle, false otherwise
+         */
+        @Override
+        public boolean containsKey(Object key) {
+            return entry(key) != null;
+        }
+
+        /**
+         * Returns the number of customers hiring at least one vehicle.
+         * @return the customer count
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the customers hiring vehicles, in customer number order.
+         * @return an unmodifiable set of entries
+         */
+        @Override
+        public Set<Map.Entry<String, Set<Vehicle>>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Set<Vehicle>>>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, Set<Vehicle>>> iterator() {
+                    return new Iterator<Map.Entry<String, Set<Vehicle>>>() {
+                        private int next = skip(0);
+
+                        /**
+                         * Finds the next customer hiring vehicles.
+                         * @param from the index to start at
+                         * @return its index, or the vector size if there is none
+                         */
+                        private int skip(int from) {
+                            while (from < rentals.size() && rentals.get(from) == null) from++;
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < rentals.size();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Set<Vehicle>> next() {
+                            if (next >= rentals.size()) throw new NoSuchElementException();
+                            Map.Entry<String, Set<Vehicle>> e = rentals.get(next);
+                            next = skip(next + 1);
+                            return e;
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Constructs a new snapshot from immutable vectors.
+     * @param version the version of the manager when the snapshot was taken
+     * @param vehicles a view of every vehicle, in the order they were added
+     * @param customers every customer, in the order they were added, as an unmodifiable collection
+     *                  that does not change
+     * @param rentals each customer's ID and hired vehicle views, at index customer number - 1,
+     *                or null for a customer hiring nothing
+     * @param renting the number of customers hiring at least one vehicle
+     */
+    FleetSnapshot(long version, SnapshotVector<Vehicle> vehicles, Collection<CustomerRecord> customers,
+                  SnapshotVector<Map.Entry<String, Set<Vehicle>>> rentals, int renting) {
+        this.version = version;
+        this.vehicles = vehicles;
+        this.customers = customers;
+        this.hiredVehicles = new HiredVehicles(rentals, renting);
+    }
+
+    /**
+     * Returns the version of this snapshot. Later snapshots have higher versions.
+     * @return the snapshot version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns all vehicles at the time of the snapshot.
+     * @return an unmodifiable collection of VehicleViews
+     */
+    public Collection<Vehicle> getAllVehicles() {
+        return vehicles;
+    }
+
+    /**
+     * Returns all customer records at the time of the snapshot.
+     * @return an unmodifiable collection of customers
+     */
+    public Collection<CustomerRecord> getCustomers() {
+        return customers;
+    }
+
+    /**
+     * Returns the hired vehicles by customer at the time of the snapshot.
+     * @return an unmodifiable map of customer IDs to their hired VehicleViews
+     */
+    public Map<String, Set<Vehicle>> getHiredVehicles() {
+        return hiredVehicles;
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * This class selects vehicles from a heap per vehicle type, so selection is O(log n).
+ * Only vehicles that were hireable when they were added or released are in a heap, each at most once.
+ * The manager changes a vehicle's mileage only while it is hired or in the workshop, when it is
+ * off the heap, so the heap order never goes stale.
+ */
+final class HeapSelectionStrategy implements VehicleSelectionStrategy {
+    private final Comparator<Vehicle> order;
+    private final Map<String, PriorityQueue<Vehicle>> heaps = new HashMap<>();
+    // The vehicles currently in a heap
+    private final Set<Vehicle> queued = new HashSet<>();
+
+    /**
+     * Constructs a heap strategy.
+     * @param order the preference order; the smallest vehicle is selected first
+     */
+    HeapSelectionStrategy(Comparator<Vehicle> order) {
+        // Break ties by ID so selection is repeatable
+        this.order = order.thenComparing(Vehicle::getVehicleID);
+    }
+
+    /**
+     * Returns the heap for a vehicle type, creating it if needed.
+     * @param vehicleType the vehicle type
+     * @return the heap for that type
+     */
+    private PriorityQueue<Vehicle> heap(String vehicleType) {
+        return heaps.computeIfAbsent(vehicleType.toLowerCase(), k -> new PriorityQueue<>(order));
+    }
+
+    /**
+     * Registers a new vehicle in the fleet.
+     * @param v the new vehicle
+     */
+    @Override
+    public void vehicleAdded(Vehicle v) {
+        offer(v);
+    }
+
+    /**
+     * Puts a vehicle on its heap if it is hireable and not already there.
+     * @param v the vehicle
+     */
+    private void offer(Vehicle v) {
+        if (VehicleSelectionStrategy.isHireable(v) && queued.add(v)) {
+            heap(AbstractVehicle.typeKey(v)).add(v);
+        }
+    }
+
+    /**
+     * Takes the preferred vehicle off the heap. Vehicles that can not be hired
+     * (e.g. vans awaiting inspection) are dropped until they are released again.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the chosen vehicle, or null if none is hireable
+     */
+    @Override
+    public Vehicle select(String vehicleType) {
+        PriorityQueue<Vehicle> heap = heaps.get(vehicleType.toLowerCase());
+        if (heap == null) return null;
+        Vehicle v;
+        while ((v = heap.poll()) != null) {
+            queued.remove(v);
+            if (VehicleSelectionStrategy.isHireable(v)) return v;
+        }
+        return null;
+    }
+
+    /**
+     * Puts a returned vehicle back on its heap, unless it can not be hired or is already there.
+     * @param v the returned vehicle
+     */
+    @Override
+    public void vehicleReleased(Vehicle v) {
+        offer(v);
+    }
+}
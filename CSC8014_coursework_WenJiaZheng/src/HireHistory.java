@@ -0,0 +1,210 @@
+import java.util.Arrays;
+
+/**
+ * This class records the most recent hires of one vehicle in a fixed-size ring buffer.
+ * Each hire is stored in parallel primitive arrays (customer number, hire and return time,
+ * miles driven), so recording a hire or return allocates nothing.
+ * When the buffer is full the oldest hire is overwritten.
+ */
+public final class HireHistory {
+    /** The number of hires kept per vehicle by default. */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private static final String ID_PREFIX = "Customer";
+    private static final long OPEN = -1L;
+
+    private final int[] customers;
+    private final long[] hireTimes;
+    private final long[] returnTimes;
+    private final int[] miles;
+    // Index of the next slot to write, and number of hires stored
+    private int head;
+    private int size;
+
+    /**
+     * Constructs an empty history.
+     * @param capacity the number of hires to keep
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public HireHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        customers = new int[capacity];
+        hireTimes = new long[capacity];
+        returnTimes = new long[capacity];
+        miles = new int[capacity];
+    }
+
+    /**
+     * Constructs a copy of another history.
+     * @param other the history to copy
+     */
+    private HireHistory(HireHistory other) {
+        customers = Arrays.copyOf(other.customers, other.customers.length);
+        hireTimes = Arrays.copyOf(other.hireTimes, other.hireTimes.length);
+        returnTimes = Arrays.copyOf(other.returnTimes, other.returnTimes.length);
+        miles = Arrays.copyOf(other.miles, other.miles.length);
+        head = other.head;
+        size = other.size;
+    }
+
+    /**
+     * Converts a customer ID such as "Customer12" to its number.
+     * @param customerID the customer ID
+     * @return the customer number, or -1 if the ID is not in the generated format
+     */
+    static int customerNumber(String customerID) {
+        if (!customerID.startsWith(ID_PREFIX)) return -1;
+        int n = 0;
+        for (int i = ID_PREFIX.length(); i < customerID.length(); i++) {
+            char c = customerID.charAt(i);
+            if (c < '0' || c > '9' || n > (Integer.MAX_VALUE - 9) / 10) return -1;
+            n = n * 10 + (c - '0');
+        }
+        return customerID.length() > ID_PREFIX.length() ? n : -1;
+    }
+
+    /**
+     * Records the start of a hire.
+     * @param customerNumber the number of the hiring customer
+     * @param time the hire time in milliseconds since the epoch
+     */
+    void recordHire(int customerNumber, long time) {
+        customers[head] = customerNumber;
+        hireTimes[head] = time;
+        returnTimes[head] = OPEN;
+        miles[head] = 0;
+        head = (head + 1) % customers.length;
+        if (size < customers.length) size++;
+    }
+
+    /**
+     * Completes the most recent hire.
+     * @param time the return time in milliseconds since the epoch
+     * @param mileage the miles driven during the hire
+     */
+    void recordReturn(long time, int mileage) {
+        if (size == 0) return;
+        int last = slot(size - 1);
+        if (returnTimes[last] != OPEN) return;
+        returnTimes[last] = time;
+        miles[last] = mileage;
+    }
+
+    /**
+     * Returns the array slot of the i-th oldest stored hire.
+     * @param i the position, 0 being the oldest
+     * @return the array slot
+     */
+    private int slot(int i) {
+        return (head - size + i + customers.length) % customers.length;
+    }
+
+    /**
+     * Checks a position argument.
+     * @param i the position, 0 being the oldest
+     * @throws IndexOutOfBoundsException if i is not a stored position
+     */
+    private void check(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("No hire at position " + i);
+        }
+    }
+
+    /**
+     * Returns the number of hires stored.
+     * @return the number of hires, at most the capacity
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the customer of a stored hire.
+     * @param i the position, 0 being the oldest
+     * @return the customer ID
+     * @throws IndexOutOfBoundsException if i is not a stored position
+     */
+    public String getCustomerID(int i) {
+        check(i);
+        return ID_PREFIX + customers[slot(i)];
+    }
+
+    /**
+     * Returns the customer number of a stored hire.
+     * @param i the position, 0 being the oldest
+     * @return the customer number
+     * @throws IndexOutOfBoundsException if i is not a stored position
+     */
+    int getCustomerNumber(int i) {
+        check(i);
+        return customers[slot(i)];
+    }
+
+    /**
+     * Returns the hire time of a stored hire.
+     * @param i the position, 0 being the oldest
+     * @return the time in milliseconds since the epoch
+     * @throws IndexOutOfBoundsException if i is not a stored position
+     */
+    public long getHireTime(int i) {
+        check(i);
+        return hireTimes[slot(i)];
+    }
+
+    /**
+     * Returns the return time of a stored hire.
+     * @param i the position, 0 being the oldest
+     * @return the time in milliseconds since the epoch, or -1 if the vehicle is still out
+     * @throws IndexOutOfBoundsException if i is not a stored position
+     */
+    public long getReturnTime(int i) {
+        check(i);
+        return returnTimes[slot(i)];
+    }
+
+    /**
+     * Returns the miles driven during a stored hire.
+     * @param i the position, 0 being the oldest
+     * @return the miles driven; 0 if the vehicle is still out
+     * @throws IndexOutOfBoundsException if i is not a stored position
+     */
+    public int getMileage(int i) {
+        check(i);
+        return miles[slot(i)];
+    }
+
+    /**
+     * Returns the customer who hired the vehicle most recently.
+     * @return the customer ID, or null if the vehicle has never been hired
+     */
+    public String getLastCustomerID() {
+        return size == 0 ? null : getCustomerID(size - 1);
+    }
+
+    /**
+     * Returns the average miles driven per completed hire.
+     * @return the average trip length; 0 if no hire has been completed
+     */
+    public double getAverageTripMiles() {
+        long total = 0;
+        int completed = 0;
+        for (int i = 0; i < size; i++) {
+            int s = slot(i);
+            if (returnTimes[s] != OPEN) {
+                total += miles[s];
+                completed++;
+            }
+        }
+        return completed == 0 ? 0.0 : (double) total / completed;
+    }
+
+    /**
+     * Returns an independent copy of this history.
+     * @return the copy
+     */
+    HireHistory copy() {
+        return new HireHistory(this);
+    }
+}
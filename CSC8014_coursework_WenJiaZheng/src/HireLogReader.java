@@ -0,0 +1,301 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * This class scans hire log files written by HireLogWriter.
+ * The block headers are read once into a directory of primitive arrays, and extended when the
+ * file has grown, e.g. while VehicleManager is still logging hires to it. A scan checks each block's
+ * statistics in the directory and reads only blocks whose return times and vehicle types can match.
+ * When blocks are in return time order, as the manager writes them, a scan binary searches for the
+ * first candidate block and stops at the first block past the range, so it does not even look at
+ * the rest. Matching blocks are decoded into reusable primitive arrays and aggregated in plain loops,
+ * so a scan allocates nothing per record.
+ */
+public final class HireLogReader implements Closeable {
+    private final FileChannel channel;
+    private final Inflater inflater = new Inflater();
+    private final ByteBuffer header = ByteBuffer.allocate(HireLogWriter.HEADER_BYTES);
+    private byte[] compressed = new byte[0];
+    private ByteBuffer raw = ByteBuffer.allocate(0);
+    private byte[] types = new byte[0];
+    private long[] returnTimes = new long[0];
+    private long[] hireTimes = new long[0];
+    private int[] miles = new int[0];
+    // The block directory: where each block's compressed columns start, and its header fields
+    private long[] positions = new long[16];
+    private int[] counts = new int[16];
+    private int[] lengths = new int[16];
+    private long[] minReturns = new long[16];
+    private long[] maxReturns = new long[16];
+    private byte[] typeMasks = new byte[16];
+    private int blocks;
+    // Where the next block header starts
+    private long indexed = 8;
+    // Whether no block returns earlier than the one before it
+    private boolean ordered = true;
+
+    /**
+     * The totals of one scan.
+     */
+    public static final class ScanResult {
+        private final long records;
+        private final long totalMiles;
+        private final long totalHireMillis;
+        private final int blocksScanned;
+        private final int blocksSkipped;
+
+        /**
+         * Constructs a scan result.
+         * @param records the number of matching hires
+         * @param totalMiles the miles driven over all matching hires
+         * @param totalHireMillis the total duration of all matching hires
+         * @param blocksScanned the number of blocks decoded
+         * @param blocksSkipped the number of blocks skipped using their statistics
+         */
+        private ScanResult(long records, long totalMiles, long totalHireMillis, int blocksScanned, int blocksSkipped) {
+            this.records = records;
+            this.totalMiles = totalMiles;
+            this.totalHireMillis = totalHireMillis;
+            this.blocksScanned = blocksScanned;
+            this.blocksSkipped = blocksSkipped;
+        }
+
+        /**
+         * Returns the number of matching hires.
+         * @return the record count
+         */
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * Returns the miles driven over all matching hires.
+         * @return the total miles
+         */
+        public long getTotalMiles() {
+            return totalMiles;
+        }
+
+        /**
+         * Returns the average miles per matching hire.
+         * @return the average miles; 0 if nothing matched
+         */
+        public double getAverageMiles() {
+            return records == 0 ? 0.0 : (double) totalMiles / records;
+        }
+
+        /**
+         * Returns the average hire duration of matching hires.
+         * @return the average duration in hours; 0 if nothing matched
+         */
+        public double getAverageHireHours() {
+            return records == 0 ? 0.0 : totalHireMillis / 3_600_000.0 / records;
+        }
+
+        /**
+         * Returns the number of blocks decoded.
+         * @return the scanned block count
+         */
+        public int getBlocksScanned() {
+            return blocksScanned;
+        }
+
+        /**
+         * Returns the number of blocks skipped without decoding.
+         * @return the skipped block count
+         */
+        public int getBlocksSkipped() {
+            return blocksSkipped;
+        }
+    }
+
+    /**
+     * Opens a hire log file.
+     * @param file the file to read
+     * @throws IOException if the file can not be opened or is not a hire log
+     */
+    public HireLogReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer start = ByteBuffer.allocate(8);
+        readFully(start, 0);
+        if (start.getInt(0) != HireLogWriter.MAGIC || start.getInt(4) != HireLogWriter.VERSION) {
+            channel.close();
+            throw new IOException("Not a hire log file: " + file);
+        }
+    }
+
+    /**
+     * Adds the headers of blocks written since the directory was last extended.
+     * A block still being written is left for a later scan.
+     * @throws IOException if the file can not be read
+     */
+    private void index() throws IOException {
+        long size = channel.size();
+        while (indexed + HireLogWriter.HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, indexed);
+            int length = header.getInt(37);
+            long start = indexed + HireLogWriter.HEADER_BYTES;
+            if (start + length > size) break;
+            if (blocks == positions.length) {
+                int n = blocks * 2;
+                positions = Arrays.copyOf(positions, n);
+                counts = Arrays.copyOf(counts, n);
+                lengths = Arrays.copyOf(lengths, n);
+                minReturns = Arrays.copyOf(minReturns, n);
+                maxReturns = Arrays.copyOf(maxReturns, n);
+                typeMasks = Arrays.copyOf(typeMasks, n);
+            }
+            positions[blocks] = start;
+            counts[blocks] = header.getInt(0);
+            lengths[blocks] = length;
+            minReturns[blocks] = header.getLong(20);
+            maxReturns[blocks] = header.getLong(28);
+            typeMasks[blocks] = header.get(36);
+            if (blocks > 0 && minReturns[blocks] < maxReturns[blocks - 1]) ordered = false;
+            blocks++;
+            indexed = start + length;
+        }
+    }
+
+    /**
+     * Finds the first block that may hold a hire returned at or after the given time.
+     * Only valid while the blocks are in return time order.
+     * @param fromReturn the start of the range, in milliseconds since the epoch
+     * @return the block number, or the block count if there is none
+     */
+    private int firstBlock(long fromReturn) {
+        int low = 0, high = blocks;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maxReturns[mid] < fromReturn) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Totals the hires returned in a time range, optionally for one vehicle type.
+     * @param fromReturn the start of the range (inclusive), in milliseconds since the epoch
+     * @param toReturn the end of the range (exclusive), in milliseconds since the epoch
+     * @param vehicleType "car" or "van", or null for both
+     * @return the totals of matching hires
+     * @throws IOException if the file can not be read or is corrupt
+     * @throws IllegalArgumentException if the vehicle type is not "car", "van" or null
+     */
+    public synchronized ScanResult scan(long fromReturn, long toReturn, String vehicleType) throws IOException {
+        int wanted = vehicleType == null ? -1 : HireLogWriter.typeCode(vehicleType);
+        long records = 0, totalMiles = 0, totalMillis = 0;
+        int scanned = 0;
+        index();
+
+        int b = ordered ? firstBlock(fromReturn) : 0;
+        for (; b < blocks; b++) {
+            // In order, no later block can return before the range ends
+            if (ordered && minReturns[b] >= toReturn) break;
+            // Skip blocks whose statistics rule out every record
+            int typeMask = typeMasks[b];
+            if (maxReturns[b] < fromReturn || minReturns[b] >= toReturn
+                    || (wanted >= 0 && (typeMask & (1 << wanted)) == 0)) {
+                continue;
+            }
+            int count = counts[b];
+            decode(positions[b], count, lengths[b]);
+            scanned++;
+
+            boolean allTypes = wanted < 0 || typeMask == (1 << wanted);
+            for (int i = 0; i < count; i++) {
+                long r = returnTimes[i];
+                if (r >= fromReturn && r < toReturn && (allTypes || types[i] == wanted)) {
+                    records++;
+                    totalMiles += miles[i];
+                    totalMillis += r - hireTimes[i];
+                }
+            }
+        }
+        return new ScanResult(records, totalMiles, totalMillis, scanned, blocks - scanned);
+    }
+
+    /**
+     * Inflates a block and decodes the columns needed for scans.
+     * @param position the file position of the compressed columns
+     * @param count the number of records in the block
+     * @param length the compressed length
+     * @throws IOException if the block can not be read or is corrupt
+     */
+    private void decode(long position, int count, int length) throws IOException {
+        if (compressed.length < length) compressed = new byte[length];
+        int rawLength = count * HireLogWriter.BYTES_PER_RECORD;
+        if (raw.capacity() < rawLength) raw = ByteBuffer.allocate(rawLength);
+        if (types.length < count) {
+            types = new byte[count];
+            hireTimes = new long[count];
+            returnTimes = new long[count];
+            miles = new int[count];
+        }
+        ByteBuffer in = ByteBuffer.wrap(compressed, 0, length);
+        readFully(in, position);
+
+        inflater.reset();
+        inflater.setInput(compressed, 0, length);
+        try {
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                n += inflater.inflate(raw.array(), n, rawLength - n);
+            }
+            if (n != rawLength) throw new IOException("Truncated hire log block");
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt hire log block", e);
+        }
+
+        // Columns: types, customers (not needed here), hire deltas, return deltas, miles
+        raw.clear();
+        raw.get(types, 0, count);
+        raw.position(count * 5);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += raw.getLong();
+            hireTimes[i] = previous;
+        }
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += raw.getLong();
+            returnTimes[i] = previous;
+        }
+        for (int i = 0; i < count; i++) miles[i] = raw.getInt();
+    }
+
+    /**
+     * Fills a buffer from the file.
+     * @param buffer the buffer to fill
+     * @param position the file position to read from
+     * @throws IOException if the file ends first
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of hire log");
+            }
+        }
+    }
+
+    /**
+     * Closes the file.
+     * @throws IOException if the file can not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
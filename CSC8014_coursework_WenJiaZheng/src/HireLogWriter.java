@@ -0,0 +1,194 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * This class writes completed hires to a compressed, columnar file for reporting.
+ * Records are buffered in primitive arrays and written in blocks. Each block starts with
+ * min/max statistics for hire and return time and a mask of the vehicle types it contains,
+ * so HireLogReader can skip blocks that can not match a query. Inside a block each column
+ * is stored contiguously (times as deltas) and the whole block is deflated.
+ *
+ * File layout: magic, version, then blocks of
+ * [count][minHire][maxHire][minReturn][maxReturn][typeMask][compressedLength][compressed columns].
+ */
+public final class HireLogWriter implements Closeable {
+    static final int MAGIC = 0x48495245; // "HIRE"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 + 8 * 4 + 1 + 4;
+    static final int BYTES_PER_RECORD = 1 + 4 + 8 + 8 + 4;
+    /** The number of records per block by default. */
+    public static final int DEFAULT_BLOCK_SIZE = 65536;
+
+    private final FileChannel channel;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] types;
+    private final int[] customers;
+    private final long[] hireTimes;
+    private final long[] returnTimes;
+    private final int[] miles;
+    private final ByteBuffer raw;
+    private byte[] compressed;
+    private int count;
+    private long written;
+
+    /**
+     * Creates a new log file, replacing any existing file, with the default block size.
+     * @param file the file to write
+     * @throws IOException if the file can not be created
+     */
+    public HireLogWriter(Path file) throws IOException {
+        this(file, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new log file, replacing any existing file.
+     * @param file the file to write
+     * @param blockSize the number of records per block
+     * @throws IOException if the file can not be created
+     * @throws IllegalArgumentException if blockSize is not positive
+     */
+    public HireLogWriter(Path file, int blockSize) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        types = new byte[blockSize];
+        customers = new int[blockSize];
+        hireTimes = new long[blockSize];
+        returnTimes = new long[blockSize];
+        miles = new int[blockSize];
+        raw = ByteBuffer.allocate(blockSize * BYTES_PER_RECORD);
+        compressed = new byte[raw.capacity() + 64];
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        writeFully(header);
+    }
+
+    /**
+     * Returns the column code of a vehicle type.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return 0 for car, 1 for van
+     * @throws IllegalArgumentException if the type is not "car" or "van"
+     */
+    static byte typeCode(String vehicleType) {
+        if (vehicleType.equalsIgnoreCase("car")) return 0;
+        if (vehicleType.equalsIgnoreCase("van")) return 1;
+        throw new IllegalArgumentException("Invalid vehicle type: " + vehicleType);
+    }
+
+    /**
+     * Appends one completed hire.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @param customerNumber the number of the customer
+     * @param hireTime the hire time in milliseconds since the epoch
+     * @param returnTime the return time in milliseconds since the epoch
+     * @param mileage the miles driven
+     * @throws IOException if a full block can not be written
+     * @throws IllegalArgumentException if the vehicle type is not "car" or "van"
+     */
+    public void append(String vehicleType, int customerNumber, long hireTime, long returnTime, int mileage)
+            throws IOException {
+        types[count] = typeCode(vehicleType);
+        customers[count] = customerNumber;
+        hireTimes[count] = hireTime;
+        returnTimes[count] = returnTime;
+        miles[count] = mileage;
+        if (++count == types.length) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Writes the buffered records as one block.
+     * @throws IOException if the block can not be written
+     */
+    private void flushBlock() throws IOException {
+        if (count == 0) return;
+        long minHire = Long.MAX_VALUE, maxHire = Long.MIN_VALUE;
+        long minReturn = Long.MAX_VALUE, maxReturn = Long.MIN_VALUE;
+        int typeMask = 0;
+        for (int i = 0; i < count; i++) {
+            minHire = Math.min(minHire, hireTimes[i]);
+            maxHire = Math.max(maxHire, hireTimes[i]);
+            minReturn = Math.min(minReturn, returnTimes[i]);
+            maxReturn = Math.max(maxReturn, returnTimes[i]);
+            typeMask |= 1 << types[i];
+        }
+
+        // Lay the columns out one after another; times as deltas compress far better
+        raw.clear();
+        raw.put(types, 0, count);
+        for (int i = 0; i < count; i++) raw.putInt(customers[i]);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            raw.putLong(hireTimes[i] - previous);
+            previous = hireTimes[i];
+        }
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            raw.putLong(returnTimes[i] - previous);
+            previous = returnTimes[i];
+        }
+        for (int i = 0; i < count; i++) raw.putInt(miles[i]);
+
+        deflater.reset();
+        deflater.setInput(raw.array(), 0, raw.position());
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(count).putLong(minHire).putLong(maxHire).putLong(minReturn).putLong(maxReturn)
+                .put((byte) typeMask).putInt(length);
+        header.flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(compressed, 0, length));
+        written += count;
+        count = 0;
+    }
+
+    /**
+     * Writes a whole buffer to the file.
+     * @param buffer the bytes to write
+     * @throws IOException if the bytes can not be written
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Returns the number of records written to the file so far, not counting buffered ones.
+     * @return the number of written records
+     */
+    public long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * Writes any buffered records and closes the file.
+     * @throws IOException if the records can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+}
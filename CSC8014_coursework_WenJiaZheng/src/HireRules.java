@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * This class represents the eligibility rules of the Hire Management System.
+ * Rules are loaded from a properties file and compiled into an immutable object,
+ * so a running VehicleManager can swap a whole rule set in one step.
+ */
+public final class HireRules {
+    private static final HireRules DEFAULTS = new HireRules(18, 23, true, 3, 10);
+
+    private final int minCarAge;
+    private final int minVanAge;
+    private final boolean vanLicenseRequired;
+    private final int maxVehiclesPerCustomer;
+    private final int vanInspectionDays;
+    // Built once, so a refused hire does not concatenate a message
+    private final String capMessage;
+
+    /**
+     * Constructs a new set of hire rules.
+     * @param minCarAge the minimum customer age for car hire
+     * @param minVanAge the minimum customer age for van hire
+     * @param vanLicenseRequired whether van hire requires a commercial license
+     * @param maxVehiclesPerCustomer the maximum number of vehicles a customer can hire at once
+     * @param vanInspectionDays the van rental duration (in days) from which inspection is required
+     * @throws IllegalArgumentException if any limit is negative or the vehicle cap is not positive
+     */
+    public HireRules(int minCarAge, int minVanAge, boolean vanLicenseRequired,
+                     int maxVehiclesPerCustomer, int vanInspectionDays) {
+        // Validate limits so a bad config file can never be swapped in
+        if (minCarAge < 0 || minVanAge < 0 || vanInspectionDays < 0) {
+            throw new IllegalArgumentException("Hire rule limits can not be negative");
+        }
+        if (maxVehiclesPerCustomer <= 0) {
+            throw new IllegalArgumentException("Vehicle cap must be positive");
+        }
+        this.minCarAge = minCarAge;
+        this.minVanAge = minVanAge;
+        this.vanLicenseRequired = vanLicenseRequired;
+        this.maxVehiclesPerCustomer = maxVehiclesPerCustomer;
+        this.vanInspectionDays = vanInspectionDays;
+        this.capMessage = "Customer has already hired " + maxVehiclesPerCustomer + " vehicles.";
+    }
+
+    /**
+     * Returns the message given when a customer is at the vehicle cap.
+     * @return the cap message
+     */
+    String getCapMessage() {
+        return capMessage;
+    }
+
+    /**
+     * Returns the default rules (18+ for car, 23+ with commercial license for van,
+     * max 3 vehicles, inspection after 10 or more days).
+     * @return the default HireRules
+     */
+    public static HireRules defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Loads and compiles hire rules from a properties file.
+     * Missing keys fall back to the default rules.
+     * @param path the path of the properties file
+     * @return the compiled HireRules
+     * @throws IOException if the file can not be read
+     * @throws IllegalArgumentException if a value is not a valid number, boolean or limit
+     */
+    public static HireRules load(Path path) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            props.load(reader);
+        }
+        return fromProperties(props);
+    }
+
+    /**
+     * Compiles hire rules from the given properties.
+     * Missing keys fall back to the default rules.
+     * @param props the rule properties
+     * @return the compiled HireRules
+     * @throws IllegalArgumentException if a value is not a valid number, boolean or limit
+     */
+    public static HireRules fromProperties(Properties props) {
+        return new HireRules(
+                PropertyValues.intValue(props, "car.minAge", DEFAULTS.minCarAge),
+                PropertyValues.intValue(props, "van.minAge", DEFAULTS.minVanAge),
+                PropertyValues.booleanValue(props, "van.commercialLicenseRequired", DEFAULTS.vanLicenseRequired),
+                PropertyValues.intValue(props, "customer.maxVehicles", DEFAULTS.maxVehiclesPerCustomer),
+                PropertyValues.intValue(props, "van.inspectionDays", DEFAULTS.vanInspectionDays));
+    }
+
+    /**
+     * Returns the minimum customer age for car hire.
+     * @return the minimum car age
+     */
+    public int getMinCarAge() {
+        return minCarAge;
+    }
+
+    /**
+     * Returns the minimum customer age for van hire.
+     * @return the minimum van age
+     */
+    public int getMinVanAge() {
+        return minVanAge;
+    }
+
+    /**
+     * Indicates whether van hire requires a commercial license.
+     * @return true if a commercial license is required, false otherwise
+     */
+    public boolean isVanLicenseRequired() {
+        return vanLicenseRequired;
+    }
+
+    /**
+     * Returns the maximum number of vehicles a customer can hire at once.
+     * @return the vehicle cap
+     */
+    public int getMaxVehiclesPerCustomer() {
+        return maxVehiclesPerCustomer;
+    }
+
+    /**
+     * Returns the van rental duration (in days) from which inspection is required.
+     * @return the inspection threshold in days
+     */
+    public int getVanInspectionDays() {
+        return vanInspectionDays;
+    }
+
+    /**
+     * Returns the rules as a readable string.
+     * @return the rule values
+     */
+    @Override
+    public String toString() {
+        return "HireRules[car " + minCarAge + "+, van " + minVanAge + "+"
+                + (vanLicenseRequired ? " with license" : "")
+                + ", max " + maxVehiclesPerCustomer + " vehicles, inspection after "
+                + vanInspectionDays + " days]";
+    }
+}
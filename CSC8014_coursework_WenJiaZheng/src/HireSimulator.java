@@ -0,0 +1,434 @@
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * This class simulates months of hire traffic against a VehicleManager on a virtual clock.
+ * Customer arrivals, hire durations, mileage and the time a returned van waits for its inspection
+ * are drawn from configurable distributions, and events are processed in time order without
+ * waiting in real time.
+ * The result reports event counts, rejection rate and fleet utilization for capacity experiments.
+ * It also reports the real-time throughput, which depends on the machine and its load, so it is
+ * meant to be printed and compared between runs rather than checked against a fixed figure.
+ */
+public final class HireSimulator {
+    private static final double HOURS_PER_DAY = 24.0;
+
+    private final int cars;
+    private final int vans;
+    private final int customers;
+    private final double vanShare;
+    private final Distribution interArrivalHours;
+    private final Distribution hireDays;
+    private final Distribution dailyMiles;
+    private final Distribution inspectionHours;
+    private final long seed;
+
+    // Pending returns and inspection clearances, as a binary min-heap on event time;
+    // a clearance has no customer
+    private double[] returnTimes = new double[64];
+    private VehicleID[] returnVehicles = new VehicleID[64];
+    private CustomerRecord[] returnCustomers = new CustomerRecord[64];
+    private int[] returnDays = new int[64];
+    private int pending;
+
+    /**
+     * A source of random values for the simulation.
+     */
+    @FunctionalInterface
+    public interface Distribution {
+        /**
+         * Draws one value.
+         * @param random the random generator of the simulation
+         * @return the sampled value
+         */
+        double sample(Random random);
+
+        /**
+         * Returns a distribution that always gives the same value.
+         * @param value the value
+         * @return the constant distribution
+         */
+        static Distribution constant(double value) {
+            return random -> value;
+        }
+
+        /**
+         * Returns an exponential distribution, e.g. for the time between arrivals.
+         * @param mean the mean value
+         * @return the exponential distribution
+         * @throws IllegalArgumentException if mean is not positive
+         */
+        static Distribution exponential(double mean) {
+            if (mean <= 0) {
+                throw new IllegalArgumentException("Mean must be positive");
+            }
+            return random -> -mean * Math.log(1.0 - random.nextDouble());
+        }
+
+        /**
+         * Returns a uniform distribution between two values.
+         * @param min the lowest value
+         * @param max the highest value
+         * @return the uniform distribution
+         * @throws IllegalArgumentException if max is less than min
+         */
+        static Distribution uniform(double min, double max) {
+            if (max < min) {
+                throw new IllegalArgumentException("Max can not be less than min");
+            }
+            return random -> min + (max - min) * random.nextDouble();
+        }
+    }
+
+    /**
+     * The outcome of one simulation run.
+     */
+    public static final class Result {
+        private final double days;
+        private final long arrivals;
+        private final long hires;
+        private final long rejections;
+        private final long returns;
+        private final long inspections;
+        private final long wallNanos;
+        private final double carUtilization;
+        private final double vanUtilization;
+
+        /**
+         * Constructs a result.
+         * @param days the simulated time in days
+         * @param arrivals the number of hire requests
+         * @param hires the number of successful hires
+         * @param rejections the number of rejected hires
+         * @param returns the number of returns
+         * @param inspections the number of completed van inspections
+         * @param wallNanos the real time taken in nanoseconds
+         * @param carUtilization the time-averaged share of cars on hire
+         * @param vanUtilization the time-averaged share of vans on hire
+         */
+        private Result(double days, long arrivals, long hires, long rejections, long returns, long inspections,
+                       long wallNanos, double carUtilization, double vanUtilization) {
+            this.days = days;
+            this.arrivals = arrivals;
+            this.hires = hires;
+            this.rejections = rejections;
+            this.returns = returns;
+            this.inspections = inspections;
+            this.wallNanos = wallNanos;
+            this.carUtilization = carUtilization;
+            this.vanUtilization = vanUtilization;
+        }
+
+        /**
+         * Returns the number of hire requests.
+         * @return the number of arrivals
+         */
+        public long getArrivals() {
+            return arrivals;
+        }
+
+        /**
+         * Returns the number of successful hires.
+         * @return the number of hires
+         */
+        public long getHires() {
+            return hires;
+        }
+
+        /**
+         * Returns the number of rejected hires.
+         * @return the number of rejections
+         */
+        public long getRejections() {
+            return rejections;
+        }
+
+        /**
+         * Returns the number of returns.
+         * @return the number of returns
+         */
+        public long getReturns() {
+            return returns;
+        }
+
+        /**
+         * Returns the number of completed van inspections.
+         * @return the number of inspections
+         */
+        public long getInspections() {
+            return inspections;
+        }
+
+        /**
+         * Returns the number of processed events (arrivals, returns and inspections).
+         * @return the number of events
+         */
+        public long getEvents() {
+            return arrivals + returns + inspections;
+        }
+
+        /**
+         * Returns the share of hire requests that were rejected.
+         * @return the rejection rate between 0 and 1
+         */
+        public double getRejectionRate() {
+            return arrivals == 0 ? 0.0 : (double) rejections / arrivals;
+        }
+
+        /**
+         * Returns the number of events processed per real second. It varies with the machine
+         * and its load, so it is for reporting only.
+         * @return the event throughput
+         */
+        public double getEventsPerSecond() {
+            return wallNanos == 0 ? 0.0 : getEvents() * 1e9 / wallNanos;
+        }
+
+        /**
+         * Returns the time-averaged share of vehicles of the given type that were on hire.
+         * @param vehicleType the vehicle type ("car" or "van")
+         * @return the utilization between 0 and 1
+         */
+        public double getUtilization(String vehicleType) {
+            return vehicleType.equalsIgnoreCase("van") ? vanUtilization : carUtilization;
+        }
+
+        /**
+         * Returns a summary of the run.
+         * @return the summary
+         */
+        @Override
+        public String toString() {
+            return String.format("%.0f days: %d events (%.0f/s), %d hires, %d inspections, %.1f%% rejected, "
+                            + "utilization car %.1f%% van %.1f%%",
+                    days, getEvents(), getEventsPerSecond(), hires, inspections, getRejectionRate() * 100,
+                    carUtilization * 100, vanUtilization * 100);
+        }
+    }
+
+    /**
+     * Constructs a simulator in which returned vans are inspected one day after they come back.
+     * @param cars the number of cars in the fleet
+     * @param vans the number of vans in the fleet
+     * @param customers the number of customers who make hire requests
+     * @param vanShare the share of hire requests that are for vans, between 0 and 1
+     * @param interArrivalHours the time between hire requests, in hours
+     * @param hireDays the hire duration in days (rounded, at least 1)
+     * @param dailyMiles the miles driven per day of hire
+     * @param seed the random seed, so runs can be repeated
+     * @throws IllegalArgumentException if a count is negative, there are no customers,
+     *                                  vanShare is outside 0 to 1, or a distribution is null
+     */
+    public HireSimulator(int cars, int vans, int customers, double vanShare, Distribution interArrivalHours,
+                         Distribution hireDays, Distribution dailyMiles, long seed) {
+        this(cars, vans, customers, vanShare, interArrivalHours, hireDays, dailyMiles,
+                Distribution.constant(HOURS_PER_DAY), seed);
+    }
+
+    /**
+     * Constructs a simulator.
+     * @param cars the number of cars in the fleet
+     * @param vans the number of vans in the fleet
+     * @param customers the number of customers who make hire requests
+     * @param vanShare the share of hire requests that are for vans, between 0 and 1
+     * @param interArrivalHours the time between hire requests, in hours
+     * @param hireDays the hire duration in days (rounded, at least 1)
+     * @param dailyMiles the miles driven per day of hire
+     * @param inspectionHours the time from a van's return until its inspection is cleared, in hours
+     * @param seed the random seed, so runs can be repeated
+     * @throws IllegalArgumentException if a count is negative, there are no customers,
+     *                                  vanShare is outside 0 to 1, or a distribution is null
+     */
+    public HireSimulator(int cars, int vans, int customers, double vanShare, Distribution interArrivalHours,
+                         Distribution hireDays, Distribution dailyMiles, Distribution inspectionHours, long seed) {
+        if (cars < 0 || vans < 0 || customers <= 0) {
+            throw new IllegalArgumentException("Fleet sizes can not be negative and there must be customers");
+        }
+        if (vanShare < 0 || vanShare > 1) {
+            throw new IllegalArgumentException("Van share must be between 0 and 1");
+        }
+        if (interArrivalHours == null || hireDays == null || dailyMiles == null || inspectionHours == null) {
+            throw new IllegalArgumentException("Distributions can not be null");
+        }
+        this.cars = cars;
+        this.vans = vans;
+        this.customers = customers;
+        this.vanShare = vanShare;
+        this.interArrivalHours = interArrivalHours;
+        this.hireDays = hireDays;
+        this.dailyMiles = dailyMiles;
+        this.inspectionHours = inspectionHours;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs the simulation on a new VehicleManager.
+     * @param days the simulated time in days
+     * @return the result of the run
+     * @throws IllegalArgumentException if days is not positive
+     */
+    public Result run(double days) {
+        return run(new VehicleManager(), days);
+    }
+
+    /**
+     * Runs the simulation on the given manager, for example one with another selection strategy
+     * or repository. The simulated fleet and customers are added to it, and rejections are not logged.
+     * @param vm the manager to simulate, with no vehicles hired
+     * @param days the simulated time in days
+     * @return the result of the run
+     * @throws IllegalArgumentException if vm is null or days is not positive
+     */
+    public Result run(VehicleManager vm, double days) {
+        if (vm == null) {
+            throw new IllegalArgumentException("Vehicle manager can not be null");
+        }
+        if (days <= 0) {
+            throw new IllegalArgumentException("Simulated days must be positive");
+        }
+        Random random = new Random(seed);
+        vm.setLogRejections(false);
+        for (int i = 0; i < cars; i++) vm.addVehicle("car");
+        for (int i = 0; i < vans; i++) vm.addVehicle("van");
+
+        // Customers aged 16 to 75, about half with a commercial license
+        CustomerRecord[] pool = new CustomerRecord[customers];
+        Calendar cal = Calendar.getInstance();
+        int thisYear = cal.get(Calendar.YEAR);
+        for (int i = 0; i < customers; i++) {
+            cal.set(thisYear - 16 - random.nextInt(60), random.nextInt(12), 1 + random.nextInt(28));
+            pool[i] = vm.addCustomerRecord("Sim", "Customer" + i, cal.getTime(), random.nextBoolean());
+        }
+
+        // Hired counts are read per type, so a manager with vehicles of its own is measured as a whole
+        FleetAnalytics analytics = vm.getAnalytics();
+        int carFleet = analytics.getFleetSize("car");
+        int vanFleet = analytics.getFleetSize("van");
+        pending = 0;
+        long arrivals = 0, hires = 0, rejections = 0, returns = 0, inspections = 0;
+        double carHours = 0, vanHours = 0;
+        double now = 0;
+        double end = days * HOURS_PER_DAY;
+        double nextArrival = interArrivalHours.sample(random);
+
+        long start = System.nanoTime();
+        while (true) {
+            boolean isScheduled = pending > 0 && returnTimes[0] <= nextArrival;
+            double next = isScheduled ? returnTimes[0] : nextArrival;
+            if (next > end) break;
+
+            // Integrate the number of hired vehicles over virtual time
+            carHours += analytics.getHiredCount("car") * (next - now);
+            vanHours += analytics.getHiredCount("van") * (next - now);
+            now = next;
+
+            if (isScheduled && returnCustomers[0] == null) {
+                VehicleID id = returnVehicles[0];
+                popReturn();
+                if (vm.completeInspection(id)) inspections++;
+            } else if (isScheduled) {
+                VehicleID id = returnVehicles[0];
+                CustomerRecord customer = returnCustomers[0];
+                int miles = (int) Math.max(0, returnDays[0] * dailyMiles.sample(random));
+                popReturn();
+                vm.returnVehicle(id, customer, miles);
+                returns++;
+                // A van back from a long hire is out of the pool until its inspection is cleared
+                if (vm.getVehicle(id).getState() == VehicleState.AWAITING_INSPECTION) {
+                    pushReturn(now + Math.max(0, inspectionHours.sample(random)), id, null, 0);
+                }
+            } else {
+                arrivals++;
+                CustomerRecord customer = pool[random.nextInt(customers)];
+                String type = random.nextDouble() < vanShare ? "van" : "car";
+                int duration = (int) Math.max(1, Math.round(hireDays.sample(random)));
+                Vehicle v = vm.hire(customer, type, duration);
+                if (v != null) {
+                    hires++;
+                    pushReturn(now + duration * HOURS_PER_DAY, v.getVehicleID(), customer, duration);
+                } else {
+                    rejections++;
+                }
+                nextArrival = now + interArrivalHours.sample(random);
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        // Account for the time between the last event and the end of the run
+        carHours += analytics.getHiredCount("car") * (end - now);
+        vanHours += analytics.getHiredCount("van") * (end - now);
+        return new Result(days, arrivals, hires, rejections, returns, inspections, wallNanos,
+                carFleet == 0 ? 0.0 : carHours / (carFleet * end), vanFleet == 0 ? 0.0 : vanHours / (vanFleet * end));
+    }
+
+    /**
+     * Schedules a return or inspection clearance, growing the heap arrays when full.
+     * @param time the virtual event time in hours
+     * @param v the ID of the vehicle
+     * @param customer the customer who hired it, or null for an inspection clearance
+     * @param days the hire duration in days
+     */
+    private void pushReturn(double time, VehicleID v, CustomerRecord customer, int days) {
+        if (pending == returnTimes.length) {
+            int size = pending * 2;
+            returnTimes = Arrays.copyOf(returnTimes, size);
+            returnVehicles = Arrays.copyOf(returnVehicles, size);
+            returnCustomers = Arrays.copyOf(returnCustomers, size);
+            returnDays = Arrays.copyOf(returnDays, size);
+        }
+        // Sift up from the new leaf
+        int i = pending++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (returnTimes[parent] <= time) break;
+            move(parent, i);
+            i = parent;
+        }
+        returnTimes[i] = time;
+        returnVehicles[i] = v;
+        returnCustomers[i] = customer;
+        returnDays[i] = days;
+    }
+
+    /**
+     * Removes the earliest event from the heap.
+     */
+    private void popReturn() {
+        int last = --pending;
+        double time = returnTimes[last];
+        VehicleID v = returnVehicles[last];
+        CustomerRecord customer = returnCustomers[last];
+        int days = returnDays[last];
+        returnVehicles[last] = null;
+        returnCustomers[last] = null;
+        if (last == 0) return;
+
+        // Sift the last entry down from the root
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= last) break;
+            if (child + 1 < last && returnTimes[child + 1] < returnTimes[child]) child++;
+            if (returnTimes[child] >= time) break;
+            move(child, i);
+            i = child;
+        }
+        returnTimes[i] = time;
+        returnVehicles[i] = v;
+        returnCustomers[i] = customer;
+        returnDays[i] = days;
+    }
+
+    /**
+     * Copies a heap entry from one slot to another.
+     * @param from the source slot
+     * @param to the target slot
+     */
+    private void move(int from, int to) {
+        returnTimes[to] = returnTimes[from];
+        returnVehicles[to] = returnVehicles[from];
+        returnCustomers[to] = returnCustomers[from];
+        returnDays[to] = returnDays[from];
+    }
+}
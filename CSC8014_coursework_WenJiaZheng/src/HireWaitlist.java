@@ -0,0 +1,203 @@
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class queues hire requests that found no free vehicle, first come first served per vehicle type.
+ * When a vehicle of the type is freed, the manager hands it straight to the oldest live request.
+ * Each request times out on its own; a timed-out or cancelled request is claimed so that it is never
+ * also handed a vehicle, and it is dropped lazily when it reaches the head of its queue.
+ * The queues are only used while the manager's lock is held.
+ */
+public final class HireWaitlist {
+    // One timer thread for every waitlist; cancelled timeouts are removed at once
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "hire-waitlist");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final int maxWaitersPerType;
+    private final Map<String, ArrayDeque<Waiter>> queues = new HashMap<>();
+    private final LongAdder handedOff = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    /**
+     * One waiting hire request.
+     */
+    static final class Waiter {
+        private final CustomerRecord customer;
+        private final int duration;
+        private final CompletableFuture<Vehicle> future = new CompletableFuture<>();
+        // Set by whichever of the hand-off and the timeout gets the request first
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private ScheduledFuture<?> timeout;
+
+        /**
+         * Constructs a waiting request.
+         * @param customer the customer requesting the hire
+         * @param duration the rental duration in days
+         */
+        private Waiter(CustomerRecord customer, int duration) {
+            this.customer = customer;
+            this.duration = duration;
+        }
+
+        /**
+         * Returns the customer requesting the hire.
+         * @return the CustomerRecord
+         */
+        CustomerRecord getCustomer() {
+            return customer;
+        }
+
+        /**
+         * Returns the rental duration.
+         * @return the duration in days
+         */
+        int getDuration() {
+            return duration;
+        }
+
+        /**
+         * Completes the request with the hired vehicle.
+         * @param v the vehicle hired for the customer
+         * @return true if the caller received the vehicle, false if it had already cancelled
+         */
+        boolean deliver(Vehicle v) {
+            return future.complete(v);
+        }
+
+        /**
+         * Fails the request because the customer is no longer allowed the hire.
+         * @param reason why the hire was refused
+         */
+        void refuse(String reason) {
+            future.completeExceptionally(new IllegalStateException(reason));
+        }
+
+        /**
+         * Indicates whether the request can no longer be handed a vehicle.
+         * @return true if it was claimed or completed, false otherwise
+         */
+        private boolean isDead() {
+            return claimed.get() || future.isDone();
+        }
+    }
+
+    /**
+     * Constructs an empty waitlist.
+     * @param maxWaitersPerType the maximum number of requests waiting for each vehicle type
+     * @throws IllegalArgumentException if maxWaitersPerType is not positive
+     */
+    public HireWaitlist(int maxWaitersPerType) {
+        if (maxWaitersPerType <= 0) {
+            throw new IllegalArgumentException("Waitlist size must be positive");
+        }
+        this.maxWaitersPerType = maxWaitersPerType;
+    }
+
+    /**
+     * Queues a request behind those already waiting for the type.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @param customer the customer requesting the hire
+     * @param duration the rental duration in days
+     * @param timeoutMillis how long the request may wait, in milliseconds
+     * @return a future completed with the hired vehicle, or with a TimeoutException if none was freed in time
+     * @throws IllegalStateException if the queue for the type is full
+     */
+    CompletableFuture<Vehicle> enqueue(String vehicleType, CustomerRecord customer, int duration,
+                                       long timeoutMillis) {
+        ArrayDeque<Waiter> queue = queues.computeIfAbsent(vehicleType.toLowerCase(), k -> new ArrayDeque<>());
+        if (queue.size() >= maxWaitersPerType) {
+            queue.removeIf(Waiter::isDead);
+            if (queue.size() >= maxWaitersPerType) {
+                throw new IllegalStateException("Waitlist for " + vehicleType + " is full");
+            }
+        }
+        Waiter w = new Waiter(customer, duration);
+        w.timeout = TIMER.schedule(() -> {
+            if (!w.future.isDone() && w.claimed.compareAndSet(false, true)) {
+                expired.increment();
+                w.future.completeExceptionally(new TimeoutException("No " + vehicleType + " was freed in time"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        queue.add(w);
+        return w.future;
+    }
+
+    /**
+     * Claims the oldest live request for a type, dropping dead ones on the way.
+     * @param vehicleType the vehicle type
+     * @return the claimed request, or null if none is waiting
+     */
+    Waiter next(String vehicleType) {
+        ArrayDeque<Waiter> queue = queues.get(vehicleType.toLowerCase());
+        if (queue == null) return null;
+        Waiter w;
+        while ((w = queue.poll()) != null) {
+            if (!w.future.isDone() && w.claimed.compareAndSet(false, true)) {
+                w.timeout.cancel(false);
+                handedOff.increment();
+                return w;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indicates whether any live request is waiting for a type.
+     * @param vehicleType the vehicle type
+     * @return true if a request is waiting, false otherwise
+     */
+    boolean hasWaiters(String vehicleType) {
+        ArrayDeque<Waiter> queue = queues.get(vehicleType.toLowerCase());
+        if (queue == null) return false;
+        while (!queue.isEmpty() && queue.peek().isDead()) {
+            queue.poll();
+        }
+        return !queue.isEmpty();
+    }
+
+    /**
+     * Returns the number of live requests waiting for a type.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the waiting count
+     */
+    int getWaitingCount(String vehicleType) {
+        ArrayDeque<Waiter> queue = queues.get(vehicleType.toLowerCase());
+        if (queue == null) return 0;
+        int n = 0;
+        for (Waiter w : queue) {
+            if (!w.isDead()) n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of requests that were chosen for a freed vehicle.
+     * @return the hand-off count
+     */
+    public long getHandedOffCount() {
+        return handedOff.sum();
+    }
+
+    /**
+     * Returns the number of requests that timed out.
+     * @return the expired count
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+}
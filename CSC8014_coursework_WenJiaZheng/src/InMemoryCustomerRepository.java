@@ -0,0 +1,58 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps customer records in a map on the heap. It is the default customer repository.
+ * Lookups need no lock while customers are being added.
+ */
+public final class InMemoryCustomerRepository implements CustomerRepository {
+    private final Map<String, CustomerRecord> customers = new ConcurrentHashMap<>();
+    // Records in the order they were added, for snapshots
+    private final List<CustomerRecord> ordered = new ArrayList<>();
+
+    /**
+     * Stores a new customer record.
+     * @param customer the record to store
+     */
+    @Override
+    public void add(CustomerRecord customer) {
+        customers.put(customer.getCustomerID(), customer);
+        synchronized (ordered) {
+            ordered.add(customer);
+        }
+    }
+
+    /**
+     * Finds a customer record by ID.
+     * @param customerID the customer ID
+     * @return the record, or null if there is none
+     */
+    @Override
+    public CustomerRecord find(String customerID) {
+        return customers.get(customerID);
+    }
+
+    /**
+     * Returns the number of stored customers.
+     * @return the customer count
+     */
+    @Override
+    public int size() {
+        return customers.size();
+    }
+
+    /**
+     * Returns a copy of the customers stored so far, in the order they were added.
+     * @return an unmodifiable list of customers
+     */
+    @Override
+    public Collection<CustomerRecord> snapshot() {
+        synchronized (ordered) {
+            return Collections.unmodifiableList(new ArrayList<>(ordered));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps vehicles in a map on the heap. It is the default vehicle repository.
+ */
+public final class InMemoryVehicleRepository implements VehicleRepository {
+    private final Map<VehicleID, Vehicle> vehicles = new LinkedHashMap<>();
+
+    /**
+     * Stores a new vehicle.
+     * @param v the vehicle to store
+     */
+    @Override
+    public void add(Vehicle v) {
+        vehicles.put(v.getVehicleID(), v);
+    }
+
+    /**
+     * Finds a vehicle by ID.
+     * @param id the vehicle ID
+     * @return the vehicle, or null if there is none
+     */
+    @Override
+    public Vehicle find(VehicleID id) {
+        return vehicles.get(id);
+    }
+
+    /**
+     * Nothing to do: the stored object is the changed vehicle.
+     * @param v the changed vehicle
+     * @param renterID the ID of the customer hiring it, or null
+     */
+    @Override
+    public void update(Vehicle v, String renterID) {
+    }
+
+    /**
+     * Returns all stored vehicles, in the order they were added.
+     * @return an unmodifiable view of the vehicles
+     */
+    @Override
+    public Collection<Vehicle> findAll() {
+        return Collections.unmodifiableCollection(vehicles.values());
+    }
+
+    /**
+     * Returns the number of stored vehicles.
+     * @return the vehicle count
+     */
+    @Override
+    public int size() {
+        return vehicles.size();
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class stores customer records in an SQL database through JDBC, such as an embedded in-process
+ * database. Only queued records are kept on the heap: snapshots are views that read the database
+ * while they are iterated, so the manager does not copy the customer base onto the heap.
+ * New records are queued and inserted in batches, one transaction per batch; queued records are
+ * still found by lookups. Lookups use a cached prepared statement.
+ * Lookups run outside the manager's lock, so this repository needs a connection of its own: one
+ * shared with a JdbcVehicleRepository would be used by two threads at once.
+ * The caller owns the connection and closes it after this repository.
+ */
+public final class JdbcCustomerRepository implements CustomerRepository, Closeable {
+    private static final String CREATE = "CREATE TABLE IF NOT EXISTS customer (seq INT PRIMARY KEY, "
+            + "id VARCHAR(32) NOT NULL UNIQUE, first_name VARCHAR(255) NOT NULL, last_name VARCHAR(255) NOT NULL, "
+            + "dob BIGINT NOT NULL, license BOOLEAN NOT NULL)";
+    private static final String INSERT = "INSERT INTO customer (seq, id, first_name, last_name, dob, license) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String COUNT = "SELECT COUNT(*) FROM customer";
+    private static final String SELECT = "SELECT id, first_name, last_name, dob, license FROM customer";
+    private static final String FIND = SELECT + " WHERE id = ?";
+    private static final String FIRST = SELECT + " WHERE seq <= ? ORDER BY seq";
+
+    private final Connection connection;
+    private final StatementCache statements;
+    private final int batchSize;
+    // Queued records, in the order they were added
+    private final Map<String, CustomerRecord> pending = new LinkedHashMap<>();
+    private volatile int count;
+    private long batches;
+
+    /**
+     * Opens the repository, creating the customer table if it does not exist.
+     * Customers already in the table are kept, and the manager issues IDs after them.
+     * @param connection a database connection used by nothing else; auto-commit is turned off
+     * @param batchSize the number of queued records that triggers a write
+     * @throws RepositoryException if the table can not be created or counted
+     * @throws IllegalArgumentException if connection is null or batchSize is not positive
+     */
+    public JdbcCustomerRepository(Connection connection, int batchSize) {
+        if (connection == null || batchSize <= 0) {
+            throw new IllegalArgumentException("Connection can not be null and batch size must be positive");
+        }
+        this.connection = connection;
+        this.statements = new StatementCache(connection);
+        this.batchSize = batchSize;
+        try (Statement create = connection.createStatement()) {
+            create.execute(CREATE);
+            connection.setAutoCommit(false);
+            try (ResultSet rows = create.executeQuery(COUNT)) {
+                count = rows.next() ? rows.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Could not open customer table", e);
+        }
+    }
+
+    /**
+     * Stores a new customer record; it is written with the next batch.
+     * @param customer the record to store
+     * @throws RepositoryException if it fills a batch that can not be written; the record is not stored,
+     *                             and the records queued before it stay queued
+     */
+    @Override
+    public synchronized void add(CustomerRecord customer) {
+        pending.put(customer.getCustomerID(), customer);
+        count++;
+        if (pending.size() >= batchSize) {
+            try {
+                flush();
+            } catch (RepositoryException e) {
+                pending.remove(customer.getCustomerID());
+                count--;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Finds a customer record by ID, among the queued records or in the database.
+     * @param customerID the customer ID
+     * @return the record, or null if there is none
+     * @throws RepositoryException if the database can not be read
+     */
+    @Override
+    public synchronized CustomerRecord find(String customerID) {
+        CustomerRecord queued = pending.get(customerID);
+        if (queued != null) return queued;
+        try {
+            PreparedStatement find = statements.get(FIND);
+            find.setString(1, customerID);
+            try (ResultSet rows = find.executeQuery()) {
+                return rows.next() ? read(rows) : null;
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Could not read customer " + customerID, e);
+        }
+    }
+
+    /**
+     * Returns the number of stored customers, including queued ones.
+     * @return the customer count
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the customers stored so far, in the order they were added. The view holds no records:
+     * each iteration reads the written ones from the database, followed by those still queued.
+     * As records never change, the view stays the same however many customers are added later.
+     * @return an unmodifiable view of the stored customers
+     */
+    @Override
+    public Collection<CustomerRecord> snapshot() {
+        int n = count;
+        return new AbstractCollection<CustomerRecord>() {
+            @Override
+            public Iterator<CustomerRecord> iterator() {
+                return firstRecords(n).iterator();
+            }
+
+            @Override
+            public int size() {
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Indicates that snapshot() returns a view over the database rather than a copy.
+     * @return true
+     */
+    @Override
+    public boolean hasSnapshotView() {
+        return true;
+    }
+
+    /**
+     * Reads the first customers in the order they were added.
+     * @param limit the number of customers to read
+     * @return the customers, read from the database and then from the queue
+     * @throws RepositoryException if the database can not be read
+     */
+    private synchronized List<CustomerRecord> firstRecords(int limit) {
+        int written = count - pending.size();
+        List<CustomerRecord> result = new ArrayList<>(limit);
+        try {
+            PreparedStatement first = statements.get(FIRST);
+            first.setInt(1, Math.min(limit, written));
+            try (ResultSet rows = first.executeQuery()) {
+                while (rows.next()) result.add(read(rows));
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Could not read customers", e);
+        }
+        // Queued records follow the written ones in sequence
+        for (CustomerRecord c : pending.values()) {
+            if (result.size() >= limit) break;
+            result.add(c);
+        }
+        return result;
+    }
+
+    /**
+     * Builds a customer record from the current row.
+     * @param rows the result set positioned on a row
+     * @return the customer record
+     * @throws SQLException if the row can not be read
+     */
+    private static CustomerRecord read(ResultSet rows) throws SQLException {
+        return new CustomerRecord(new Name(rows.getString(2), rows.getString(3)),
+                new Date(rows.getLong(4)), rows.getBoolean(5), rows.getString(1));
+    }
+
+    /**
+     * Writes all queued records in one transaction.
+     * @throws RepositoryException if the records can not be written; they stay queued
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) return;
+        PreparedStatement insert = null;
+        try {
+            insert = statements.get(INSERT);
+            int seq = count - pending.size();
+            for (CustomerRecord c : pending.values()) {
+                insert.setInt(1, ++seq);
+                insert.setString(2, c.getCustomerID());
+                insert.setString(3, c.getName().getFirstName());
+                insert.setString(4, c.getName().getLastName());
+                insert.setLong(5, c.getDateOfBirth().getTime());
+                insert.setBoolean(6, c.hasCommercialLicense());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            StatementCache.abort(connection, e, insert);
+            throw new RepositoryException("Could not write customers", e);
+        }
+        pending.clear();
+        batches++;
+    }
+
+    /**
+     * Returns the number of batches written.
+     * @return the batch count
+     */
+    public synchronized long getBatchCount() {
+        return batches;
+    }
+
+    /**
+     * Writes the queued records and closes the cached statements. The connection is left open.
+     * @throws RepositoryException if the records or statements can not be written or closed
+     */
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            statements.close();
+        } catch (SQLException e) {
+            throw new RepositoryException("Could not close customer statements", e);
+        }
+    }
+}
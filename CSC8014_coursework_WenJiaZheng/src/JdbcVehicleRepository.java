@@ -0,0 +1,279 @@
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class persists vehicles to an SQL database through JDBC, such as an embedded in-process database.
+ * The manager works on live Vehicle objects, so they are also kept on the heap; the database holds
+ * each vehicle's type, state, mileage, inspection flag and renter, and the vehicles are read back
+ * when the repository is opened. Changes are written behind in batches: new vehicles and
+ * changed vehicles are queued, several changes to one vehicle are written once, and each batch is
+ * one transaction using cached prepared statements.
+ * A batch that can not be written stays queued and is retried with the next one, so add and update
+ * never fail once the manager has changed its state; flush and close report the failure.
+ * The repository needs a connection of its own: one shared with a JdbcCustomerRepository, whose
+ * lookups run outside the manager's lock, would be used by two threads at once.
+ * The caller owns the connection and closes it after this repository.
+ */
+public final class JdbcVehicleRepository implements VehicleRepository, Closeable {
+    private static final String CREATE = "CREATE TABLE IF NOT EXISTS vehicle (seq INT PRIMARY KEY, "
+            + "id VARCHAR(16) NOT NULL UNIQUE, type VARCHAR(8) NOT NULL, state VARCHAR(24) NOT NULL, "
+            + "mileage INT NOT NULL, inspection BOOLEAN NOT NULL, renter VARCHAR(32))";
+    private static final String SELECT = "SELECT id, type, state, mileage, inspection, renter FROM vehicle ORDER BY seq";
+    private static final String INSERT = "INSERT INTO vehicle (seq, id, type, state, mileage, inspection, renter) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE vehicle SET state = ?, mileage = ?, inspection = ?, renter = ? "
+            + "WHERE id = ?";
+
+    private final Connection connection;
+    private final StatementCache statements;
+    private final int batchSize;
+    private final Map<VehicleID, Vehicle> vehicles = new LinkedHashMap<>();
+    // Each vehicle's position in the order vehicles were added, from 1
+    private final Map<VehicleID, Integer> sequence = new HashMap<>();
+    private final Map<VehicleID, String> renters = new HashMap<>();
+    private final Map<Vehicle, String> pendingInserts = new LinkedHashMap<>();
+    private final Map<Vehicle, String> pendingUpdates = new LinkedHashMap<>();
+    private long batches;
+    private long failedBatches;
+
+    /**
+     * Opens the repository, creating the vehicle table if it does not exist and reading back
+     * the vehicles already in it.
+     * @param connection a database connection used by nothing else; auto-commit is turned off
+     * @param batchSize the number of queued changes that triggers a write
+     * @throws RepositoryException if the table can not be created or read
+     * @throws IllegalArgumentException if connection is null, batchSize is not positive,
+     *                                  or a stored vehicle is invalid
+     */
+    public JdbcVehicleRepository(Connection connection, int batchSize) {
+        if (connection == null || batchSize <= 0) {
+            throw new IllegalArgumentException("Connection can not be null and batch size must be positive");
+        }
+        this.connection = connection;
+        this.statements = new StatementCache(connection);
+        this.batchSize = batchSize;
+        try (Statement create = connection.createStatement()) {
+            create.execute(CREATE);
+            connection.setAutoCommit(false);
+            try (ResultSet rows = create.executeQuery(SELECT)) {
+                while (rows.next()) load(rows);
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Could not open vehicle table", e);
+        }
+    }
+
+    /**
+     * Rebuilds a stored vehicle from the current row.
+     * @param rows the result set positioned on a row
+     * @throws SQLException if the row can not be read
+     * @throws IllegalArgumentException if the stored ID, type or state is invalid
+     */
+    private void load(ResultSet rows) throws SQLException {
+        VehicleID id = VehicleID.restore(rows.getString(1));
+        String type = rows.getString(2);
+        AbstractVehicle v;
+        if (type.equalsIgnoreCase("car")) {
+            v = new Car(id);
+        } else if (type.equalsIgnoreCase("van")) {
+            v = new Van(id);
+        } else {
+            throw new IllegalArgumentException("Invalid vehicle type: " + type);
+        }
+        v.restore(VehicleState.valueOf(rows.getString(3)), rows.getInt(4), rows.getBoolean(5));
+        vehicles.put(id, v);
+        sequence.put(id, vehicles.size());
+        String renter = rows.getString(6);
+        if (renter != null) renters.put(id, renter);
+    }
+
+    /**
+     * Stores a new vehicle; it is written with the next batch.
+     * @param v the vehicle to store
+     */
+    @Override
+    public synchronized void add(Vehicle v) {
+        vehicles.put(v.getVehicleID(), v);
+        sequence.put(v.getVehicleID(), vehicles.size());
+        pendingInserts.put(v, null);
+        flushIfFull();
+    }
+
+    /**
+     * Finds a vehicle by ID.
+     * @param id the vehicle ID
+     * @return the vehicle, or null if there is none
+     */
+    @Override
+    public synchronized Vehicle find(VehicleID id) {
+        return vehicles.get(id);
+    }
+
+    /**
+     * Queues a changed vehicle; its state at the time of the next batch is written.
+     * @param v the changed vehicle
+     * @param renterID the ID of the customer hiring it, or null if it is not hired
+     */
+    @Override
+    public synchronized void update(Vehicle v, String renterID) {
+        if (renterID == null) {
+            renters.remove(v.getVehicleID());
+        } else {
+            renters.put(v.getVehicleID(), renterID);
+        }
+        // A queued insert already writes the latest state
+        if (pendingInserts.containsKey(v)) {
+            pendingInserts.put(v, renterID);
+        } else {
+            pendingUpdates.put(v, renterID);
+            flushIfFull();
+        }
+    }
+
+    /**
+     * Returns the customer recorded as hiring a vehicle.
+     * @param id the vehicle ID
+     * @return the renter's customer ID, or null if none is recorded
+     */
+    @Override
+    public synchronized String findRenter(VehicleID id) {
+        return renters.get(id);
+    }
+
+    /**
+     * Returns all stored vehicles, in the order they were added.
+     * @return an unmodifiable view of the vehicles
+     */
+    @Override
+    public synchronized Collection<Vehicle> findAll() {
+        return Collections.unmodifiableCollection(vehicles.values());
+    }
+
+    /**
+     * Returns the number of stored vehicles.
+     * @return the vehicle count
+     */
+    @Override
+    public synchronized int size() {
+        return vehicles.size();
+    }
+
+    /**
+     * Writes the queued changes if there are enough for a batch.
+     * A failed write is counted and left queued for the next batch.
+     */
+    private void flushIfFull() {
+        if (pendingInserts.size() + pendingUpdates.size() >= batchSize) {
+            try {
+                flush();
+            } catch (RepositoryException e) {
+                failedBatches++;
+            }
+        }
+    }
+
+    /**
+     * Writes all queued changes in one transaction.
+     * @throws RepositoryException if the changes can not be written; they stay queued
+     */
+    public synchronized void flush() {
+        if (pendingInserts.isEmpty() && pendingUpdates.isEmpty()) return;
+        PreparedStatement insert = null;
+        PreparedStatement update = null;
+        try {
+            if (!pendingInserts.isEmpty()) {
+                insert = statements.get(INSERT);
+                for (Map.Entry<Vehicle, String> e : pendingInserts.entrySet()) {
+                    Vehicle v = e.getKey();
+                    insert.setInt(1, sequence.get(v.getVehicleID()));
+                    insert.setString(2, v.getVehicleID().toString());
+                    insert.setString(3, v.getVehicleType().toLowerCase());
+                    setState(insert, 4, v, e.getValue());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            if (!pendingUpdates.isEmpty()) {
+                update = statements.get(UPDATE);
+                for (Map.Entry<Vehicle, String> e : pendingUpdates.entrySet()) {
+                    Vehicle v = e.getKey();
+                    setState(update, 1, v, e.getValue());
+                    update.setString(5, v.getVehicleID().toString());
+                    update.addBatch();
+                }
+                update.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            StatementCache.abort(connection, e, insert, update);
+            throw new RepositoryException("Could not write vehicles", e);
+        }
+        pendingInserts.clear();
+        pendingUpdates.clear();
+        batches++;
+    }
+
+    /**
+     * Sets the state, mileage, inspection flag and renter parameters of a statement.
+     * @param statement the INSERT or UPDATE statement
+     * @param first the index of the state parameter; the others follow it
+     * @param v the vehicle
+     * @param renterID the ID of the customer hiring it, or null
+     * @throws SQLException if a parameter can not be set
+     */
+    private static void setState(PreparedStatement statement, int first, Vehicle v, String renterID)
+            throws SQLException {
+        statement.setString(first, v.getState().name());
+        statement.setInt(first + 1, v.getCurrentMileage());
+        statement.setBoolean(first + 2, v instanceof AbstractVehicle && v.getState() == VehicleState.HIRED
+                && ((AbstractVehicle) v).isInspectionDue());
+        statement.setString(first + 3, renterID);
+    }
+
+    /**
+     * Returns the number of batches written.
+     * @return the batch count
+     */
+    public synchronized long getBatchCount() {
+        return batches;
+    }
+
+    /**
+     * Returns the number of batch writes that failed and were left queued for a retry.
+     * @return the failed batch count
+     */
+    public synchronized long getFailedBatchCount() {
+        return failedBatches;
+    }
+
+    /**
+     * Returns the number of statements prepared on the connection.
+     * @return the prepared statement count
+     */
+    public synchronized int getPreparedCount() {
+        return statements.getPreparedCount();
+    }
+
+    /**
+     * Writes the queued changes and closes the cached statements. The connection is left open.
+     * @throws RepositoryException if the changes or statements can not be written or closed
+     */
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            statements.close();
+        } catch (SQLException e) {
+            throw new RepositoryException("Could not close vehicle statements", e);
+        }
+    }
+}
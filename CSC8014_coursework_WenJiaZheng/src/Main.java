@@ -3,7 +3,14 @@
  * Runs boundary tests, exception handling tests, and ID generation validation.
  */
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
 public class Main {
 
     /**
@@ -22,6 +29,81 @@ public class Main {
             testHiringLimit();
             testServiceMileageBoundary();
 
+            //Configurable rules testing
+            testRulesReload();
+
+            //Fleet analytics testing
+            testFleetAnalytics();
+
+            //Snapshot view testing
+            testSnapshots();
+
+            //Event stream testing
+            testEventStream();
+
+            //CSV import testing
+            testCsvImport();
+
+            //Load simulation testing
+            testSimulation();
+
+            //Concurrency testing
+            testConcurrentStress();
+
+            //Vehicle selection testing
+            testSelectionStrategies();
+
+            //Customer search testing
+            testCustomerSearch();
+
+            //Disk-backed customer store testing
+            testDiskCustomerStore();
+
+            //Hire history testing
+            testHireHistory();
+
+            //Hire log export testing
+            testHireLogExport();
+
+            //Quote engine testing
+            testQuotes();
+
+            //Idempotent request testing
+            testIdempotentRequests();
+
+            //Admission control testing
+            testAdmissionControl();
+
+            //Vehicle state machine testing
+            testVehicleStateMachine();
+
+            //Repository testing
+            testRepositories();
+
+            //Multi-vehicle hire testing
+            testMultiVehicleHire();
+
+            //Renter index testing
+            testRenterIndex();
+
+            //Telematics ingestion testing
+            testTelematics();
+
+            //Workshop scheduler testing
+            testWorkshopScheduler();
+
+            //Hire waitlist testing
+            testHireWaitlist();
+
+            //Asynchronous API testing
+            testAsyncVehicleManager();
+
+            //Binary protocol server testing
+            testFleetServer();
+
+            //Allocation-free hot path testing
+            testHotPathAllocation();
+
             //ID generation and uniqueness testing
             testVehicleIDRandomness();
 
@@ -177,6 +259,1752 @@ public class Main {
         System.out.println("Service Mileage Boundary tests (Car 10000 / Van 5000 reset): PASSED");
     }
 
+    /**
+     * Verifies that hire rules can be reloaded from a file while the system runs.
+     * @throws Exception if the temporary rules file can not be written
+     */
+    public static void testRulesReload() throws Exception {
+        VehicleManager vm = new VehicleManager();
+        for (int i = 0; i < 3; i++) vm.addVehicle("car");
+
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.YEAR, -19);
+        CustomerRecord tester = vm.addCustomerRecord("Christy", "RulesTester", cal.getTime(), false);
+
+        // Tighten the rules: 21+ for car, max 1 vehicle per customer
+        Path file = Files.createTempFile("hire-rules", ".properties");
+        Files.writeString(file, "car.minAge=21\ncustomer.maxVehicles=1\n");
+        try {
+            vm.reloadRules(file);
+            Assertions.assertFalse(vm.hireVehicle(tester, "car", 1));
+
+            // Relax the age limit only; the cap of 1 still applies
+            Files.writeString(file, "car.minAge=18\ncustomer.maxVehicles=1\n");
+            vm.reloadRules(file);
+            Assertions.assertTrue(vm.hireVehicle(tester, "car", 1));
+            Assertions.assertFalse(vm.hireVehicle(tester, "car", 1));
+
+            // An invalid file must not replace the current rules
+            Files.writeString(file, "customer.maxVehicles=many\n");
+            try {
+                vm.reloadRules(file);
+                Assertions.assertNotReached();
+            } catch (IllegalArgumentException e) {
+                Assertions.assertEquals(1, vm.getRules().getMaxVehiclesPerCustomer());
+            }
+
+            // A misspelt boolean is rejected rather than read as false
+            Files.writeString(file, "van.commercialLicenseRequired=ture\n");
+            try {
+                vm.reloadRules(file);
+                Assertions.assertNotReached();
+            } catch (IllegalArgumentException e) {
+                Assertions.assertTrue(vm.getRules().isVanLicenseRequired());
+            }
+            Files.writeString(file, "van.commercialLicenseRequired= FALSE\n");
+            Assertions.assertFalse(vm.reloadRules(file).isVanLicenseRequired());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        System.out.println("Rules reload tests (file-based limits): PASSED");
+    }
+
+    /**
+     * Verifies that the parallel fleet reports agree with the incremental rollups.
+     */
+    public static void testFleetAnalytics() {
+        VehicleManager vm = new VehicleManager();
+        for (int i = 0; i < 4; i++) vm.addVehicle("car");
+        vm.addVehicle("van");
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1991, Calendar.JANUARY, 1);
+        CustomerRecord tester = vm.addCustomerRecord("Christy", "Analytics", cal.getTime(), false);
+        vm.hireVehicle(tester, "car", 1);
+        Vehicle car = vm.getVechilesByCustomer(tester).iterator().next();
+        vm.returnVehicle(car.getVehicleID(), tester, 9500);
+        vm.hireVehicle(tester, "car", 1);
+
+        FleetAnalytics analytics = vm.getAnalytics();
+        Assertions.assertEquals(4, analytics.getFleetSize("car"));
+        Assertions.assertEquals(1, analytics.getHiredCount("car"));
+        Assertions.assertEquals(analytics.getUtilization("car"), analytics.utilizationByType().get("car"));
+        Assertions.assertEquals(0.0, analytics.utilizationByType().get("van"));
+        Assertions.assertEquals(9500.0 / 4, analytics.getAverageMileage("car"));
+
+        // Only the returned car is within 1,000 miles of its service
+        Assertions.assertEquals(1L, analytics.serviceDueByType(1000).get("car"));
+        Assertions.assertEquals(1L, analytics.mileageDistribution(1000).get("car").get(9000));
+
+        // Daily utilization is hired vehicle-time over fleet vehicle-time, split at midnight
+        Calendar day = Calendar.getInstance();
+        day.clear();
+        day.set(2024, Calendar.MARCH, 4);
+        long hour = 60 * 60 * 1000L;
+        long[] now = {day.getTimeInMillis()};
+        FleetAnalytics daily = new FleetAnalytics(null, () -> now[0]);
+        Car first = new Car(VehicleID.getInstance("car"));
+        Car second = new Car(VehicleID.getInstance("car"));
+        daily.vehicleAdded(first);
+        daily.vehicleAdded(second);
+        now[0] += 6 * hour;
+        daily.hireStatusChanged(first, true);
+        now[0] += 12 * hour;
+        daily.hireStatusChanged(first, false);
+        now[0] += 2 * hour;
+        daily.hireStatusChanged(second, true);
+        now[0] += 8 * hour;
+        Assertions.assertEquals(0.5, daily.getUtilization("car"));
+        // 12 + 4 hired hours of 48 on the first day, 4 of 8 so far on the second
+        Assertions.assertEquals(16.0 / 48, daily.getDailyUtilization("car", day.getTime()));
+        day.add(Calendar.DAY_OF_MONTH, 1);
+        Assertions.assertEquals(0.5, daily.getDailyUtilization("car", day.getTime()));
+        day.add(Calendar.DAY_OF_MONTH, 1);
+        Assertions.assertEquals(0.0, daily.getDailyUtilization("car", day.getTime()));
+
+        System.out.println("Fleet analytics tests (parallel scan vs rollups, daily utilization): PASSED");
+    }
+
+    /**
+     * Verifies that snapshots stay unchanged after later hires and share unchanged parts.
+     */
+    public static void testSnapshots() {
+        VehicleManager vm = new VehicleManager();
+        vm.addVehicle("car");
+        vm.addVehicle("car");
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1991, Calendar.JANUARY, 1);
+        CustomerRecord tester = vm.addCustomerRecord("Christy", "Snapshot", cal.getTime(), false);
+
+        FleetSnapshot before = vm.snapshot();
+        Assertions.assertTrue(before == vm.snapshot());
+        Assertions.assertTrue(before.getHiredVehicles().isEmpty());
+
+        vm.hireVehicle(tester, "car", 1);
+        FleetSnapshot after = vm.snapshot();
+
+        // The old snapshot is unaffected; the new one sees the hire
+        Assertions.assertTrue(before.getHiredVehicles().isEmpty());
+        Assertions.assertEquals(1, after.getHiredVehicles().get(tester.getCustomerID()).size());
+        Assertions.assertTrue(after.getVersion() > before.getVersion());
+
+        // Customers did not change, so they are shared rather than copied
+        Assertions.assertTrue(before.getCustomers() == after.getCustomers());
+
+        // Vehicles are copied as they were: the old snapshot still shows every car free
+        for (Vehicle v : before.getAllVehicles()) {
+            Assertions.assertFalse(v.isHired());
+        }
+        Vehicle hired = after.getHiredVehicles().get(tester.getCustomerID()).iterator().next();
+        Assertions.assertTrue(hired.isHired());
+        Assertions.assertTrue(after.getAllVehicles().contains(hired));
+        Assertions.assertEquals(tester.getCustomerID(), ((VehicleView) hired).getRenterID());
+
+        // The live vehicle is equal to its view, so callers holding it find it in a snapshot
+        Vehicle live = vm.getVehicle(hired.getVehicleID());
+        Assertions.assertTrue(live.equals(hired) && hired.equals(live));
+        Assertions.assertEquals(live.hashCode(), hired.hashCode());
+        Assertions.assertTrue(vm.getAllVehicles().contains(live));
+        Assertions.assertTrue(vm.getHiredVehicles().get(tester.getCustomerID()).contains(live));
+        Assertions.assertTrue(new HashSet<>(after.getAllVehicles()).contains(live));
+        vm.returnVehicle(hired.getVehicleID(), tester, 120);
+        Assertions.assertTrue(hired.isHired());
+        Assertions.assertEquals(0, hired.getCurrentMileage());
+        Assertions.assertFalse(vm.snapshot().getHiredVehicles().containsKey(tester.getCustomerID()));
+        try {
+            hired.setCurrentMileage(0);
+            Assertions.assertNotReached();
+        } catch (UnsupportedOperationException e) {
+            // A snapshot vehicle can not be changed
+        }
+
+        // With publishing off, a stale snapshot is rebuilt on demand
+        vm.setSnapshotPublishing(false);
+        FleetSnapshot published = vm.snapshot();
+        vm.hireVehicle(tester, "car", 1);
+        FleetSnapshot rebuilt = vm.snapshot();
+        Assertions.assertTrue(published != rebuilt);
+        Assertions.assertEquals(1, rebuilt.getHiredVehicles().get(tester.getCustomerID()).size());
+        vm.setSnapshotPublishing(true);
+        Assertions.assertTrue(rebuilt == vm.snapshot());
+
+        // Appending and replacing share all but one path of the tree
+        List<Integer> expected = new ArrayList<>();
+        SnapshotVector<Integer> vector = SnapshotVector.empty();
+        for (int i = 0; i < 40_000; i++) {
+            expected.add(i);
+            vector = vector.plus(i);
+        }
+        Assertions.assertTrue(expected.equals(vector));
+        Assertions.assertTrue(expected.equals(SnapshotVector.copyOf(expected)));
+        SnapshotVector<Integer> changed = vector.with(33_000, -1);
+        Assertions.assertEquals(33_000, (int) vector.get(33_000));
+        Assertions.assertEquals(-1, (int) changed.get(33_000));
+        Assertions.assertEquals(32_999, (int) changed.get(32_999));
+
+        // Iterating a snapshot while hiring does not fail
+        for (Vehicle v : vm.getAllVehicles()) {
+            vm.hireVehicle(tester, "car", 1);
+        }
+
+        System.out.println("Snapshot tests (point-in-time views): PASSED");
+    }
+
+    /**
+     * Verifies that add, hire, inspection, return and service events reach a subscriber in order.
+     * @throws Exception if waiting for the events is interrupted
+     */
+    public static void testEventStream() throws Exception {
+        VehicleManager vm = new VehicleManager();
+        List<FleetEvent.Type> received = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> mileages = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(5);
+
+        vm.getEvents().subscribe(new Flow.Subscriber<FleetEvent>() {
+            private Flow.Subscription subscription;
+
+            public void onSubscribe(Flow.Subscription s) {
+                subscription = s;
+                s.request(1);
+            }
+
+            public void onNext(FleetEvent event) {
+                received.add(event.getType());
+                mileages.add(event.getMileage());
+                done.countDown();
+                subscription.request(1);
+            }
+
+            public void onError(Throwable t) { }
+
+            public void onComplete() { }
+        });
+
+        Vehicle van = vm.addVehicle("van");
+        Calendar cal = Calendar.getInstance();
+        cal.set(1991, Calendar.JANUARY, 1);
+        CustomerRecord tester = vm.addCustomerRecord("Christy", "Events", cal.getTime(), true);
+        vm.hireVehicle(tester, "van", 12);
+        vm.returnVehicle(van.getVehicleID(), tester, 5000);
+
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(Arrays.asList(FleetEvent.Type.VEHICLE_ADDED, FleetEvent.Type.INSPECTION_REQUIRED,
+                FleetEvent.Type.VEHICLE_HIRED, FleetEvent.Type.VEHICLE_RETURNED,
+                FleetEvent.Type.SERVICE_PERFORMED), received);
+        // The return carries the mileage the van came back with, the service the reset mileage
+        Assertions.assertEquals(Arrays.asList(0, 0, 0, 5000, 0), mileages);
+        Assertions.assertEquals(0, (int) vm.getEvents().getDroppedCount());
+        vm.getEvents().close();
+
+        System.out.println("Event stream tests (ordered delivery): PASSED");
+    }
+
+    /**
+     * Verifies that CSV imports insert valid rows and report invalid ones by line number.
+     * @throws Exception if the temporary files can not be written
+     */
+    public static void testCsvImport() throws Exception {
+        VehicleManager vm = new VehicleManager();
+        FleetImporter importer = new FleetImporter(vm, 2);
+
+        Path vehicleFile = Files.createTempFile("vehicles", ".csv");
+        Path customerFile = Files.createTempFile("customers", ".csv");
+        try {
+            Files.writeString(vehicleFile, "type\ncar\nvan\ntruck\nCar\n");
+            FleetImporter.ImportReport vehicles = importer.importVehicles(vehicleFile);
+            Assertions.assertEquals(3, vehicles.getImported());
+            Assertions.assertEquals(1, vehicles.getRejected());
+            Assertions.assertEquals("line 4: Invalid vehicle type: truck", vehicles.getErrors().get(0));
+            Assertions.assertEquals(2, vm.noOfAvailableVehicles("car"));
+
+            Files.writeString(customerFile, "firstName,lastName,dateOfBirth,commercialLicense\n"
+                    + "Christy,One,1991-01-01,true\n"
+                    + "Christy,Two,1991-13-01,false\n"
+                    + "Christy,One,1991-01-01,false\n"
+                    + "Christy,Three,2000-06-30,false\n");
+            FleetImporter.ImportReport customers = importer.importCustomers(customerFile);
+            Assertions.assertEquals(2, customers.getImported());
+            Assertions.assertEquals(2, customers.getRejected());
+            Assertions.assertEquals("line 3: Invalid date of birth: 1991-13-01", customers.getErrors().get(0));
+            Assertions.assertEquals("line 4: This customer record already exists", customers.getErrors().get(1));
+            Assertions.assertEquals(2, vm.getCustomers().size());
+
+            // A chunk larger than one hold of the lock is still inserted in file order
+            StringBuilder many = new StringBuilder();
+            for (int i = 0; i < 600; i++) {
+                many.append("Bulk,Customer").append(i).append(",1990-01-01,false\n");
+            }
+            Files.writeString(customerFile, many.toString());
+            Assertions.assertEquals(600, new FleetImporter(vm).importCustomers(customerFile).getImported());
+            Assertions.assertEquals("Customer602", vm.searchCustomers("Customer599", 0, 1).get(0).getCustomerID());
+
+            // Readers see a batch whole: nothing is published until it ends, even if it fails
+            FleetSnapshot beforeBatch = vm.snapshot();
+            vm.runBatch(() -> {
+                vm.addVehicle("car");
+                vm.addVehicle("van");
+                Assertions.assertTrue(vm.snapshot() == beforeBatch);
+            });
+            Assertions.assertEquals(beforeBatch.getAllVehicles().size() + 2, vm.snapshot().getAllVehicles().size());
+            FleetSnapshot beforeFailure = vm.snapshot();
+            try {
+                vm.runBatch(() -> {
+                    vm.addVehicle("car");
+                    vm.addVehicle("truck");
+                });
+                Assertions.assertNotReached();
+            } catch (IllegalArgumentException e) {
+                Assertions.assertEquals("Invalid vehicle type: truck", e.getMessage());
+            }
+            Assertions.assertEquals(beforeFailure.getAllVehicles().size() + 1, vm.snapshot().getAllVehicles().size());
+        } finally {
+            Files.deleteIfExists(vehicleFile);
+            Files.deleteIfExists(customerFile);
+        }
+
+        System.out.println("CSV import tests (per-row errors): PASSED");
+    }
+
+    /**
+     * Verifies that a simulated quarter of traffic keeps hires, returns and vehicles on hire consistent.
+     */
+    public static void testSimulation() {
+        HireSimulator simulator = new HireSimulator(20, 5, 200, 0.2,
+                HireSimulator.Distribution.exponential(0.5),
+                HireSimulator.Distribution.exponential(4),
+                HireSimulator.Distribution.uniform(20, 200), 42L);
+        HireSimulator.Result result = simulator.run(90);
+
+        Assertions.assertTrue(result.getHires() > 0);
+        Assertions.assertTrue(result.getRejections() > 0);
+        Assertions.assertEquals(result.getArrivals(), result.getHires() + result.getRejections());
+        Assertions.assertTrue(result.getReturns() <= result.getHires());
+        Assertions.assertTrue(result.getHires() - result.getReturns() <= 25);
+        Assertions.assertTrue(result.getUtilization("car") > 0 && result.getUtilization("car") <= 1);
+        Assertions.assertEquals(result.getArrivals() + result.getReturns() + result.getInspections(), result.getEvents());
+
+        // Returned vans are inspected after the configured delay, so none is left out of the pool
+        VehicleManager inspected = new VehicleManager();
+        HireSimulator.Result quick = new HireSimulator(0, 5, 200, 1.0,
+                HireSimulator.Distribution.exponential(0.5),
+                HireSimulator.Distribution.constant(12),
+                HireSimulator.Distribution.uniform(20, 200),
+                HireSimulator.Distribution.constant(2), 42L).run(inspected, 90);
+        Assertions.assertTrue(quick.getInspections() > 0);
+        Assertions.assertTrue(quick.getReturns() - quick.getInspections() <= 5);
+        Assertions.assertTrue(quick.getUtilization("van") > 0.5);
+        int awaiting = 0;
+        for (Vehicle v : inspected.getAllVehicles()) {
+            if (v.getState() == VehicleState.AWAITING_INSPECTION) awaiting++;
+        }
+        Assertions.assertEquals(quick.getReturns() - quick.getInspections(), (long) awaiting);
+
+        // The same traffic against a manager set up by the caller, here with wear levelling;
+        // the counts depend only on the seed, while the throughput is printed for comparison
+        HireSimulator.Result levelled = simulator.run(new VehicleManager(VehicleSelectionStrategy.leastMileage()), 90);
+        Assertions.assertEquals(levelled.getArrivals(), levelled.getHires() + levelled.getRejections());
+        Assertions.assertEquals(result.getArrivals(), levelled.getArrivals());
+        HireSimulator.Result repeat = simulator.run(90);
+        Assertions.assertEquals(result.getEvents(), repeat.getEvents());
+        Assertions.assertEquals(result.getHires(), repeat.getHires());
+
+        System.out.println("Simulation tests (" + result + "; " + levelled + "): PASSED");
+    }
+
+    /**
+     * Verifies that concurrent hires, returns and customer additions keep all invariants.
+     * @throws Exception if interrupted while waiting for the workers
+     */
+    public static void testConcurrentStress() throws Exception {
+        StressHarness.Result result = new StressHarness(4, 2, 8, 5000, 7L).run();
+        Assertions.assertEquals(Collections.emptyList(), result.getViolations());
+        Assertions.assertEquals(40000, (int) result.getOperations());
+
+        System.out.println("Concurrency stress tests (" + result.getOperations() + " ops, no violations): PASSED");
+    }
+
+    /**
+     * Verifies that the least-mileage and round-robin strategies spread hires across the fleet.
+     */
+    public static void testSelectionStrategies() {
+        VehicleManager vm = new VehicleManager(VehicleSelectionStrategy.leastMileage());
+        Vehicle worn = vm.addVehicle("car");
+        Vehicle fresh = vm.addVehicle("car");
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1991, Calendar.JANUARY, 1);
+        CustomerRecord tester = vm.addCustomerRecord("Christy", "Selection", cal.getTime(), false);
+
+        // Put miles on one car, then the other car must be chosen next
+        vm.hireVehicle(tester, "car", 1);
+        Vehicle first = vm.getVechilesByCustomer(tester).iterator().next();
+        vm.returnVehicle(first.getVehicleID(), tester, 3000);
+        Vehicle other = first == worn ? fresh : worn;
+        vm.hireVehicle(tester, "car", 1);
+        Assertions.assertEquals(other, vm.getVechilesByCustomer(tester).iterator().next());
+        vm.returnVehicle(other.getVehicleID(), tester, 1000);
+
+        // Now the lower-mileage car is the second one
+        vm.hireVehicle(tester, "car", 1);
+        Assertions.assertEquals(other, vm.getVechilesByCustomer(tester).iterator().next());
+
+        // A car serviced in the workshop rejoins the heap once, with its reset mileage
+        VehicleManager shop = new VehicleManager(VehicleSelectionStrategy.leastMileage());
+        shop.setWorkshop(new WorkshopScheduler(1));
+        Vehicle[] cars = {shop.addVehicle("car"), shop.addVehicle("car"), shop.addVehicle("car")};
+        CustomerRecord driver = shop.addCustomerRecord("Christy", "Workshop", cal.getTime(), false);
+        for (int i = 0; i < 3; i++) shop.hireVehicle(driver, "car", 1);
+        int[] miles = {12000, 800, 500};
+        for (int i = 0; i < 3; i++) shop.returnVehicle(cars[i].getVehicleID(), driver, miles[i]);
+        shop.planWorkshopDay();
+        Assertions.assertTrue(shop.completeService(cars[0].getVehicleID()));
+        for (int i : new int[] {0, 2, 1}) {
+            Assertions.assertTrue(shop.hireVehicle(driver, "car", 1));
+            Assertions.assertTrue(cars[i].isHired());
+        }
+        Assertions.assertFalse(shop.hireVehicle(driver, "car", 1));
+
+        // Round robin alternates between free vehicles
+        VehicleManager rr = new VehicleManager(VehicleSelectionStrategy.roundRobin());
+        Vehicle a = rr.addVehicle("car");
+        Vehicle b = rr.addVehicle("car");
+        CustomerRecord rrTester = rr.addCustomerRecord("Christy", "RoundRobin", cal.getTime(), false);
+        rr.hireVehicle(rrTester, "car", 1);
+        rr.returnVehicle(a.getVehicleID(), rrTester, 10);
+        rr.hireVehicle(rrTester, "car", 1);
+        Assertions.assertTrue(b.isHired());
+
+        // A van cleared on the van itself rejoins the heap and goes to a waiting customer
+        VehicleManager vans = new VehicleManager(VehicleSelectionStrategy.leastMileage());
+        Van van = (Van) vans.addVehicle("van");
+        cal.set(1980, Calendar.JANUARY, 1);
+        CustomerRecord[] drivers = {vans.addCustomerRecord("Christy", "Inspected", cal.getTime(), true),
+                vans.addCustomerRecord("Christy", "Waiting", cal.getTime(), true)};
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertTrue(vans.hireVehicle(drivers[0], "van", 12));
+            vans.returnVehicle(van.getVehicleID(), drivers[0], 100);
+            Assertions.assertEquals(VehicleState.AWAITING_INSPECTION, van.getState());
+            Assertions.assertFalse(vans.hireVehicle(drivers[0], "van", 1));
+            van.setInspection(false);
+            Assertions.assertEquals(VehicleState.AVAILABLE, van.getState());
+        }
+        Assertions.assertTrue(vans.hireVehicle(drivers[0], "van", 12));
+        vans.returnVehicle(van.getVehicleID(), drivers[0], 100);
+        CompletableFuture<Vehicle> waiting = vans.hireVehicleOrWait(drivers[1], "van", 1, 5_000);
+        Assertions.assertFalse(waiting.isDone());
+        van.setInspection(false);
+        Assertions.assertTrue(waiting.getNow(null) == van);
+        Assertions.assertEquals(drivers[1], vans.getCurrentRenter(van.getVehicleID()));
+
+        System.out.println("Selection strategy tests (least mileage / round robin): PASSED");
+    }
+
+    /**
+     * Verifies case-insensitive, paged prefix search over customer names.
+     */
+    public static void testCustomerSearch() {
+        VehicleManager vm = new VehicleManager();
+        Calendar cal = Calendar.getInstance();
+        cal.set(1991, Calendar.JANUARY, 1);
+        CustomerRecord christy = vm.addCustomerRecord("Christy", "Smith", cal.getTime(), false);
+        CustomerRecord chris = vm.addCustomerRecord("Chris", "Jones", cal.getTime(), false);
+        vm.addCustomerRecord("Alan", "Christie", cal.getTime(), false);
+        vm.addCustomerRecord("Bob", "Brown", cal.getTime(), false);
+
+        // First and last names both match, ordered by the matching name
+        List<CustomerRecord> found = vm.searchCustomers("CHRIS", 0, 10);
+        Assertions.assertEquals(3, found.size());
+        Assertions.assertEquals(chris, found.get(0));
+
+        // Paging
+        Assertions.assertEquals(2, vm.searchCustomers("chris", 1, 10).size());
+        Assertions.assertEquals(1, vm.searchCustomers("chris", 0, 1).size());
+
+        // Single-field searches
+        Assertions.assertEquals(christy, vm.getCustomerNameIndex().findByLastName("sm", 0, 10).get(0));
+        Assertions.assertEquals(2, vm.getCustomerNameIndex().findByFirstName("chr", 0, 10).size());
+        Assertions.assertTrue(vm.searchCustomers("zz", 0, 10).isEmpty());
+
+        System.out.println("Customer search tests (name prefix): PASSED");
+    }
+
+    /**
+     * Verifies that customers survive cache eviction in the disk-backed store.
+     * @throws Exception if the temporary store can not be created
+     */
+    public static void testDiskCustomerStore() throws Exception {
+        Path file = Files.createTempFile("customers", ".dat");
+        Calendar cal = Calendar.getInstance();
+        cal.set(1991, Calendar.JANUARY, 1);
+        // Room for only a few records in the cache
+        try (DiskCustomerStore store = new DiskCustomerStore(file, 1000)) {
+            VehicleManager vm = new VehicleManager(VehicleSelectionStrategy.firstFit(), store);
+            vm.addVehicle("car");
+
+            for (int i = 1; i <= 50; i++) {
+                vm.addCustomerRecord("Disk", "Customer" + i, cal.getTime(), i % 2 == 0);
+            }
+            Assertions.assertTrue(store.getCachedCount() < 50);
+
+            // An evicted customer is read back from disk intact
+            CustomerRecord first = vm.getCustomer("Customer1");
+            Assertions.assertEquals(new Name("Disk", "Customer1"), first.getName());
+            Assertions.assertEquals(cal.getTime(), first.getDateOfBirth());
+            Assertions.assertFalse(first.hasCommercialLicense());
+            Assertions.assertTrue(vm.hireVehicle(first, "car", 1));
+
+            // Repeated lookups hit the cache
+            for (int i = 0; i < 9; i++) vm.getCustomer("Customer1");
+            Assertions.assertTrue(store.getHitRate() >= 0.9);
+
+            // Duplicates are still rejected and search still works
+            try {
+                vm.addCustomerRecord("Disk", "Customer7", cal.getTime(), true);
+                Assertions.assertNotReached();
+            } catch (IllegalArgumentException e) {
+                Assertions.assertEquals("This customer record already exists", e.getMessage());
+            }
+            Assertions.assertEquals(50, vm.getCustomers().size());
+            Assertions.assertEquals("Customer7", vm.searchCustomers("customer7", 0, 5).get(0).getCustomerID());
+            Assertions.assertNull(vm.getCustomer("Customer51"));
+
+            // Hiring by ID reads the record through the cache
+            vm.setLogRejections(false);
+            Assertions.assertFalse(vm.hireVehicle("Customer51", "car", 1));
+            vm.returnVehicle(vm.getVechilesByCustomer(first).iterator().next().getVehicleID(), first, 10);
+            Assertions.assertTrue(vm.hireVehicle("Customer2", "car", 1));
+
+            // Shared names are indexed once
+            Assertions.assertEquals(51, vm.getCustomerNameIndex().nameCount());
+        }
+
+        // Reopening the file keeps every customer, and the manager indexes them again
+        try (DiskCustomerStore store = new DiskCustomerStore(file, 1000)) {
+            Assertions.assertEquals(50, store.size());
+            VehicleManager vm = new VehicleManager(VehicleSelectionStrategy.firstFit(), store);
+            Assertions.assertEquals(new Name("Disk", "Customer50"), vm.getCustomer("Customer50").getName());
+            Assertions.assertEquals(50, vm.snapshot().getCustomers().size());
+            try {
+                vm.addCustomerRecord("Disk", "Customer7", cal.getTime(), true);
+                Assertions.assertNotReached();
+            } catch (IllegalArgumentException e) {
+                Assertions.assertEquals("This customer record already exists", e.getMessage());
+            }
+            Assertions.assertEquals("Customer51", vm.addCustomerRecord("Disk", "Customer51", cal.getTime(), false)
+                    .getCustomerID());
+        }
+
+        // A record cut short by a crash is dropped on reopening
+        long size = Files.size(file);
+        try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(file,
+                java.nio.file.StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+        try (DiskCustomerStore store = new DiskCustomerStore(file, 1000)) {
+            Assertions.assertEquals(50, store.size());
+            Assertions.assertNull(store.find("Customer51"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        System.out.println("Disk customer store tests (LRU cache over persistent file): PASSED");
+    }
+
+    /**
+     * Verifies that hires and returns are recorded per vehicle and old entries wrap around.
+     */
+    public static void testHireHistory() {
+        VehicleManager vm = new VehicleManager();
+        Vehicle car = vm.addVehicle("car");
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1991, Calendar.JANUARY, 1);
+        CustomerRecord first = vm.addCustomerRecord("Christy", "First", cal.getTime(), false);
+        CustomerRecord second = vm.addCustomerRecord("Christy", "Second", cal.getTime(), false);
+
+        vm.hireVehicle(first, "car", 1);
+        vm.returnVehicle(car.getVehicleID(), first, 100);
+        vm.hireVehicle(second, "car", 1);
+
+        HireHistory history = vm.getHireHistory(car.getVehicleID());
+        Assertions.assertEquals(2, history.size());
+        Assertions.assertEquals(first.getCustomerID(), history.getCustomerID(0));
+        Assertions.assertEquals(100, history.getMileage(0));
+        Assertions.assertTrue(history.getReturnTime(0) >= history.getHireTime(0));
+        Assertions.assertEquals(second.getCustomerID(), history.getLastCustomerID());
+        Assertions.assertTrue(history.getReturnTime(1) == -1);
+
+        // Fill past capacity: only the latest hires are kept
+        vm.returnVehicle(car.getVehicleID(), second, 300);
+        for (int i = 0; i < HireHistory.DEFAULT_CAPACITY; i++) {
+            vm.hireVehicle(first, "car", 1);
+            vm.returnVehicle(car.getVehicleID(), first, 50);
+        }
+        history = vm.getHireHistory(car.getVehicleID());
+        Assertions.assertEquals(HireHistory.DEFAULT_CAPACITY, history.size());
+        Assertions.assertEquals(50.0, history.getAverageTripMiles());
+
+        System.out.println("Hire history tests (ring buffer per vehicle): PASSED");
+    }
+
+    /**
+     * Verifies that hire logs round-trip and that scans skip blocks outside the query.
+     * @throws Exception if the temporary log can not be written
+     */
+    public static void testHireLogExport() throws Exception {
+        Path file = Files.createTempFile("hires", ".log");
+        try {
+            // 1000 one-hour hires, one per day, 100 per block; every tenth is a van
+            long day = 86_400_000L;
+            try (HireLogWriter writer = new HireLogWriter(file, 100)) {
+                for (int i = 0; i < 1000; i++) {
+                    writer.append(i % 10 == 0 ? "van" : "car", i, i * day, i * day + 3_600_000L, i % 50);
+                }
+            }
+            try (HireLogReader reader = new HireLogReader(file)) {
+                HireLogReader.ScanResult all = reader.scan(Long.MIN_VALUE, Long.MAX_VALUE, null);
+                Assertions.assertEquals(1000L, all.getRecords());
+                Assertions.assertEquals(24.5, all.getAverageMiles());
+                Assertions.assertEquals(1.0, all.getAverageHireHours());
+
+                // Days 250-349 span two blocks; the other eight are skipped
+                HireLogReader.ScanResult range = reader.scan(250 * day, 350 * day, "car");
+                Assertions.assertEquals(90L, range.getRecords());
+                Assertions.assertEquals(2, range.getBlocksScanned());
+                Assertions.assertEquals(8, range.getBlocksSkipped());
+            }
+
+            // Export from a manager: only completed hires are written
+            VehicleManager vm = new VehicleManager();
+            Vehicle car = vm.addVehicle("car");
+            vm.addVehicle("van");
+            Calendar cal = Calendar.getInstance();
+            cal.set(1980, Calendar.JANUARY, 1);
+            CustomerRecord c = vm.addCustomerRecord("Log", "Export", cal.getTime(), true);
+            vm.hireVehicle(c, "car", 1);
+            vm.returnVehicle(car.getVehicleID(), c, 120);
+            vm.hireVehicle(c, "car", 1);
+            vm.returnVehicle(car.getVehicleID(), c, 80);
+            vm.hireVehicle(c, "van", 1);
+            Assertions.assertEquals(2L, vm.exportHireHistory(file, 16));
+            try (HireLogReader reader = new HireLogReader(file)) {
+                Assertions.assertEquals(100.0, reader.scan(0, Long.MAX_VALUE, "car").getAverageMiles());
+                Assertions.assertEquals(0L, reader.scan(0, Long.MAX_VALUE, "van").getRecords());
+            }
+
+            // Logging as hires happen keeps more than the histories hold
+            vm.returnVehicle(vm.getVechilesByCustomer(c).iterator().next().getVehicleID(), c, 0);
+            vm.startHireLog(file, 4);
+            long before = System.currentTimeMillis();
+            for (int i = 0; i < HireHistory.DEFAULT_CAPACITY + 8; i++) {
+                vm.hireVehicle(c, "car", 1);
+                vm.returnVehicle(car.getVehicleID(), c, 10);
+            }
+            try (HireLogReader reader = new HireLogReader(file)) {
+                // Ten full blocks are on disk; the reader picks up blocks written after it opened
+                Assertions.assertEquals(40L, reader.scan(0, Long.MAX_VALUE, "car").getRecords());
+                vm.hireVehicle(c, "car", 1);
+                vm.returnVehicle(car.getVehicleID(), c, 10);
+                Assertions.assertEquals(41L, vm.stopHireLog());
+                HireLogReader.ScanResult logged = reader.scan(before, Long.MAX_VALUE, null);
+                Assertions.assertEquals(41L, logged.getRecords());
+                Assertions.assertEquals(10.0, logged.getAverageMiles());
+                // Ordered blocks past the range are not read
+                Assertions.assertEquals(0, reader.scan(0, before, null).getBlocksScanned());
+            }
+            // Export has only the car's last hires and the van's one
+            Assertions.assertEquals(HireHistory.DEFAULT_CAPACITY + 1L, vm.exportHireHistory(file, 16));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        System.out.println("Hire log export tests (columnar blocks with skipping): PASSED");
+    }
+
+    /**
+     * Verifies compiled tariff prices, long-hire discounts, surge pricing and batch quotes.
+     */
+    public static void testQuotes() {
+        VehicleManager vm = new VehicleManager();
+        vm.setLogRejections(false);
+        QuoteEngine quotes = vm.getQuotes();
+        for (int i = 0; i < 5; i++) vm.addVehicle("car");
+        vm.addVehicle("van");
+
+        // Default tariff: 45.00/day car, 10% off from 7 days, 20% off from 28
+        Assertions.assertEquals(4500L, quotes.quote("car", 1));
+        Assertions.assertEquals(28350L, quotes.quote("car", 7));
+        Assertions.assertEquals(100800L, quotes.quote("Car", 28));
+        Assertions.assertEquals(7000L, quotes.quote("van", 1));
+        try {
+            quotes.quote("car", 91);
+            Assertions.assertNotReached();
+        } catch (IllegalArgumentException e) {
+            Assertions.assertEquals("Duration must be between 1 and 90 days", e.getMessage());
+        }
+
+        // Hiring the only van leaves none free, so vans surge by 25%; cars are unaffected
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.JANUARY, 1);
+        CustomerRecord c = vm.addCustomerRecord("Quote", "Surge", cal.getTime(), true);
+        Assertions.assertFalse(quotes.isSurge("van"));
+        Assertions.assertTrue(vm.hireVehicle(c, "van", 1));
+        Assertions.assertTrue(quotes.isSurge("van"));
+        Assertions.assertEquals(8750L, quotes.quote("van", 1));
+        Assertions.assertEquals(4500L, quotes.quote("car", 1));
+
+        // Batches match single quotes
+        String[] types = {"car", "van", "car"};
+        int[] days = {1, 1, 30};
+        long[] prices = new long[3];
+        quotes.quote(types, days, prices);
+        Assertions.assertEquals(4500L, prices[0]);
+        Assertions.assertEquals(8750L, prices[1]);
+        Assertions.assertEquals(quotes.quote("car", 30), prices[2]);
+
+        // A vehicle in the workshop is not available, so it counts towards surge like a hired one
+        VehicleManager shop = new VehicleManager();
+        shop.setLogRejections(false);
+        shop.setWorkshop(new WorkshopScheduler(1));
+        Vehicle serviced = shop.addVehicle("car");
+        CustomerRecord driver = shop.addCustomerRecord("Quote", "Workshop", cal.getTime(), false);
+        shop.hireVehicle(driver, "car", 1);
+        shop.returnVehicle(serviced.getVehicleID(), driver, serviced.getDistanceRequirement());
+        Assertions.assertEquals(VehicleState.IN_SERVICE, serviced.getState());
+        Assertions.assertEquals(0, shop.noOfAvailableVehicles("car"));
+        Assertions.assertTrue(shop.getQuotes().isSurge("car"));
+
+        // A new tariff takes effect immediately
+        Properties props = new Properties();
+        props.setProperty("car.dayRate", "5000");
+        props.setProperty("maxDays", "14");
+        quotes.setTariff(Tariff.fromProperties(props));
+        Assertions.assertEquals(5000L, quotes.quote("car", 1));
+        Assertions.assertEquals(14, quotes.getTariff().getMaxDays());
+
+        System.out.println("Quote engine tests (compiled tariffs with surge): PASSED");
+    }
+
+    /**
+     * Verifies that retried hires and returns are applied once and that the request cache stays bounded.
+     */
+    public static void testIdempotentRequests() {
+        VehicleManager vm = new VehicleManager();
+        vm.setLogRejections(false);
+        Vehicle car = vm.addVehicle("car");
+        vm.addVehicle("car");
+        long[] now = {0};
+        vm.setRequestCache(new RequestCache(3, 1000, () -> now[0]));
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1985, Calendar.JANUARY, 1);
+        CustomerRecord c = vm.addCustomerRecord("Retry", "Client", cal.getTime(), false);
+        CustomerRecord other = vm.addCustomerRecord("Other", "Client", cal.getTime(), false);
+
+        // A retried hire returns the first outcome without hiring a second vehicle
+        Assertions.assertTrue(vm.hireVehicle("req-1", c, "car", 2));
+        Assertions.assertTrue(vm.hireVehicle("req-1", c, "car", 2));
+        Assertions.assertEquals(1, vm.getVechilesByCustomer(c).size());
+        Assertions.assertEquals(1, vm.noOfAvailableVehicles("car"));
+        Assertions.assertEquals(1L, vm.getRequestCache().getHitCount());
+
+        // A retried return does not return the vehicle from its next renter
+        vm.returnVehicle("req-2", car.getVehicleID(), c, 10);
+        Assertions.assertTrue(vm.hireVehicle("req-3", other, "car", 1));
+        Assertions.assertTrue(vm.hireVehicle("req-4", other, "car", 1));
+        vm.returnVehicle("req-2", car.getVehicleID(), c, 10);
+        Assertions.assertEquals(2, vm.getVechilesByCustomer(other).size());
+        Assertions.assertEquals(10, car.getCurrentMileage());
+
+        // IDs can not be shared between customers
+        try {
+            vm.hireVehicle("req-4", c, "car", 1);
+            Assertions.assertNotReached();
+        } catch (IllegalArgumentException e) {
+            Assertions.assertEquals("Request ID already used by another customer: req-4", e.getMessage());
+        }
+
+        // Bounded by size, and entries expire
+        Assertions.assertEquals(3, vm.getRequestCache().size());
+        now[0] = 1000;
+        Assertions.assertFalse(vm.hireVehicle("req-1", c, "car", 2));
+        Assertions.assertEquals(1, vm.getRequestCache().size());
+
+        System.out.println("Idempotent request tests (bounded expiring dedupe): PASSED");
+    }
+
+    /**
+     * Verifies token-bucket limits per client and per customer, refill over time and rejection counts.
+     */
+    public static void testAdmissionControl() {
+        VehicleManager vm = new VehicleManager();
+        vm.setLogRejections(false);
+        for (int i = 0; i < 3; i++) vm.addVehicle("car");
+        long[] now = {0};
+        // Clients: 10 per second, bursts of 4; customers: 1 per second, bursts of 2
+        AdmissionController control = new AdmissionController(10, 4, 1, 2, () -> now[0]);
+        vm.setAdmissionControl(control);
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1985, Calendar.JANUARY, 1);
+        CustomerRecord c = vm.addCustomerRecord("Rate", "Limited", cal.getTime(), false);
+
+        // The customer burst allows two hires; the third is refused before any fleet work
+        Assertions.assertTrue(vm.hireVehicle("gateway", null, c, "car", 1));
+        Assertions.assertTrue(vm.hireVehicle("gateway", null, c, "car", 1));
+        Assertions.assertFalse(vm.hireVehicle("gateway", null, c, "car", 1));
+        Assertions.assertEquals(1, vm.noOfAvailableVehicles("car"));
+        Assertions.assertEquals(1L, control.getRejectedByCustomer());
+
+        // The client has one token left
+        Assertions.assertEquals(1, vm.noOfAvailableVehicles("gateway", "car"));
+        Assertions.assertEquals(-1, vm.noOfAvailableVehicles("gateway", "car"));
+        Assertions.assertEquals(1L, control.getRejectedByClient());
+
+        // Other clients are unaffected, and tokens refill over time
+        Assertions.assertEquals(1, vm.noOfAvailableVehicles("other", "car"));
+        now[0] = 1_000_000_000L;
+        Assertions.assertTrue(vm.hireVehicle("gateway", null, c, "car", 1));
+        Assertions.assertEquals(5L, control.getAdmittedCount());
+
+        // Buckets that have refilled are evicted; a drained one keeps its state
+        control.evictIdle();
+        Assertions.assertEquals(2, control.getBucketCount());
+        Assertions.assertFalse(vm.hireVehicle("gateway", null, c, "car", 1));
+        for (int i = 0; i < 5000; i++) {
+            now[0] += 1_000_000_000L;
+            control.tryAdmit("client" + i, null);
+        }
+        Assertions.assertTrue(control.getBucketCount() <= 2048);
+
+        // Lock-free buckets admit exactly the burst under concurrent callers
+        AdmissionController shared = new AdmissionController(1, 100, 1, 1000, () -> 0L);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 1000; i++) shared.tryAdmit("busy", null);
+            }));
+        }
+        try {
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new AssertionError(e);
+        } finally {
+            pool.shutdown();
+        }
+        Assertions.assertEquals(100L, shared.getAdmittedCount());
+        Assertions.assertEquals(3900L, shared.getRejectedByClient());
+
+        System.out.println("Admission control tests (token buckets per client and customer): PASSED");
+    }
+
+    /**
+     * Verifies vehicle state transitions, inspection hand-over and lock-free claiming.
+     */
+    public static void testVehicleStateMachine() {
+        VehicleManager vm = new VehicleManager();
+        Van van = (Van) vm.addVehicle("van");
+        Assertions.assertEquals(VehicleState.AVAILABLE, van.getState());
+
+        // A long van hire ends awaiting inspection, with mileage applied in the same step
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.JANUARY, 1);
+        CustomerRecord c = vm.addCustomerRecord("State", "Machine", cal.getTime(), true);
+        Assertions.assertTrue(vm.hireVehicle(c, "van", 12));
+        Assertions.assertEquals(VehicleState.HIRED, van.getState());
+        Assertions.assertTrue(van.getInspection());
+        int version = van.getStateVersion();
+        vm.returnVehicle(van.getVehicleID(), c, 250);
+        Assertions.assertEquals(VehicleState.AWAITING_INSPECTION, van.getState());
+        Assertions.assertEquals(250, van.getCurrentMileage());
+        Assertions.assertEquals(version + 1, van.getStateVersion());
+        Assertions.assertFalse(van.tryHire());
+
+        // Clearing the inspection makes the van hireable again
+        van.setInspection(false);
+        Assertions.assertEquals(VehicleState.AVAILABLE, van.getState());
+        Assertions.assertFalse(van.getInspection());
+
+        // Illegal transitions are refused; retired vehicles stay retired
+        try {
+            van.transition(VehicleState.HIRED, VehicleState.IN_SERVICE);
+            Assertions.assertNotReached();
+        } catch (IllegalStateException e) {
+            Assertions.assertEquals("A vehicle can not go from HIRED to IN_SERVICE", e.getMessage());
+        }
+        Assertions.assertFalse(van.transition(VehicleState.IN_SERVICE, VehicleState.AVAILABLE));
+        Assertions.assertTrue(van.transition(VehicleState.AVAILABLE, VehicleState.RETIRED));
+        Assertions.assertFalse(VehicleState.RETIRED.canBecome(VehicleState.AVAILABLE));
+        Assertions.assertFalse(vm.hireVehicle(c, "van", 1));
+
+        // Concurrent claims without a lock: exactly one thread wins each hire
+        Car car = new Car(VehicleID.getInstance("car"));
+        int[] wins = new int[1];
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(pool.submit(() -> {
+                int won = 0;
+                for (int i = 0; i < 10_000; i++) {
+                    if (car.tryHire()) {
+                        won++;
+                        Assertions.assertTrue(car.tryReturn(1));
+                    }
+                }
+                return won;
+            }));
+        }
+        try {
+            for (Future<Integer> f : futures) wins[0] += f.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new AssertionError(e);
+        } finally {
+            pool.shutdown();
+        }
+        Assertions.assertEquals(wins[0], car.getCurrentMileage());
+        Assertions.assertEquals(VehicleState.AVAILABLE, car.getState());
+
+        System.out.println("Vehicle state machine tests (versioned CAS transitions): PASSED");
+    }
+
+    /**
+     * Verifies that the manager runs on pluggable repositories, and that the JDBC backend
+     * batches its writes and reuses prepared statements.
+     */
+    public static void testRepositories() {
+        // Customers already in a repository are kept and indexed
+        InMemoryCustomerRepository used = new InMemoryCustomerRepository();
+        used.add(new CustomerRecord(new Name("Used", "Store"), new Date(0), false, "Customer1"));
+        VehicleManager reused = new VehicleManager(VehicleSelectionStrategy.firstFit(),
+                new InMemoryVehicleRepository(), used);
+        try {
+            reused.addCustomerRecord("Used", "Store", new Date(0), false);
+            Assertions.assertNotReached();
+        } catch (IllegalArgumentException e) {
+            Assertions.assertEquals("This customer record already exists", e.getMessage());
+        }
+        Assertions.assertEquals("Customer2", reused.addCustomerRecord("New", "Store", new Date(0), false).getCustomerID());
+        Assertions.assertEquals(2, reused.snapshot().getCustomers().size());
+        Assertions.assertEquals(1, reused.searchCustomers("used", 0, 5).size());
+
+        // Run the same workload against a JDBC backend over a recording connection
+        Map<String, Integer> calls = new HashMap<>();
+        // Each repository has its own connection, as customer lookups run outside the manager's lock
+        JdbcVehicleRepository vehicleRepo = new JdbcVehicleRepository(fakeConnection(calls), 8);
+        JdbcCustomerRepository customerRepo = new JdbcCustomerRepository(fakeConnection(calls), 4);
+        VehicleManager vm = new VehicleManager(VehicleSelectionStrategy.firstFit(), vehicleRepo, customerRepo);
+        // The eighth vehicle fills the first batch
+        for (int i = 0; i < 8; i++) vm.addVehicle("car");
+        Assertions.assertEquals(1L, vehicleRepo.getBatchCount());
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1985, Calendar.JANUARY, 1);
+        List<CustomerRecord> added = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            added.add(vm.addCustomerRecord("Jdbc", "Customer" + i, cal.getTime(), false));
+        }
+        // Four customers were written as one batch; the fifth is queued but still found
+        Assertions.assertEquals(1L, customerRepo.getBatchCount());
+        Assertions.assertEquals(added.get(4), vm.getCustomer("Customer5"));
+        // The snapshot's customers are a view over the database, read only when iterated
+        Assertions.assertTrue(customerRepo.hasSnapshotView());
+        int queries = calls.get("executeQuery");
+        Assertions.assertEquals(5, vm.snapshot().getCustomers().size());
+        Assertions.assertEquals(queries, (int) calls.get("executeQuery"));
+        Assertions.assertEquals(added.get(4), vm.snapshot().getCustomers().iterator().next());
+        Assertions.assertEquals(queries + 1, (int) calls.get("executeQuery"));
+
+        // Hiring and returning two vehicles queues one update for each
+        CustomerRecord c = added.get(0);
+        vm.hireVehicle(c, "car", 1);
+        vm.hireVehicle(c, "car", 1);
+        for (Vehicle v : vm.getVechilesByCustomer(c)) {
+            vm.returnVehicle(v.getVehicleID(), c, 100);
+        }
+        vehicleRepo.close();
+        customerRepo.close();
+
+        // Two vehicle batches and two customer batches, each one transaction
+        Assertions.assertEquals(2L, vehicleRepo.getBatchCount());
+        Assertions.assertEquals(2, vehicleRepo.getPreparedCount());
+        Assertions.assertEquals(4, (int) calls.get("executeBatch"));
+        Assertions.assertEquals(4, (int) calls.get("commit"));
+        // Vehicle INSERT and UPDATE and customer INSERT and snapshot query, each prepared once
+        Assertions.assertEquals(4, (int) calls.get("prepareStatement"));
+
+        // A failed batch is cleared, rolled back and retried with the next one
+        int[] failures = {1};
+        Map<String, Integer> failing = new HashMap<>();
+        JdbcVehicleRepository retrying = new JdbcVehicleRepository(
+                fakeConnection(failing, Collections.emptyList(), failures), 2);
+        VehicleManager retried = new VehicleManager(VehicleSelectionStrategy.firstFit(), retrying,
+                new InMemoryCustomerRepository());
+        retried.addVehicle("car");
+        retried.addVehicle("car");
+        Assertions.assertEquals(1L, retrying.getFailedBatchCount());
+        Assertions.assertEquals(0L, retrying.getBatchCount());
+        Assertions.assertEquals(1, (int) failing.get("clearBatch"));
+        Assertions.assertEquals(1, (int) failing.get("rollback"));
+        Assertions.assertEquals(2, retried.noOfAvailableVehicles("car"));
+        retried.addVehicle("car");
+        Assertions.assertEquals(1L, retrying.getBatchCount());
+
+        // Stored vehicles are read back with their hires; one in the workshop comes back serviced
+        InMemoryCustomerRepository stored = new InMemoryCustomerRepository();
+        stored.add(new CustomerRecord(new Name("Stored", "Renter"), new Date(0), false, "Customer1"));
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] {"CQ1-002", "car", "HIRED", 120, false, "Customer1"});
+        rows.add(new Object[] {"VQ1-003", "van", "HIRED", 40, true, "Customer1"});
+        rows.add(new Object[] {"CQ1-004", "car", "IN_SERVICE", 11000, false, null});
+        rows.add(new Object[] {"CQ1-006", "car", "HIRED", 30, false, "Customer9"});
+        JdbcVehicleRepository reopened = new JdbcVehicleRepository(
+                fakeConnection(new HashMap<>(), rows, new int[1]), 8);
+        VehicleManager restored = new VehicleManager(VehicleSelectionStrategy.firstFit(), reopened, stored);
+        restored.setLogRejections(false);
+        CustomerRecord renter = restored.getCustomer("Customer1");
+        Assertions.assertEquals(4, restored.snapshot().getAllVehicles().size());
+        Assertions.assertEquals(2, restored.getVechilesByCustomer(renter).size());
+        // The car hired by an unknown customer and the serviced car are free again
+        Assertions.assertEquals(2, restored.noOfAvailableVehicles("car"));
+        Assertions.assertEquals(0, reopened.find(VehicleID.lookup("CQ1-004")).getCurrentMileage());
+        Assertions.assertEquals("Customer1", reopened.findRenter(VehicleID.lookup("VQ1-003")));
+        // The van keeps its inspection flag and is held for inspection when returned
+        Assertions.assertTrue(restored.returnVehicle(VehicleID.lookup("VQ1-003"), 10));
+        Assertions.assertEquals(VehicleState.AWAITING_INSPECTION, reopened.find(VehicleID.lookup("VQ1-003")).getState());
+        Assertions.assertNull(reopened.findRenter(VehicleID.lookup("VQ1-003")));
+        // A new vehicle is never given a stored vehicle's ID
+        Assertions.assertFalse(restored.addVehicle("car").getVehicleID().toString().startsWith("CQ1-00"));
+
+        System.out.println("Repository tests (in-memory and batched JDBC backends): PASSED");
+    }
+
+    /**
+     * Creates a JDBC connection that accepts every call and counts them by method name.
+     * Queries return no rows.
+     * @param calls receives the number of calls per method name
+     * @return the recording connection
+     */
+    private static java.sql.Connection fakeConnection(Map<String, Integer> calls) {
+        return fakeConnection(calls, Collections.emptyList(), new int[1]);
+    }
+
+    /**
+     * Creates a JDBC connection that counts calls by method name, answers every query with the
+     * given rows and fails the next batches.
+     * @param calls receives the number of calls per method name
+     * @param rows the rows each query returns, one value per column
+     * @param failures holds the number of executeBatch calls still to fail
+     * @return the recording connection
+     */
+    private static java.sql.Connection fakeConnection(Map<String, Integer> calls, List<Object[]> rows,
+                                                      int[] failures) {
+        java.lang.reflect.InvocationHandler handler = new java.lang.reflect.InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args)
+                    throws java.sql.SQLException {
+                calls.merge(method.getName(), 1, Integer::sum);
+                Class<?> type = method.getReturnType();
+                if (method.getName().equals("executeBatch") && failures[0] > 0) {
+                    failures[0]--;
+                    throw new java.sql.SQLException("Batch failed");
+                }
+                if (type == java.sql.ResultSet.class && !rows.isEmpty()) {
+                    return storedRows(rows);
+                }
+                if (type.isInterface()) {
+                    return java.lang.reflect.Proxy.newProxyInstance(Main.class.getClassLoader(), new Class<?>[] {type}, this);
+                }
+                if (type == int[].class) return new int[0];
+                if (type == boolean.class) return false;
+                if (type == int.class) return 0;
+                if (type == long.class) return 0L;
+                return null;
+            }
+        };
+        return (java.sql.Connection) java.lang.reflect.Proxy.newProxyInstance(
+                Main.class.getClassLoader(), new Class<?>[] {java.sql.Connection.class}, handler);
+    }
+
+    /**
+     * Creates a result set over fixed rows, read by column index.
+     * @param rows the rows, one value per column
+     * @return the result set
+     */
+    private static java.sql.ResultSet storedRows(List<Object[]> rows) {
+        int[] row = {-1};
+        return (java.sql.ResultSet) java.lang.reflect.Proxy.newProxyInstance(
+                Main.class.getClassLoader(), new Class<?>[] {java.sql.ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++row[0] < rows.size();
+                        case "getString":
+                        case "getInt":
+                        case "getBoolean":
+                            return rows.get(row[0])[(Integer) args[0] - 1];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    /**
+     * Verifies that multi-vehicle hires commit all vehicles or none, and respect the combined cap.
+     */
+    public static void testMultiVehicleHire() {
+        VehicleManager vm = new VehicleManager();
+        vm.setLogRejections(false);
+        for (int i = 0; i < 3; i++) vm.addVehicle("car");
+        vm.addVehicle("van");
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.JANUARY, 1);
+        CustomerRecord corporate = vm.addCustomerRecord("Corporate", "Account", cal.getTime(), true);
+        CustomerRecord other = vm.addCustomerRecord("Other", "Account", cal.getTime(), true);
+
+        // Two cars and a van in one step
+        Map<String, Integer> order = new LinkedHashMap<>();
+        order.put("car", 2);
+        order.put("van", 1);
+        Assertions.assertTrue(vm.hireVehicles(corporate, order, 3));
+        Assertions.assertEquals(3, vm.getVechilesByCustomer(corporate).size());
+        Assertions.assertEquals(0, vm.noOfAvailableVehicles("van"));
+
+        // A car plus a van fails as a whole: the claimed car is released
+        Map<String, Integer> mixed = new LinkedHashMap<>();
+        mixed.put("car", 1);
+        mixed.put("van", 1);
+        Assertions.assertFalse(vm.hireVehicles(other, mixed, 1));
+        Assertions.assertEquals(1, vm.noOfAvailableVehicles("car"));
+        Assertions.assertTrue(vm.getVechilesByCustomer(other).isEmpty());
+        Assertions.assertTrue(vm.hireVehicle(other, "car", 1));
+
+        // The combined request counts against the cap before anything is claimed
+        for (Vehicle v : vm.getVechilesByCustomer(corporate)) {
+            vm.returnVehicle(v.getVehicleID(), corporate, 10);
+        }
+        Assertions.assertTrue(vm.hireVehicle(corporate, "car", 1));
+        Map<String, Integer> tooMany = new HashMap<>();
+        tooMany.put("car", 1);
+        tooMany.put("van", 2);
+        Assertions.assertFalse(vm.hireVehicles(corporate, tooMany, 1));
+        Assertions.assertEquals(1, vm.noOfAvailableVehicles("car"));
+
+        try {
+            vm.hireVehicles(corporate, Collections.singletonMap("bus", 1), 1);
+            Assertions.assertNotReached();
+        } catch (IllegalArgumentException e) {
+            Assertions.assertEquals("Invalid vehicle type: bus", e.getMessage());
+        }
+
+        System.out.println("Multi-vehicle hire tests (all-or-nothing with rollback): PASSED");
+    }
+
+    /**
+     * Verifies the vehicle-to-renter index, returns by vehicle ID only and rejection of mismatched returns.
+     */
+    public static void testRenterIndex() {
+        VehicleManager vm = new VehicleManager();
+        vm.setLogRejections(false);
+        Vehicle car = vm.addVehicle("car");
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1985, Calendar.JANUARY, 1);
+        CustomerRecord renter = vm.addCustomerRecord("Real", "Renter", cal.getTime(), false);
+        CustomerRecord stranger = vm.addCustomerRecord("Some", "Stranger", cal.getTime(), false);
+
+        Assertions.assertNull(vm.getCurrentRenter(car.getVehicleID()));
+        Assertions.assertTrue(vm.hireVehicle(renter, "car", 1));
+        Assertions.assertEquals(renter, vm.getCurrentRenter(car.getVehicleID()));
+
+        // Another customer can not return the renter's vehicle
+        vm.returnVehicle(car.getVehicleID(), stranger, 500);
+        Assertions.assertTrue(car.isHired());
+        Assertions.assertEquals(0, car.getCurrentMileage());
+        Assertions.assertEquals(1, vm.getVechilesByCustomer(renter).size());
+
+        // Returning by vehicle ID finds the renter
+        Assertions.assertTrue(vm.returnVehicle(car.getVehicleID(), 40));
+        Assertions.assertNull(vm.getCurrentRenter(car.getVehicleID()));
+        Assertions.assertTrue(vm.getVechilesByCustomer(renter).isEmpty());
+        Assertions.assertEquals(40, car.getCurrentMileage());
+        Assertions.assertFalse(vm.returnVehicle(car.getVehicleID(), 40));
+
+        // The renter's emptied set is reused for the next customer to hire
+        Assertions.assertTrue(vm.hireVehicle(stranger, "car", 1));
+        Assertions.assertEquals(stranger, vm.getCurrentRenter(car.getVehicleID()));
+        Assertions.assertEquals(1, vm.getVechilesByCustomer(stranger).size());
+        Assertions.assertTrue(vm.getVechilesByCustomer(renter).isEmpty());
+        vm.returnVehicle(car.getVehicleID(), stranger, 0);
+
+        // A record with an ID this manager never issued is refused without claiming a vehicle
+        CustomerRecord foreign = new CustomerRecord(new Name("Foreign", "Id"), cal.getTime(), false, "VIP-1");
+        CustomerRecord unissued = new CustomerRecord(new Name("Not", "Issued"), cal.getTime(), false, "Customer99");
+        Assertions.assertFalse(vm.hireVehicle(foreign, "car", 1));
+        Assertions.assertFalse(vm.hireVehicle(unissued, "car", 1));
+        Assertions.assertTrue(vm.hireVehicleOrWait(foreign, "car", 1, 1_000).isCompletedExceptionally());
+        Assertions.assertEquals(VehicleState.AVAILABLE, car.getState());
+        Assertions.assertEquals(1, vm.noOfAvailableVehicles("car"));
+        Assertions.assertTrue(vm.hireVehicle(renter, "car", 1));
+
+        System.out.println("Renter index tests (reverse lookup and checked returns): PASSED");
+    }
+
+    /**
+     * Verifies that mileage readings are coalesced, applied in batches, reconciled on return
+     * and raise a service-due alert.
+     * @throws Exception if the reading threads fail
+     */
+    public static void testTelematics() throws Exception {
+        VehicleManager vm = new VehicleManager();
+        Van van = (Van) vm.addVehicle("van");
+        Vehicle car = vm.addVehicle("car");
+        TelematicsIngestor telematics = vm.getTelematics();
+        List<FleetEvent> alerts = new CopyOnWriteArrayList<>();
+        vm.getEvents().subscribe(new Flow.Subscriber<FleetEvent>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(FleetEvent event) {
+                if (event.getType() == FleetEvent.Type.SERVICE_DUE) alerts.add(event);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.JANUARY, 1);
+        CustomerRecord c = vm.addCustomerRecord("Tele", "Matics", cal.getTime(), true);
+        Assertions.assertTrue(vm.hireVehicle(c, "van", 1));
+
+        // Many readings from several threads coalesce into one update
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 25_000; i++) telematics.submit(van.getVehicleID(), (i % 1000) * 4 + offset);
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+        pool.shutdown();
+        Assertions.assertEquals(100_000L, telematics.getReceivedCount());
+        Assertions.assertEquals(1, telematics.applyPending());
+        Assertions.assertEquals(3999, van.getCurrentMileage());
+        Assertions.assertEquals(0, telematics.applyPending());
+
+        // Crossing the 5000-mile service distance raises one alert
+        telematics.submit(van.getVehicleID(), 5200);
+        telematics.submit(car.getVehicleID(), 50);
+        Assertions.assertEquals(1, telematics.applyPending());
+        Assertions.assertEquals(1L, telematics.getIgnoredCount());
+        Assertions.assertEquals(1L, telematics.getServiceAlertCount());
+        Assertions.assertEquals(5200, van.getCurrentMileage());
+
+        // The return adds only the miles not yet reported; the service then resets mileage
+        vm.returnVehicle(van.getVehicleID(), c, 5300);
+        Assertions.assertEquals(0, van.getCurrentMileage());
+        Assertions.assertEquals(5300, vm.getHireHistory(van.getVehicleID()).getMileage(0));
+
+        // Background batches
+        Assertions.assertTrue(vm.hireVehicle(c, "car", 1));
+        telematics.start(5);
+        telematics.submit(car.getVehicleID(), 120);
+        telematics.close();
+        Assertions.assertEquals(120, car.getCurrentMileage());
+
+        vm.getEvents().close();
+        for (int i = 0; i < 100 && alerts.isEmpty(); i++) Thread.sleep(10);
+        Assertions.assertEquals(1, alerts.size());
+        Assertions.assertEquals(c.getCustomerID(), alerts.get(0).getCustomerID());
+
+        System.out.println("Telematics tests (coalesced batched mileage): PASSED");
+    }
+
+    /**
+     * Verifies that overdue vehicles wait for a workshop bay, are booked most overdue first,
+     * and are hireable again once their service is completed.
+     * @throws Exception if a test fails
+     */
+    public static void testWorkshopScheduler() throws Exception {
+        VehicleManager vm = new VehicleManager();
+        vm.setWorkshop(new WorkshopScheduler(1));
+        Vehicle[] cars = new Vehicle[3];
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.JANUARY, 1);
+        CustomerRecord[] customers = new CustomerRecord[3];
+        for (int i = 0; i < 3; i++) {
+            cars[i] = vm.addVehicle("car");
+            customers[i] = vm.addCustomerRecord("Work", "Shop" + i, cal.getTime(), false);
+        }
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(vm.hireVehicle(customers[i], "car", 1));
+        }
+
+        // Two cars come back past their service distance, one well within it
+        int[] miles = {12000, 15000, 300};
+        for (int i = 0; i < 3; i++) {
+            vm.returnVehicle(cars[i].getVehicleID(), vm.getCurrentRenter(cars[i].getVehicleID()), miles[i]);
+        }
+        Assertions.assertEquals(VehicleState.IN_SERVICE, cars[0].getState());
+        Assertions.assertEquals(VehicleState.IN_SERVICE, cars[1].getState());
+        Assertions.assertEquals(VehicleState.AVAILABLE, cars[2].getState());
+        Assertions.assertEquals(1, vm.noOfAvailableVehicles("car"));
+        Assertions.assertEquals(2, vm.getWorkshop().getQueueLength());
+
+        // A car waiting for a bay can not be hired, and can not be completed before it is booked
+        Assertions.assertTrue(vm.hireVehicle(customers[0], "car", 1));
+        Assertions.assertFalse(vm.hireVehicle(customers[1], "car", 1));
+        Assertions.assertFalse(vm.completeService(cars[1].getVehicleID()));
+
+        // One bay: the most overdue car is booked first
+        List<Vehicle> day = vm.planWorkshopDay();
+        Assertions.assertEquals(1, day.size());
+        Assertions.assertTrue(day.get(0) == cars[1]);
+        Assertions.assertEquals(1, vm.getWorkshop().getQueueLength());
+        Assertions.assertTrue(vm.completeService(cars[1].getVehicleID()));
+        Assertions.assertFalse(vm.completeService(cars[1].getVehicleID()));
+        Assertions.assertEquals(VehicleState.AVAILABLE, cars[1].getState());
+        Assertions.assertEquals(0, cars[1].getCurrentMileage());
+        Assertions.assertTrue(vm.hireVehicle(customers[1], "car", 1));
+
+        day = vm.planWorkshopDay();
+        Assertions.assertTrue(day.get(0) == cars[0]);
+        Assertions.assertTrue(vm.planWorkshopDay().isEmpty());
+
+        // A returned van waits for inspection until it is cleared
+        Vehicle van = vm.addVehicle("van");
+        CustomerRecord driver = vm.addCustomerRecord("Work", "Driver", cal.getTime(), true);
+        Assertions.assertTrue(vm.hireVehicle(driver, "van", 10));
+        vm.returnVehicle(van.getVehicleID(), driver, 100);
+        Assertions.assertEquals(VehicleState.AWAITING_INSPECTION, van.getState());
+        Assertions.assertTrue(vm.completeInspection(van.getVehicleID()));
+        Assertions.assertFalse(vm.completeInspection(van.getVehicleID()));
+        Assertions.assertEquals(VehicleState.AVAILABLE, van.getState());
+
+        // Planning a large queue keeps only the bays' worth of candidates
+        WorkshopScheduler big = new WorkshopScheduler(50);
+        int n = 200_000;
+        VehicleID sharedID = VehicleID.getInstance("car");
+        for (int i = 0; i < n; i++) {
+            Car c = new Car(sharedID);
+            c.setCurrentMileage(10_000 + (i * 7919) % n);
+            big.enqueue(c);
+        }
+        long start = System.nanoTime();
+        List<Vehicle> plan = big.planDay(0.5, 0.5);
+        long micros = (System.nanoTime() - start) / 1000;
+        Assertions.assertEquals(50, plan.size());
+        Assertions.assertEquals(n - 50, big.getQueueLength());
+        Assertions.assertEquals(10_000 + n - 1, plan.get(0).getCurrentMileage());
+        for (int i = 1; i < plan.size(); i++) {
+            Assertions.assertTrue(plan.get(i - 1).getCurrentMileage() >= plan.get(i).getCurrentMileage());
+        }
+        System.out.println("Workshop plan of " + n + " queued vehicles took " + micros + " us");
+        System.out.println("Workshop scheduler tests (bay-limited, most overdue first): PASSED");
+    }
+
+    /**
+     * Verifies that hires with no free vehicle wait in arrival order, are handed returned, inspected
+     * and new vehicles directly, and time out or are refused when they should.
+     * @throws Exception if a test fails
+     */
+    public static void testHireWaitlist() throws Exception {
+        VehicleManager vm = new VehicleManager();
+        vm.setLogRejections(false);
+        Vehicle car = vm.addVehicle("car");
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.JANUARY, 1);
+        CustomerRecord[] c = new CustomerRecord[8];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = vm.addCustomerRecord("Wait", "List" + i, cal.getTime(), true);
+        }
+
+        // A free vehicle is hired at once
+        CompletableFuture<Vehicle> first = vm.hireVehicleOrWait(c[0], "car", 1, 5_000);
+        Assertions.assertTrue(first.isDone());
+        Assertions.assertTrue(first.get() == car);
+
+        // With none free, requests wait; a short one times out
+        CompletableFuture<Vehicle> second = vm.hireVehicleOrWait(c[1], "car", 1, 5_000);
+        CompletableFuture<Vehicle> impatient = vm.hireVehicleOrWait(c[2], "car", 1, 20);
+        Assertions.assertFalse(second.isDone());
+        Assertions.assertEquals(2, vm.getWaitingCount("car"));
+        try {
+            impatient.get(5, TimeUnit.SECONDS);
+            Assertions.assertNotReached();
+        } catch (ExecutionException e) {
+            Assertions.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        Assertions.assertEquals(1, vm.getWaitingCount("car"));
+        Assertions.assertEquals(1L, vm.getWaitlist().getExpiredCount());
+
+        // A return hands the car straight to the head of the queue, whose callbacks see the hire
+        CustomerRecord[] seen = new CustomerRecord[1];
+        second.thenAccept(v -> seen[0] = vm.getCurrentRenter(v.getVehicleID()));
+        vm.returnVehicle(car.getVehicleID(), c[0], 100);
+        Assertions.assertTrue(second.isDone());
+        Assertions.assertEquals(c[1], seen[0]);
+        Assertions.assertTrue(second.get() == car);
+        Assertions.assertEquals(c[1].getCustomerID(), vm.getCurrentRenter(car.getVehicleID()).getCustomerID());
+        Assertions.assertEquals(0, vm.getWaitingCount("car"));
+
+        // Waiters are served in order; a cancelled waiter is skipped
+        CompletableFuture<Vehicle> third = vm.hireVehicleOrWait(c[3], "car", 1, 5_000);
+        CompletableFuture<Vehicle> cancelled = vm.hireVehicleOrWait(c[4], "car", 1, 5_000);
+        CompletableFuture<Vehicle> fourth = vm.hireVehicleOrWait(c[5], "car", 1, 5_000);
+        Vehicle newCar = vm.addVehicle("car");
+        Assertions.assertTrue(third.get() == newCar);
+        cancelled.cancel(false);
+        Assertions.assertEquals(1, vm.getWaitingCount("car"));
+        vm.returnVehicle(car.getVehicleID(), c[1], 100);
+        Assertions.assertTrue(fourth.get() == car);
+        Assertions.assertEquals(0, vm.noOfAvailableVehicles("car"));
+        Assertions.assertTrue(vm.getVechilesByCustomer(c[4]).isEmpty());
+
+        // A vehicle nobody takes is claimed for nothing and goes back to the pool
+        CompletableFuture<Vehicle> gone = vm.hireVehicleOrWait(c[4], "car", 1, 5_000);
+        gone.cancel(false);
+        vm.returnVehicle(car.getVehicleID(), c[5], 100);
+        Assertions.assertEquals(VehicleState.AVAILABLE, car.getState());
+        Assertions.assertEquals(1, vm.noOfAvailableVehicles("car"));
+        Assertions.assertTrue(vm.getVechilesByCustomer(c[4]).isEmpty());
+        Assertions.assertTrue(vm.hireVehicle(c[5], "car", 1));
+
+        // A van awaiting inspection is handed over once it is cleared
+        Vehicle van = vm.addVehicle("van");
+        Assertions.assertTrue(vm.hireVehicle(c[6], "van", 10));
+        CompletableFuture<Vehicle> vanWait = vm.hireVehicleOrWait(c[7], "van", 1, 5_000);
+        vm.returnVehicle(van.getVehicleID(), c[6], 100);
+        Assertions.assertFalse(vanWait.isDone());
+        Assertions.assertTrue(vm.completeInspection(van.getVehicleID()));
+        Assertions.assertTrue(vanWait.get() == van);
+
+        // An ineligible request is refused instead of queued
+        Calendar recent = Calendar.getInstance();
+        recent.add(Calendar.YEAR, -17);
+        CustomerRecord young = vm.addCustomerRecord("Too", "Young", recent.getTime(), false);
+        CompletableFuture<Vehicle> refused = vm.hireVehicleOrWait(young, "car", 1, 5_000);
+        Assertions.assertTrue(refused.isCompletedExceptionally());
+        Assertions.assertEquals(0, vm.getWaitingCount("car"));
+        Assertions.assertEquals(4L, vm.getWaitlist().getHandedOffCount());
+
+        // A request cancelled after its hire was recorded gives the vehicle up to the next one
+        CompletableFuture<?>[] victim = new CompletableFuture<?>[1];
+        InMemoryVehicleRepository store = new InMemoryVehicleRepository();
+        VehicleRepository cancelling = new VehicleRepository() {
+            @Override
+            public void add(Vehicle v) {
+                store.add(v);
+            }
+
+            @Override
+            public Vehicle find(VehicleID id) {
+                return store.find(id);
+            }
+
+            @Override
+            public void update(Vehicle v, String renterID) {
+                if (victim[0] != null && renterID != null) victim[0].cancel(false);
+                store.update(v, renterID);
+            }
+
+            @Override
+            public Collection<Vehicle> findAll() {
+                return store.findAll();
+            }
+
+            @Override
+            public int size() {
+                return store.size();
+            }
+        };
+        VehicleManager undo = new VehicleManager(VehicleSelectionStrategy.firstFit(), cancelling,
+                new InMemoryCustomerRepository());
+        Vehicle undoVan = undo.addVehicle("van");
+        CustomerRecord[] d = new CustomerRecord[3];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = undo.addCustomerRecord("Wait", "Undo" + i, cal.getTime(), true);
+        }
+        Assertions.assertTrue(undo.hireVehicle(d[0], "van", 1));
+        CompletableFuture<Vehicle> dropped = undo.hireVehicleOrWait(d[1], "van", 12, 5_000);
+        CompletableFuture<Vehicle> next = undo.hireVehicleOrWait(d[2], "van", 1, 5_000);
+        victim[0] = dropped;
+        undo.returnVehicle(undoVan.getVehicleID(), d[0], 100);
+        victim[0] = null;
+        Assertions.assertTrue(dropped.isCancelled());
+        Assertions.assertTrue(next.getNow(null) == undoVan);
+        Assertions.assertEquals(d[2], undo.getCurrentRenter(undoVan.getVehicleID()));
+        Assertions.assertTrue(undo.getVechilesByCustomer(d[1]).isEmpty());
+        Assertions.assertFalse(((Van) undoVan).getInspection());
+        HireHistory undone = undo.getHireHistory(undoVan.getVehicleID());
+        Assertions.assertEquals(3, undone.size());
+        Assertions.assertEquals(d[1].getCustomerID(), undone.getCustomerID(1));
+        Assertions.assertEquals(0, undone.getMileage(1));
+        Assertions.assertEquals(1, undo.snapshot().getHiredVehicles().size());
+
+        // With nobody left to take it, the vehicle is free again
+        Assertions.assertTrue(undo.returnVehicle(undoVan.getVehicleID(), 0));
+        CompletableFuture<Vehicle> last = undo.hireVehicleOrWait(d[2], "van", 1, 5_000);
+        Assertions.assertTrue(last.getNow(null) == undoVan);
+        CompletableFuture<Vehicle> alone = undo.hireVehicleOrWait(d[1], "van", 1, 5_000);
+        victim[0] = alone;
+        Assertions.assertTrue(undo.returnVehicle(undoVan.getVehicleID(), 0));
+        victim[0] = null;
+        Assertions.assertTrue(alone.isCancelled());
+        Assertions.assertEquals(VehicleState.AVAILABLE, undoVan.getState());
+        Assertions.assertEquals(1, undo.noOfAvailableVehicles("van"));
+        Assertions.assertTrue(undo.snapshot().getHiredVehicles().isEmpty());
+        for (Vehicle v : undo.getAllVehicles()) {
+            Assertions.assertEquals(VehicleState.AVAILABLE, v.getState());
+        }
+        System.out.println("Hire waitlist tests (FIFO hand-off, timeouts): PASSED");
+    }
+
+    /**
+     * Verifies that the asynchronous API completes its futures, keeps each customer's requests in order
+     * in single-writer mode, and rejects requests over the pending limit.
+     * @throws Exception if a test fails
+     */
+    public static void testAsyncVehicleManager() throws Exception {
+        VehicleManager vm = new VehicleManager();
+        vm.setLogRejections(false);
+        for (int i = 0; i < 200; i++) vm.addVehicle("car");
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.JANUARY, 1);
+        Date dob = cal.getTime();
+
+        try (AsyncVehicleManager async = new AsyncVehicleManager(vm, 4, 10_000, true)) {
+            Assertions.assertTrue(async.isSingleWriter());
+            List<CompletableFuture<CustomerRecord>> added = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                added.add(async.addCustomerRecordAsync("Async", "Customer" + i, dob, false));
+            }
+            // The same person twice: the second runs after the first and is a duplicate
+            CompletableFuture<CustomerRecord> original = async.addCustomerRecordAsync("Same", "Person", dob, false);
+            CompletableFuture<CustomerRecord> duplicate = async.addCustomerRecordAsync("Same", "Person", dob, false);
+            Assertions.assertEquals("Person", original.get().getName().getLastName());
+            try {
+                duplicate.get();
+                Assertions.assertNotReached();
+            } catch (ExecutionException e) {
+                Assertions.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+
+            // Four pipelined hires per customer: only the fourth goes over the cap of three
+            List<CompletableFuture<Boolean>> hires = new ArrayList<>();
+            for (CompletableFuture<CustomerRecord> f : added) {
+                CustomerRecord c = f.get();
+                for (int k = 0; k < 4; k++) hires.add(async.hireVehicleAsync(c, "car", 1));
+            }
+            for (CompletableFuture<Boolean> f : hires) f.get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < hires.size(); i++) {
+                Assertions.assertEquals(i % 4 != 3, hires.get(i).get());
+            }
+            Assertions.assertEquals(50, vm.noOfAvailableVehicles("car"));
+
+            // Returns complete with the outcome; a wrong customer is refused
+            CustomerRecord c0 = added.get(0).get();
+            CustomerRecord c1 = added.get(1).get();
+            VehicleID hired = vm.getVechilesByCustomer(c0).iterator().next().getVehicleID();
+            Assertions.assertFalse(async.returnVehicleAsync(hired, c1, 10).get());
+            Assertions.assertTrue(async.returnVehicleAsync(hired, c0, 10).get());
+            Assertions.assertEquals(0, async.getPendingCount());
+        }
+
+        // Over the pending limit, requests fail at once instead of queueing
+        AsyncVehicleManager bounded = new AsyncVehicleManager(vm, 1, 2, false);
+        CustomerRecord c = vm.addCustomerRecord("Bounded", "Queue", dob, false);
+        CompletableFuture<Boolean> a;
+        CompletableFuture<Boolean> b;
+        CompletableFuture<Boolean> rejected;
+        synchronized (vm) {
+            a = bounded.hireVehicleAsync(c, "car", 1);
+            b = bounded.hireVehicleAsync(c, "car", 1);
+            rejected = bounded.hireVehicleAsync(c, "car", 1);
+            Assertions.assertTrue(rejected.isCompletedExceptionally());
+        }
+        Assertions.assertTrue(a.get() && b.get());
+        bounded.close();
+        Assertions.assertTrue(bounded.hireVehicleAsync(c, "car", 1).isCompletedExceptionally());
+        System.out.println("Async API tests (pipelined, per-customer order, bounded): PASSED");
+    }
+
+    /**
+     * Verifies the binary protocol server's commands and pipelining over loopback, and compares
+     * pipelined throughput with in-process calls.
+     * @throws Exception if a test fails
+     */
+    public static void testFleetServer() throws Exception {
+        VehicleManager vm = new VehicleManager();
+        vm.setLogRejections(false);
+        Vehicle car = vm.addVehicle("car");
+        vm.addVehicle("car");
+        Vehicle van = vm.addVehicle("van");
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.JANUARY, 1);
+        CustomerRecord c = vm.addCustomerRecord("Binary", "Protocol", cal.getTime(), false);
+        String custID = c.getCustomerID();
+
+        try (FleetServer server = new FleetServer(vm, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+             FleetClient client = new FleetClient(startAndGetAddress(server))) {
+            // One request at a time
+            Assertions.assertEquals(2, client.availability("car"));
+            Assertions.assertTrue(client.hire(custID, "car", 1));
+            Assertions.assertFalse(client.hire(custID, "van", 1));
+            Assertions.assertFalse(client.hire("Customer999", "car", 1));
+            Assertions.assertEquals(1, client.availability("car"));
+
+            VehicleID hired = vm.getVechilesByCustomer(c).iterator().next().getVehicleID();
+            FleetClient.Response r = client.lookup(hired);
+            Assertions.assertTrue(r.isOk());
+            Assertions.assertEquals("car", r.getVehicleType());
+            Assertions.assertEquals(VehicleState.HIRED, r.getState());
+            Assertions.assertEquals(custID, r.getRenterID());
+            r = client.lookup(van.getVehicleID());
+            Assertions.assertEquals("van", r.getVehicleType());
+            Assertions.assertEquals(VehicleState.AVAILABLE, r.getState());
+            Assertions.assertNull(r.getRenterID());
+
+            // Pipelined: all requests go in one write and the responses come back in order
+            int t1 = client.sendReturn(hired, custID, 250);
+            int t2 = client.sendLookup(hired);
+            int t3 = client.sendAvailability("car");
+            int t4 = client.sendReturn(hired, custID, 250);
+            client.flush();
+            r = client.receive();
+            Assertions.assertEquals(t1, r.getTag());
+            Assertions.assertTrue(r.isOk());
+            r = client.receive();
+            Assertions.assertEquals(t2, r.getTag());
+            Assertions.assertEquals(VehicleState.AVAILABLE, r.getState());
+            Assertions.assertEquals(250, r.getMileage());
+            r = client.receive();
+            Assertions.assertEquals(t3, r.getTag());
+            Assertions.assertEquals(2, r.getCount());
+            r = client.receive();
+            Assertions.assertEquals(t4, r.getTag());
+            Assertions.assertEquals(FleetServer.REFUSED, r.getStatus());
+
+            // Benchmark: pipelined hires, returns, lookups and availability checks against the same
+            // calls in-process; first fit hires the same car every time
+            int n = 200_000;
+            int window = 1_000;
+            long start = System.nanoTime();
+            for (int sent = 0; sent < n; sent += window) {
+                for (int i = 0; i < window; i += 4) {
+                    client.sendHire(custID, "car", 1);
+                    client.sendReturn(car.getVehicleID(), custID, 0);
+                    client.sendLookup(car.getVehicleID());
+                    client.sendAvailability("car");
+                }
+                client.flush();
+                for (int i = 0; i < window; i++) {
+                    Assertions.assertTrue(client.receive().isOk());
+                }
+            }
+            long remoteNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            long sink = 0;
+            for (int i = 0; i < n; i += 4) {
+                Assertions.assertTrue(vm.hireVehicle(c, "car", 1));
+                Assertions.assertTrue(vm.returnHiredVehicle(car.getVehicleID(), c, 0));
+                Vehicle v = vm.getVehicle(car.getVehicleID());
+                CustomerRecord renter = vm.getCurrentRenter(car.getVehicleID());
+                sink += v.getCurrentMileage() + (renter == null ? 1 : 0) + vm.noOfAvailableVehicles("car");
+            }
+            long localNanos = System.nanoTime() - start;
+            Assertions.assertTrue(sink > 0);
+            Assertions.assertEquals(n + 11L, server.getRequestCount());
+            System.out.printf("Protocol benchmark: %d pipelined requests at %.0f/s over loopback, "
+                    + "%.0f/s in-process%n", n, n * 1e9 / remoteNanos, n * 1e9 / localNanos);
+        }
+        System.out.println("Binary protocol server tests (commands, pipelining): PASSED");
+    }
+
+    /**
+     * Starts a server and returns the address clients connect to.
+     * @param server the server
+     * @return the server's address
+     * @throws IOException if the address can not be read
+     */
+    private static InetSocketAddress startAndGetAddress(FleetServer server) throws IOException {
+        server.start();
+        return server.getAddress();
+    }
+
+    /**
+     * Verifies that steady-state hires and returns allocate nothing, by reading the thread's allocation
+     * counter around many hire and return cycles. Skipped on JVMs without the counter.
+     * @throws Exception if a test fails
+     */
+    public static void testHotPathAllocation() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            System.out.println("Hot path allocation tests: SKIPPED (no allocation counter)");
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        VehicleManager vm = new VehicleManager();
+        // Publishing a snapshot per mutation allocates, so the default mode is not allocation-free
+        Assertions.assertFalse(vm.isAllocationFree());
+        vm.setAllocationFree(true);
+        Assertions.assertTrue(vm.isAllocationFree());
+        VehicleID car = vm.addVehicle("car").getVehicleID();
+        VehicleID van = vm.addVehicle("van").getVehicleID();
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.JANUARY, 1);
+        CustomerRecord c = vm.addCustomerRecord("Zero", "Alloc", cal.getTime(), true);
+
+        // Warm up until the hot path is compiled and every per-customer structure exists
+        for (int i = 0; i < 50_000; i++) {
+            hireAndReturn(vm, c, car, van);
+        }
+        long overhead = threads.getCurrentThreadAllocatedBytes();
+        overhead = threads.getCurrentThreadAllocatedBytes() - overhead;
+
+        int cycles = 20_000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < cycles; i++) {
+            hireAndReturn(vm, c, car, van);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before - overhead;
+        System.out.println("Hot path allocation: " + allocated + " bytes over " + cycles
+                + " hire and return cycles");
+        // Anything allocated per cycle would be at least 16 bytes a cycle
+        Assertions.assertTrue(allocated < cycles);
+        System.out.println("Hot path allocation tests (steady-state hire and return): PASSED");
+    }
+
+    /**
+     * Hires and returns a car and a van, and checks a refused hire over the cap.
+     * @param vm the manager
+     * @param c the customer
+     * @param car the car's ID
+     * @param van the van's ID
+     */
+    private static void hireAndReturn(VehicleManager vm, CustomerRecord c, VehicleID car, VehicleID van) {
+        Assertions.assertTrue(vm.hireVehicle(c, "car", 1));
+        Assertions.assertTrue(vm.hireVehicle(c, "van", 1));
+        Assertions.assertFalse(vm.hireVehicle(c, "car", 1));
+        vm.returnVehicle(car, c, 3);
+        vm.returnVehicle(van, c, 3);
+    }
+
     /**
      * Verifies ID generation rules: prefix, even/odd numbering, and uniqueness.
      */
@@ -0,0 +1,53 @@
+import java.util.Properties;
+
+/**
+ * This class reads typed values from the properties files of HireRules and Tariff,
+ * so both reject malformed values in the same way.
+ */
+final class PropertyValues {
+
+    /**
+     * Not instantiable.
+     */
+    private PropertyValues() {
+    }
+
+    /**
+     * Reads an integer property, using the given default if it is missing.
+     * @param props the properties to read
+     * @param key the property key
+     * @param defaultValue the value used when the key is missing
+     * @return the integer value
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    static int intValue(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+        }
+    }
+
+    /**
+     * Reads a boolean property, using the given default if it is missing.
+     * Only "true" and "false" are accepted, ignoring case, so a typo is not read as false.
+     * @param props the properties to read
+     * @param key the property key
+     * @param defaultValue the value used when the key is missing
+     * @return the boolean value
+     * @throws IllegalArgumentException if the value is not "true" or "false"
+     */
+    static boolean booleanValue(Properties props, String key, boolean defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.trim().equalsIgnoreCase("true")) return true;
+        if (value.trim().equalsIgnoreCase("false")) return false;
+        throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * This class quotes hire prices from a compiled Tariff.
+ * Surge pricing reads the live per-type counters of FleetAnalytics, so quotes never scan the fleet
+ * or take the manager's lock. A quote allocates nothing; a batch reads availability once per type,
+ * so every quote in it is priced against the same fleet state.
+ */
+public final class QuoteEngine {
+    private static final String[] TYPES = {"car", "van"};
+
+    private final FleetAnalytics analytics;
+    // Replaced as a whole on reload, so quotes never see a half-updated tariff
+    private volatile Tariff tariff;
+
+    /**
+     * Constructs a quote engine with the default tariff.
+     * @param analytics the fleet counters used for surge pricing
+     */
+    QuoteEngine(FleetAnalytics analytics) {
+        this.analytics = analytics;
+        this.tariff = Tariff.defaults();
+    }
+
+    /**
+     * Returns the tariff currently in use.
+     * @return the current Tariff
+     */
+    public Tariff getTariff() {
+        return tariff;
+    }
+
+    /**
+     * Replaces the tariff. Quotes already in progress finish with the old tariff.
+     * @param newTariff the new tariff
+     * @throws IllegalArgumentException if newTariff is null
+     */
+    public void setTariff(Tariff newTariff) {
+        if (newTariff == null) {
+            throw new IllegalArgumentException("Tariff can not be null");
+        }
+        this.tariff = newTariff;
+    }
+
+    /**
+     * Reloads the tariff from a properties file. The current tariff is kept if the file is invalid.
+     * @param path the path of the tariff file
+     * @return the newly loaded Tariff
+     * @throws IOException if the file can not be read
+     * @throws IllegalArgumentException if the file contains invalid values
+     */
+    public Tariff reloadTariff(Path path) throws IOException {
+        Tariff loaded = Tariff.load(path);
+        this.tariff = loaded;
+        return loaded;
+    }
+
+    /**
+     * Indicates whether surge pricing currently applies to a vehicle type.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return true if few vehicles of the type are free, false otherwise
+     * @throws IllegalArgumentException if the type is not "car" or "van"
+     */
+    public boolean isSurge(String vehicleType) {
+        return isSurge(tariff, Tariff.typeIndex(vehicleType));
+    }
+
+    /**
+     * Checks the live counters of a type against a tariff's surge threshold.
+     * @param t the tariff
+     * @param type the table index of the vehicle type
+     * @return true if surge pricing applies, false otherwise
+     */
+    private boolean isSurge(Tariff t, int type) {
+        String name = TYPES[type];
+        return t.isSurge(analytics.getFleetSize(name), analytics.getAvailableCount(name));
+    }
+
+    /**
+     * Quotes the price of a hire.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @param duration the hire duration in days
+     * @return the price in pence
+     * @throws IllegalArgumentException if the type is not "car" or "van", or the duration is out of range
+     */
+    public long quote(String vehicleType, int duration) {
+        Tariff t = tariff;
+        int type = Tariff.typeIndex(vehicleType);
+        return t.price(type, duration, isSurge(t, type));
+    }
+
+    /**
+     * Quotes a batch of hires. All quotes use the same tariff and availability.
+     * @param vehicleTypes the vehicle type of each hire ("car" or "van")
+     * @param durations the duration of each hire in days
+     * @param prices receives the price of each hire in pence
+     * @throws IllegalArgumentException if the arrays differ in length, or any type or duration is invalid
+     */
+    public void quote(String[] vehicleTypes, int[] durations, long[] prices) {
+        if (vehicleTypes.length != durations.length || durations.length != prices.length) {
+            throw new IllegalArgumentException("Batch arrays must have the same length");
+        }
+        Tariff t = tariff;
+        boolean carSurge = isSurge(t, Tariff.CAR);
+        boolean vanSurge = isSurge(t, Tariff.VAN);
+        for (int i = 0; i < durations.length; i++) {
+            int type = Tariff.typeIndex(vehicleTypes[i]);
+            prices[i] = t.price(type, durations[i], type == Tariff.CAR ? carSurge : vanSurge);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class holds the vehicles one customer has on hire, in a small array.
+ * A customer holds only a few vehicles, so a linear scan is as fast as hashing, and adding or
+ * removing a vehicle allocates nothing once the array has grown to the customer's peak.
+ * It is only used while the manager's lock is held.
+ */
+final class RentedVehicles extends AbstractSet<Vehicle> {
+    private Vehicle[] vehicles = new Vehicle[4];
+    private int size;
+
+    /**
+     * Returns the number of vehicles on hire.
+     * @return the vehicle count
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Indicates whether a vehicle is on hire to the customer.
+     * @param o the vehicle
+     * @return true if it is held, false otherwise
+     */
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Adds a vehicle.
+     * @param v the vehicle
+     * @return true if it was not already held, false otherwise
+     */
+    @Override
+    public boolean add(Vehicle v) {
+        if (indexOf(v) >= 0) return false;
+        if (size == vehicles.length) {
+            vehicles = Arrays.copyOf(vehicles, size * 2);
+        }
+        vehicles[size++] = v;
+        return true;
+    }
+
+    /**
+     * Removes a vehicle, moving the last vehicle into its place.
+     * @param o the vehicle
+     * @return true if it was held, false otherwise
+     */
+    @Override
+    public boolean remove(Object o) {
+        int i = indexOf(o);
+        if (i < 0) return false;
+        vehicles[i] = vehicles[--size];
+        vehicles[size] = null;
+        return true;
+    }
+
+    /**
+     * Finds a vehicle in the array.
+     * @param o the vehicle
+     * @return its index, or -1 if it is not held
+     */
+    private int indexOf(Object o) {
+        for (int i = 0; i < size; i++) {
+            if (vehicles[i].equals(o)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns an iterator over the held vehicles.
+     * @return the iterator
+     */
+    @Override
+    public Iterator<Vehicle> iterator() {
+        return new Iterator<Vehicle>() {
+            private int next;
+            private boolean canRemove;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Vehicle next() {
+                if (next >= size) throw new NoSuchElementException();
+                canRemove = true;
+                return vehicles[next++];
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) throw new IllegalStateException();
+                canRemove = false;
+                // The last vehicle moves into the removed slot, so visit that slot again
+                RentedVehicles.this.remove(vehicles[--next]);
+            }
+        };
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * Thrown when a repository can not read or write its backing store.
+ */
+public class RepositoryException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new exception.
+     * @param message the description of the failed operation
+     * @param cause the underlying error
+     */
+    public RepositoryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
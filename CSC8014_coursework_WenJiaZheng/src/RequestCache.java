@@ -0,0 +1,126 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * This class remembers the outcome of recent client requests, so a retried request can be answered
+ * without being applied twice. Entries expire after a fixed time and the number of entries is capped;
+ * as every entry lives for the same time, the oldest entry is always the next to expire, and expiry
+ * and eviction both remove from the head of an insertion-ordered map.
+ */
+public final class RequestCache {
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private long hits;
+
+    /**
+     * The outcome of one request.
+     */
+    private static final class Entry {
+        private final long expiresAt;
+        private final String customerID;
+        private final boolean result;
+
+        /**
+         * Constructs an entry.
+         * @param expiresAt the time the entry expires, in milliseconds
+         * @param customerID the customer the request was made for
+         * @param result the outcome of the request
+         */
+        private Entry(long expiresAt, String customerID, boolean result) {
+            this.expiresAt = expiresAt;
+            this.customerID = customerID;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Constructs an empty cache using the system clock.
+     * @param maxEntries the maximum number of requests remembered
+     * @param ttlMillis how long a request is remembered, in milliseconds
+     * @throws IllegalArgumentException if maxEntries or ttlMillis is not positive
+     */
+    public RequestCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructs an empty cache.
+     * @param maxEntries the maximum number of requests remembered
+     * @param ttlMillis how long a request is remembered, in milliseconds
+     * @param clock the source of the current time in milliseconds
+     * @throws IllegalArgumentException if maxEntries or ttlMillis is not positive
+     */
+    RequestCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Request cache size and expiry must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Looks up the outcome of an earlier request.
+     * @param requestID the client request ID
+     * @param customerID the customer the request is made for
+     * @return the earlier outcome, or null if the request has not been seen or has expired
+     * @throws IllegalArgumentException if the request ID was used for a different customer
+     */
+    synchronized Boolean lookup(String requestID, String customerID) {
+        expire(clock.getAsLong());
+        Entry e = entries.get(requestID);
+        if (e == null) return null;
+        if (!e.customerID.equals(customerID)) {
+            throw new IllegalArgumentException("Request ID already used by another customer: " + requestID);
+        }
+        hits++;
+        return e.result;
+    }
+
+    /**
+     * Records the outcome of a request, evicting the oldest requests if the cache is full.
+     * @param requestID the client request ID
+     * @param customerID the customer the request was made for
+     * @param result the outcome of the request
+     */
+    synchronized void record(String requestID, String customerID, boolean result) {
+        long now = clock.getAsLong();
+        expire(now);
+        entries.put(requestID, new Entry(now + ttlMillis, customerID, result));
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes expired entries from the head of the map.
+     * @param now the current time in milliseconds
+     */
+    private void expire(long now) {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext() && eldest.next().expiresAt <= now) {
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the number of requests currently remembered.
+     * @return the entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of retries answered from the cache.
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class rotates through the vehicles of each type, starting each search after the last vehicle chosen.
+ */
+final class RoundRobinStrategy implements VehicleSelectionStrategy {
+    private final Map<String, List<Vehicle>> byType = new HashMap<>();
+    private final Map<String, Integer> cursors = new HashMap<>();
+
+    /**
+     * Registers a new vehicle in the fleet.
+     * @param v the new vehicle
+     */
+    @Override
+    public void vehicleAdded(Vehicle v) {
+        byType.computeIfAbsent(v.getVehicleType().toLowerCase(), k -> new ArrayList<>()).add(v);
+    }
+
+    /**
+     * Chooses the next hireable vehicle after the one chosen last time.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the chosen vehicle, or null if none is hireable
+     */
+    @Override
+    public Vehicle select(String vehicleType) {
+        String type = vehicleType.toLowerCase();
+        List<Vehicle> candidates = byType.get(type);
+        if (candidates == null) return null;
+        int start = cursors.getOrDefault(type, 0);
+        int n = candidates.size();
+        for (int i = 0; i < n; i++) {
+            int index = (start + i) % n;
+            Vehicle v = candidates.get(index);
+            if (VehicleSelectionStrategy.isHireable(v)) {
+                cursors.put(type, (index + 1) % n);
+                return v;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Nothing to do: availability is checked on each search.
+     * @param v the returned vehicle
+     */
+    @Override
+    public void vehicleReleased(Vehicle v) {
+    }
+}
@@ -0,0 +1,146 @@
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * This class is an immutable list for fleet snapshots, stored as a tree of 32-slot arrays.
+ * Replacing or appending an element copies only the arrays on the path to it, so a new snapshot
+ * shares everything else with the one before and costs O(log n) to build rather than O(n).
+ * @param <T> the element type
+ */
+final class SnapshotVector<T> extends AbstractList<T> implements RandomAccess {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final SnapshotVector<Object> EMPTY = new SnapshotVector<>(new Object[WIDTH], 0, 0);
+
+    private final Object[] root;
+    private final int size;
+    // Bits of the index consumed above the leaves; 0 when the root is a leaf
+    private final int shift;
+
+    /**
+     * Constructs a vector over an existing tree.
+     * @param root the root array
+     * @param size the number of elements
+     * @param shift the index bits consumed above the leaves
+     */
+    private SnapshotVector(Object[] root, int size, int shift) {
+        this.root = root;
+        this.size = size;
+        this.shift = shift;
+    }
+
+    /**
+     * Returns the empty vector.
+     * @param <T> the element type
+     * @return the empty SnapshotVector
+     */
+    @SuppressWarnings("unchecked")
+    static <T> SnapshotVector<T> empty() {
+        return (SnapshotVector<T>) EMPTY;
+    }
+
+    /**
+     * Builds a vector holding the given elements in iteration order, filling each array once.
+     * @param elements the elements
+     * @param <T> the element type
+     * @return the new SnapshotVector
+     */
+    static <T> SnapshotVector<T> copyOf(Collection<? extends T> elements) {
+        Object[] level = elements.toArray();
+        int size = level.length;
+        if (size == 0) return empty();
+        int shift = -BITS;
+        // Group each level into arrays of 32 until a single root is left
+        do {
+            Object[] parents = new Object[(level.length + MASK) >>> BITS];
+            for (int i = 0; i < parents.length; i++) {
+                Object[] node = new Object[WIDTH];
+                System.arraycopy(level, i << BITS, node, 0, Math.min(WIDTH, level.length - (i << BITS)));
+                parents[i] = node;
+            }
+            level = parents;
+            shift += BITS;
+        } while (level.length > 1);
+        return new SnapshotVector<>((Object[]) level[0], size, shift);
+    }
+
+    /**
+     * Returns the element at an index.
+     * @param index the index
+     * @return the element
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for size " + size);
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return (T) node[index & MASK];
+    }
+
+    /**
+     * Returns the number of elements.
+     * @return the size
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a vector with one element replaced. This vector is unchanged.
+     * @param index the index to replace
+     * @param value the new element
+     * @return the new SnapshotVector
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    SnapshotVector<T> with(int index, T value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for size " + size);
+        }
+        return new SnapshotVector<>(put(root, shift, index, value), size, shift);
+    }
+
+    /**
+     * Returns a vector with an element appended. This vector is unchanged.
+     * @param value the new element
+     * @return the new SnapshotVector
+     */
+    SnapshotVector<T> plus(T value) {
+        Object[] newRoot = root;
+        int newShift = shift;
+        if (size == 1 << (shift + BITS)) {
+            // The tree is full: the old root becomes the first child of a new one
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newShift += BITS;
+        }
+        return new SnapshotVector<>(put(newRoot, newShift, size, value), size + 1, newShift);
+    }
+
+    /**
+     * Copies the path to an index, storing a value at its end and creating missing arrays on the way.
+     * @param node the array at this level, or null if it does not exist yet
+     * @param level the index bits consumed above this level
+     * @param index the index
+     * @param value the value to store
+     * @return the copied array
+     */
+    private static Object[] put(Object[] node, int level, int index, Object value) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        if (level == 0) {
+            copy[index & MASK] = value;
+        } else {
+            int child = (index >>> level) & MASK;
+            copy[child] = put((Object[]) copy[child], level - BITS, index, value);
+        }
+        return copy;
+    }
+}
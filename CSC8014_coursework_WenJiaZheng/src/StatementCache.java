@@ -0,0 +1,88 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class keeps one prepared statement per SQL string for a connection,
+ * so repeated queries and batches are parsed and planned by the database once.
+ */
+final class StatementCache implements AutoCloseable {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private int prepared;
+
+    /**
+     * Constructs an empty cache.
+     * @param connection the connection statements are prepared on
+     */
+    StatementCache(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Returns the prepared statement for an SQL string, preparing it on first use.
+     * @param sql the SQL string
+     * @return the prepared statement
+     * @throws SQLException if the statement can not be prepared
+     */
+    PreparedStatement get(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+            prepared++;
+        }
+        return statement;
+    }
+
+    /**
+     * Cleans up after a failed batch write: clears the batches, so a retry does not send their rows twice,
+     * and rolls the transaction back. Failures while doing so are added to the original failure.
+     * @param connection the connection of the transaction
+     * @param failure the failure of the write
+     * @param batches the statements that may hold batched rows; null entries are skipped
+     */
+    static void abort(Connection connection, SQLException failure, PreparedStatement... batches) {
+        for (PreparedStatement batch : batches) {
+            if (batch == null) continue;
+            try {
+                batch.clearBatch();
+            } catch (SQLException e) {
+                failure.addSuppressed(e);
+            }
+        }
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Returns the number of statements prepared so far.
+     * @return the prepared statement count
+     */
+    int getPreparedCount() {
+        return prepared;
+    }
+
+    /**
+     * Closes every cached statement.
+     * @throws SQLException if a statement can not be closed
+     */
+    @Override
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        statements.clear();
+        if (failure != null) throw failure;
+    }
+}
@@ -0,0 +1,330 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * This class hammers a VehicleManager from many threads and checks that hires and returns stay correct.
+ * Each worker owns its own customers and randomly adds customers, hires and returns,
+ * while a checker thread validates published snapshots. When all workers finish,
+ * the quiescent state is checked against the counts the workers observed.
+ * Latency of each operation is recorded so different locking schemes can be compared.
+ */
+public final class StressHarness {
+    private static final String[] OPERATIONS = {"addCustomerRecord", "hireVehicle", "returnVehicle"};
+    private static final int MAX_VIOLATIONS = 100;
+
+    private final int cars;
+    private final int vans;
+    private final int threads;
+    private final int opsPerThread;
+    private final long seed;
+
+    /**
+     * The outcome of one stress run.
+     */
+    public static final class Result {
+        private final List<String> violations;
+        private final Map<String, long[]> latencies;
+        private final long operations;
+        private final long wallNanos;
+
+        /**
+         * Constructs a result.
+         * @param violations the invariant violations found
+         * @param latencies the sorted latencies in nanoseconds per operation
+         * @param operations the number of operations performed
+         * @param wallNanos the real time taken in nanoseconds
+         */
+        private Result(List<String> violations, Map<String, long[]> latencies, long operations, long wallNanos) {
+            this.violations = Collections.unmodifiableList(violations);
+            this.latencies = latencies;
+            this.operations = operations;
+            this.wallNanos = wallNanos;
+        }
+
+        /**
+         * Returns the invariant violations found. An empty list means the run was correct.
+         * @return an unmodifiable list of violations
+         */
+        public List<String> getViolations() {
+            return violations;
+        }
+
+        /**
+         * Returns the number of operations performed by all workers.
+         * @return the number of operations
+         */
+        public long getOperations() {
+            return operations;
+        }
+
+        /**
+         * Returns the number of operations completed per real second.
+         * @return the throughput
+         */
+        public double getOpsPerSecond() {
+            return wallNanos == 0 ? 0.0 : operations * 1e9 / wallNanos;
+        }
+
+        /**
+         * Returns a latency percentile for one operation.
+         * @param operation "addCustomerRecord", "hireVehicle" or "returnVehicle"
+         * @param percentile the percentile between 0 and 100
+         * @return the latency in nanoseconds; 0 if the operation never ran
+         * @throws IllegalArgumentException if the operation is unknown
+         */
+        public long getLatencyNanos(String operation, double percentile) {
+            long[] sorted = latencies.get(operation);
+            if (sorted == null) {
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+            }
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        /**
+         * Returns a summary of throughput and latency.
+         * @return the summary
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d ops (%.0f/s), %d violations", operations, getOpsPerSecond(), violations.size()));
+            for (String op : OPERATIONS) {
+                sb.append(String.format("; %s p50 %dus p99 %dus", op,
+                        getLatencyNanos(op, 50) / 1000, getLatencyNanos(op, 99) / 1000));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Constructs a harness.
+     * @param cars the number of cars in the fleet
+     * @param vans the number of vans in the fleet
+     * @param threads the number of worker threads
+     * @param opsPerThread the number of operations each worker performs
+     * @param seed the random seed for the workers
+     * @throws IllegalArgumentException if a count is negative or there are no threads or operations
+     */
+    public StressHarness(int cars, int vans, int threads, int opsPerThread, long seed) {
+        if (cars < 0 || vans < 0 || threads <= 0 || opsPerThread <= 0) {
+            throw new IllegalArgumentException("Invalid stress configuration");
+        }
+        this.cars = cars;
+        this.vans = vans;
+        this.threads = threads;
+        this.opsPerThread = opsPerThread;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs the workers and the snapshot checker against a new VehicleManager.
+     * @return the result of the run
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public Result run() throws InterruptedException {
+        VehicleManager vm = new VehicleManager();
+        vm.setLogRejections(false);
+        for (int i = 0; i < cars; i++) vm.addVehicle("car");
+        for (int i = 0; i < vans; i++) vm.addVehicle("van");
+
+        ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+        long[][][] latencies = new long[threads][OPERATIONS.length][opsPerThread];
+        int[][] latencyCounts = new int[threads][OPERATIONS.length];
+        long[] hires = new long[threads];
+        long[] returns = new long[threads];
+        int[] added = new int[threads];
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    work(vm, id, latencies[id], latencyCounts[id], hires, returns, added);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    violations.add("worker " + id + " failed: " + e);
+                } finally {
+                    finished.countDown();
+                }
+            }, "stress-worker-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+
+        // Validate published snapshots while the workers run
+        Thread checker = new Thread(() -> {
+            while (finished.getCount() > 0 && violations.size() < MAX_VIOLATIONS) {
+                checkSnapshot(vm.snapshot(), vm.getRules().getMaxVehiclesPerCustomer(), violations);
+                Thread.yield();
+            }
+        }, "stress-checker");
+
+        long begin = System.nanoTime();
+        checker.start();
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+        long wallNanos = System.nanoTime() - begin;
+        checker.join();
+
+        checkQuiescent(vm, Arrays.stream(hires).sum() - Arrays.stream(returns).sum(),
+                Arrays.stream(added).sum(), violations);
+
+        Map<String, long[]> merged = new LinkedHashMap<>();
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            int total = 0;
+            for (int t = 0; t < threads; t++) total += latencyCounts[t][op];
+            long[] all = new long[total];
+            int pos = 0;
+            for (int t = 0; t < threads; t++) {
+                System.arraycopy(latencies[t][op], 0, all, pos, latencyCounts[t][op]);
+                pos += latencyCounts[t][op];
+            }
+            Arrays.sort(all);
+            merged.put(OPERATIONS[op], all);
+        }
+        return new Result(new ArrayList<>(violations), merged, (long) threads * opsPerThread, wallNanos);
+    }
+
+    /**
+     * Performs one worker's random sequence of operations on its own customers.
+     * @param vm the manager under test
+     * @param id the worker number
+     * @param latencies the worker's latency samples per operation
+     * @param counts the worker's number of samples per operation
+     * @param hires the successful hires per worker
+     * @param returns the returns per worker
+     * @param added the customers added per worker
+     */
+    private void work(VehicleManager vm, int id, long[][] latencies, int[] counts,
+                      long[] hires, long[] returns, int[] added) {
+        Random random = new Random(seed + id);
+        List<CustomerRecord> mine = new ArrayList<>();
+        Calendar cal = Calendar.getInstance();
+        cal.set(1980, Calendar.JANUARY, 1);
+
+        for (int i = 0; i < opsPerThread; i++) {
+            int choice = random.nextInt(10);
+            long begin = System.nanoTime();
+            if (mine.isEmpty() || choice == 0) {
+                mine.add(vm.addCustomerRecord("Stress" + id, "Customer" + i, cal.getTime(), random.nextBoolean()));
+                record(latencies, counts, 0, System.nanoTime() - begin);
+                added[id]++;
+            } else if (choice < 6) {
+                CustomerRecord customer = mine.get(random.nextInt(mine.size()));
+                begin = System.nanoTime();
+                boolean hired = vm.hireVehicle(customer, random.nextInt(4) == 0 ? "van" : "car", 1 + random.nextInt(14));
+                record(latencies, counts, 1, System.nanoTime() - begin);
+                if (hired) hires[id]++;
+            } else {
+                CustomerRecord customer = mine.get(random.nextInt(mine.size()));
+                Collection<Vehicle> held = vm.getVechilesByCustomer(customer);
+                if (!held.isEmpty()) {
+                    Vehicle v = held.iterator().next();
+                    begin = System.nanoTime();
+                    vm.returnVehicle(v.getVehicleID(), customer, random.nextInt(3000));
+                    record(latencies, counts, 2, System.nanoTime() - begin);
+                    returns[id]++;
+                }
+            }
+            // Perturb the interleaving
+            if (random.nextInt(8) == 0) Thread.yield();
+        }
+    }
+
+    /**
+     * Stores one latency sample.
+     * @param latencies the latency samples per operation
+     * @param counts the number of samples per operation
+     * @param op the operation index
+     * @param nanos the latency in nanoseconds
+     */
+    private static void record(long[][] latencies, int[] counts, int op, long nanos) {
+        latencies[op][counts[op]++] = nanos;
+    }
+
+    /**
+     * Checks that no vehicle is held twice and no customer is over the cap in a snapshot.
+     * @param snap the snapshot to check
+     * @param cap the maximum vehicles per customer
+     * @param violations where violations are reported
+     */
+    private static void checkSnapshot(FleetSnapshot snap, int cap, Collection<String> violations) {
+        Set<Vehicle> seen = new HashSet<>();
+        for (Map.Entry<String, Set<Vehicle>> entry : snap.getHiredVehicles().entrySet()) {
+            if (entry.getValue().size() > cap) {
+                violations.add("snapshot " + snap.getVersion() + ": " + entry.getKey() + " holds "
+                        + entry.getValue().size() + " vehicles");
+            }
+            for (Vehicle v : entry.getValue()) {
+                if (!seen.add(v)) {
+                    violations.add("snapshot " + snap.getVersion() + ": " + v + " hired twice");
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the final state once all workers have stopped.
+     * @param vm the manager under test
+     * @param expectedOnHire the hires minus returns counted by the workers
+     * @param expectedCustomers the customers added by the workers
+     * @param violations where violations are reported
+     */
+    private static void checkQuiescent(VehicleManager vm, long expectedOnHire, int expectedCustomers,
+                                       Collection<String> violations) {
+        FleetSnapshot snap = vm.snapshot();
+        checkSnapshot(snap, vm.getRules().getMaxVehiclesPerCustomer(), violations);
+
+        Set<Vehicle> held = new HashSet<>();
+        for (Map.Entry<String, Set<Vehicle>> e : snap.getHiredVehicles().entrySet()) {
+            held.addAll(e.getValue());
+            for (Vehicle v : e.getValue()) {
+                CustomerRecord renter = vm.getCurrentRenter(v.getVehicleID());
+                if (renter == null || !renter.getCustomerID().equals(e.getKey())) {
+                    violations.add(v + " is held by " + e.getKey() + " but its renter is "
+                            + (renter == null ? "nobody" : renter.getCustomerID()));
+                }
+            }
+        }
+
+        Map<String, Integer> hiredByType = new LinkedHashMap<>();
+        for (Vehicle v : snap.getAllVehicles()) {
+            if (v.isHired() != held.contains(v)) {
+                violations.add(v + " hired flag is " + v.isHired() + " but held by a customer is " + held.contains(v));
+            }
+            if (v.isHired()) hiredByType.merge(v.getVehicleType().toLowerCase(), 1, Integer::sum);
+        }
+        for (String type : new String[] {"car", "van"}) {
+            int counted = hiredByType.getOrDefault(type, 0);
+            if (vm.getAnalytics().getHiredCount(type) != counted) {
+                violations.add("hired " + type + " counter is " + vm.getAnalytics().getHiredCount(type)
+                        + " but " + counted + " are hired");
+            }
+        }
+        if (held.size() != expectedOnHire) {
+            violations.add(held.size() + " vehicles on hire but workers counted " + expectedOnHire);
+        }
+        if (snap.getCustomers().size() != expectedCustomers) {
+            violations.add(snap.getCustomers().size() + " customers but workers added " + expectedCustomers);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * This class represents the hire tariffs of the Hire Management System.
+ * Day rates, long-hire discounts and the surge surcharge are compiled into price tables
+ * indexed by vehicle type and duration, so a quote is two array reads.
+ * All prices are in pence.
+ */
+public final class Tariff {
+    static final int CAR = 0;
+    static final int VAN = 1;
+
+    private static final Tariff DEFAULTS = new Tariff(4500, 7000, 10, 20, 20, 125, 90);
+
+    private final int carDayRate;
+    private final int vanDayRate;
+    private final int weeklyDiscount;
+    private final int monthlyDiscount;
+    private final int surgeThreshold;
+    private final int surgePercent;
+    private final int maxDays;
+    // [type][days] -> price; index 0 is unused
+    private final long[][] prices;
+    private final long[][] surgePrices;
+
+    /**
+     * Constructs and compiles a tariff.
+     * @param carDayRate the car price per day
+     * @param vanDayRate the van price per day
+     * @param weeklyDiscount the discount in percent for hires of 7 days or more
+     * @param monthlyDiscount the discount in percent for hires of 28 days or more
+     * @param surgeThreshold the share of free vehicles, in percent, below which surge pricing applies
+     * @param surgePercent the surge price as a percentage of the normal price
+     * @param maxDays the longest duration that can be quoted
+     * @throws IllegalArgumentException if a rate is negative, a discount is not between 0 and 100,
+     *                                  surgePercent is below 100 or maxDays is not positive
+     */
+    public Tariff(int carDayRate, int vanDayRate, int weeklyDiscount, int monthlyDiscount,
+                  int surgeThreshold, int surgePercent, int maxDays) {
+        if (carDayRate < 0 || vanDayRate < 0) {
+            throw new IllegalArgumentException("Day rates can not be negative");
+        }
+        if (weeklyDiscount < 0 || weeklyDiscount > 100 || monthlyDiscount < 0 || monthlyDiscount > 100
+                || surgeThreshold < 0 || surgeThreshold > 100) {
+            throw new IllegalArgumentException("Percentages must be between 0 and 100");
+        }
+        if (surgePercent < 100) {
+            throw new IllegalArgumentException("Surge price can not be below the normal price");
+        }
+        if (maxDays <= 0) {
+            throw new IllegalArgumentException("Maximum duration must be positive");
+        }
+        this.carDayRate = carDayRate;
+        this.vanDayRate = vanDayRate;
+        this.weeklyDiscount = weeklyDiscount;
+        this.monthlyDiscount = monthlyDiscount;
+        this.surgeThreshold = surgeThreshold;
+        this.surgePercent = surgePercent;
+        this.maxDays = maxDays;
+
+        prices = new long[2][maxDays + 1];
+        surgePrices = new long[2][maxDays + 1];
+        int[] rates = {carDayRate, vanDayRate};
+        for (int type = 0; type < 2; type++) {
+            for (int days = 1; days <= maxDays; days++) {
+                int discount = days >= 28 ? monthlyDiscount : days >= 7 ? weeklyDiscount : 0;
+                long price = (long) rates[type] * days * (100 - discount) / 100;
+                prices[type][days] = price;
+                surgePrices[type][days] = price * surgePercent / 100;
+            }
+        }
+    }
+
+    /**
+     * Returns the default tariff (car 45.00 and van 70.00 per day, 10% off from 7 days,
+     * 20% off from 28 days, 25% surge when under 20% of a type is free, up to 90 days).
+     * @return the default Tariff
+     */
+    public static Tariff defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Loads and compiles a tariff from a properties file.
+     * Missing keys fall back to the default tariff.
+     * @param path the path of the properties file
+     * @return the compiled Tariff
+     * @throws IOException if the file can not be read
+     * @throws IllegalArgumentException if a value is not a valid number or limit
+     */
+    public static Tariff load(Path path) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            props.load(reader);
+        }
+        return fromProperties(props);
+    }
+
+    /**
+     * Compiles a tariff from the given properties.
+     * Missing keys fall back to the default tariff.
+     * @param props the tariff properties
+     * @return the compiled Tariff
+     * @throws IllegalArgumentException if a value is not a valid number or limit
+     */
+    public static Tariff fromProperties(Properties props) {
+        return new Tariff(
+                PropertyValues.intValue(props, "car.dayRate", DEFAULTS.carDayRate),
+                PropertyValues.intValue(props, "van.dayRate", DEFAULTS.vanDayRate),
+                PropertyValues.intValue(props, "discount.weekly", DEFAULTS.weeklyDiscount),
+                PropertyValues.intValue(props, "discount.monthly", DEFAULTS.monthlyDiscount),
+                PropertyValues.intValue(props, "surge.threshold", DEFAULTS.surgeThreshold),
+                PropertyValues.intValue(props, "surge.percent", DEFAULTS.surgePercent),
+                PropertyValues.intValue(props, "maxDays", DEFAULTS.maxDays));
+    }
+
+    /**
+     * Returns the table index of a vehicle type.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return CAR or VAN
+     * @throws IllegalArgumentException if the type is not "car" or "van"
+     */
+    static int typeIndex(String vehicleType) {
+        if (vehicleType.equalsIgnoreCase("car")) return CAR;
+        if (vehicleType.equalsIgnoreCase("van")) return VAN;
+        throw new IllegalArgumentException("Invalid vehicle type: " + vehicleType);
+    }
+
+    /**
+     * Looks up a compiled price.
+     * @param type the table index of the vehicle type
+     * @param days the hire duration in days
+     * @param surge whether the surge price applies
+     * @return the price in pence
+     * @throws IllegalArgumentException if the duration is not between 1 and the maximum
+     */
+    long price(int type, int days, boolean surge) {
+        if (days <= 0 || days > maxDays) {
+            throw new IllegalArgumentException("Duration must be between 1 and " + maxDays + " days");
+        }
+        return surge ? surgePrices[type][days] : prices[type][days];
+    }
+
+    /**
+     * Indicates whether surge pricing applies at the given availability.
+     * @param fleetSize the number of vehicles of the type
+     * @param available the number of those vehicles free to hire, i.e. neither hired nor in service
+     * @return true if fewer than the threshold share of vehicles are free, false otherwise
+     */
+    boolean isSurge(int fleetSize, int available) {
+        return fleetSize > 0 && (long) available * 100 < (long) fleetSize * surgeThreshold;
+    }
+
+    /**
+     * Returns the longest duration that can be quoted.
+     * @return the maximum duration in days
+     */
+    public int getMaxDays() {
+        return maxDays;
+    }
+
+    /**
+     * Returns the tariff as a readable string.
+     * @return the tariff values
+     */
+    @Override
+    public String toString() {
+        return "Tariff[car " + carDayRate + "p/day, van " + vanDayRate + "p/day, "
+                + weeklyDiscount + "% off from 7 days, " + monthlyDiscount + "% off from 28 days, "
+                + surgePercent + "% when under " + surgeThreshold + "% free, up to " + maxDays + " days]";
+    }
+}
@@ -0,0 +1,218 @@
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class takes streaming trip-mileage readings from hired vehicles and applies them to the fleet.
+ * Each reading is the miles driven since the hire began. Readings are coalesced per vehicle without
+ * locking: only the highest reading is kept, and a vehicle is queued for the next batch only on its
+ * first reading since the last batch. Batches are applied under the manager's lock, so hires and
+ * returns wait for at most one batch and never for a sender.
+ * A SERVICE_DUE event is published when a vehicle's mileage reaches its service distance.
+ */
+public final class TelematicsIngestor implements Closeable {
+    private final VehicleManager manager;
+    private final ConcurrentHashMap<VehicleID, Slot> slots = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Slot> dirty = new ConcurrentLinkedQueue<>();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder ignored = new LongAdder();
+    private final LongAdder alerts = new LongAdder();
+    // Reused between batches; only touched by the thread applying a batch
+    private Slot[] batch = new Slot[256];
+    private int[] readings = new int[256];
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * The latest reading of one vehicle.
+     */
+    private static final class Slot {
+        private final VehicleID vehicleID;
+        private final AtomicInteger latest = new AtomicInteger();
+        private final AtomicBoolean queued = new AtomicBoolean();
+        // Trip miles already added to the vehicle; only changed under the manager's lock
+        private int applied;
+
+        /**
+         * Constructs an empty slot.
+         * @param vehicleID the vehicle the readings belong to
+         */
+        private Slot(VehicleID vehicleID) {
+            this.vehicleID = vehicleID;
+        }
+    }
+
+    /**
+     * Constructs an ingestor for a manager's fleet.
+     * @param manager the manager whose vehicles receive the readings
+     */
+    TelematicsIngestor(VehicleManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Accepts a reading without blocking.
+     * @param vehicleID the vehicle that sent the reading
+     * @param tripMiles the miles driven since the current hire began
+     * @throws IllegalArgumentException if vehicleID is null or tripMiles is negative
+     */
+    public void submit(VehicleID vehicleID, int tripMiles) {
+        if (vehicleID == null || tripMiles < 0) {
+            throw new IllegalArgumentException("Reading needs a vehicle ID and non-negative mileage");
+        }
+        received.increment();
+        Slot slot = slots.get(vehicleID);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(vehicleID, Slot::new);
+        }
+        // Readings can arrive out of order; the trip distance only grows
+        slot.latest.accumulateAndGet(tripMiles, Math::max);
+        if (slot.queued.compareAndSet(false, true)) {
+            dirty.offer(slot);
+        }
+    }
+
+    /**
+     * Applies the latest reading of every vehicle that reported since the last batch.
+     * Readings for vehicles that are not hired are ignored.
+     * @return the number of vehicles whose mileage changed
+     */
+    public int applyPending() {
+        synchronized (manager) {
+            int n = 0;
+            Slot slot;
+            while ((slot = dirty.poll()) != null) {
+                // Clear the flag first, so a reading arriving now is queued for the next batch
+                slot.queued.set(false);
+                if (n == batch.length) {
+                    batch = Arrays.copyOf(batch, n * 2);
+                    readings = Arrays.copyOf(readings, n * 2);
+                }
+                batch[n] = slot;
+                readings[n++] = slot.latest.get();
+            }
+
+            int changed = 0;
+            for (int i = 0; i < n; i++) {
+                Slot s = batch[i];
+                batch[i] = null;
+                int added = readings[i] - s.applied;
+                if (added <= 0) continue;
+                int result = manager.applyTripMileage(s.vehicleID, added);
+                if (result < 0) {
+                    ignored.increment();
+                    continue;
+                }
+                s.applied = readings[i];
+                changed++;
+                if (result > 0) alerts.increment();
+            }
+            applied.add(changed);
+            return changed;
+        }
+    }
+
+    /**
+     * Resets a vehicle's readings when a hire begins. Called under the manager's lock.
+     * @param vehicleID the hired vehicle
+     */
+    void hireStarted(VehicleID vehicleID) {
+        Slot slot = slots.get(vehicleID);
+        if (slot != null) {
+            slot.latest.set(0);
+            slot.applied = 0;
+        }
+    }
+
+    /**
+     * Returns the trip miles already applied for a vehicle and resets its readings when a hire ends.
+     * Called under the manager's lock.
+     * @param vehicleID the returned vehicle
+     * @return the miles already added to the vehicle during the hire
+     */
+    int hireEnded(VehicleID vehicleID) {
+        Slot slot = slots.get(vehicleID);
+        if (slot == null) return 0;
+        int done = slot.applied;
+        slot.latest.set(0);
+        slot.applied = 0;
+        return done;
+    }
+
+    /**
+     * Starts applying batches in the background at a fixed interval.
+     * @param periodMillis the time between batches in milliseconds
+     * @throws IllegalArgumentException if periodMillis is not positive
+     * @throws IllegalStateException if batches are already being applied in the background
+     */
+    public synchronized void start(long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Batch interval must be positive");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("Telematics ingestion is already running");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "telematics");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::applyPending, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops background batches and applies the readings still pending.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler = null;
+        }
+        applyPending();
+    }
+
+    /**
+     * Returns the number of readings received.
+     * @return the received count
+     */
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * Returns the number of mileage updates applied to vehicles; coalesced readings count once.
+     * @return the applied count
+     */
+    public long getAppliedCount() {
+        return applied.sum();
+    }
+
+    /**
+     * Returns the number of batched updates ignored because the vehicle was not hired.
+     * @return the ignored count
+     */
+    public long getIgnoredCount() {
+        return ignored.sum();
+    }
+
+    /**
+     * Returns the number of service-due alerts raised.
+     * @return the alert count
+     */
+    public long getServiceAlertCount() {
+        return alerts.sum();
+    }
+}
@@ -4,7 +4,6 @@
  * Vans rented for 10 or more days require inspection when return.
  */
 public final class Van extends AbstractVehicle{
-    private boolean inspectionNeeded;
 
     /**
      * Constructs a new Van with the given vehicle ID.
@@ -13,8 +12,6 @@ public final class Van extends AbstractVehicle{
     public Van (VehicleID id){
         // Delegate to parent constructor
         super(id);
-        // Initially no inspection is needed
-        this. inspectionNeeded = false;
     }
 
     /**
@@ -38,18 +35,23 @@ public final class Van extends AbstractVehicle{
 
     /**
      * Returns whether this van requires inspection.
-     * @return true if inspection is needed; false otherwise
+     * @return true if inspection is needed on return or before the next hire; false otherwise
      */
     public boolean getInspection(){
-        return inspectionNeeded;
+        return isInspectionDue();
     }
 
     /**
      * Sets whether this van requires inspection.
+     * A van that is not hired moves to or from AWAITING_INSPECTION accordingly. Clearing the
+     * inspection of a van awaiting it in a fleet completes the inspection through the
+     * VehicleManager, so the van is offered for hire and to waiting customers again.
      * @param inspectionNeeded true if inspection is required; false otherwise
      */
     public void setInspection(boolean inspectionNeeded){
-        this.inspectionNeeded = inspectionNeeded;
+        VehicleManager owner = getOwner();
+        if (!inspectionNeeded && owner != null && owner.completeInspection(getVehicleID())) return;
+        setInspectionDue(inspectionNeeded);
     }
 
     /**
@@ -58,6 +60,6 @@ public final class Van extends AbstractVehicle{
      */
     @Override
     public String toString(){
-        return "Van" + getVehicleID() + (inspectionNeeded ? "(Requires Inspection)" : "");
+        return "Van" + getVehicleID() + (getInspection() ? "(Requires Inspection)" : "");
     }
 }
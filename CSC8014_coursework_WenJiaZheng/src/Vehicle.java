@@ -62,7 +62,31 @@ public interface Vehicle {
 	 */
 	public boolean performServiceIfDue();
 
+	/**
+	 * Returns the lifecycle state of the vehicle.
+	 * @return the current VehicleState
+	 */
+	VehicleState getState();
 
-}
+	/**
+	 * Claims the vehicle for a hire if it is available.
+	 * @return true if the vehicle was available and is now hired; false otherwise
+	 */
+	boolean tryHire();
 
+	/**
+	 * Ends the current hire and adds the miles driven, as one atomic change.
+	 * @param addedMileage the miles driven during the hire
+	 * @return true if the vehicle was hired and has been returned; false otherwise
+	 */
+	boolean tryReturn(int addedMileage);
 
+	/**
+	 * Moves the vehicle from one state to another, if it is still in the expected state.
+	 * @param expected the state the vehicle must be in
+	 * @param next the new state
+	 * @return true if the transition was made; false if the vehicle was not in the expected state
+	 * @throws IllegalStateException if the transition is not allowed
+	 */
+	boolean transition(VehicleState expected, VehicleState next);
+}
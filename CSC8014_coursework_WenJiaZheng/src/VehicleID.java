@@ -23,11 +23,12 @@ public final class VehicleID implements Comparable<VehicleID> {
 
     /**
      * Creates and returns a new unique VehicleID for the given vehicle type.
+     * Synchronized because all managers share the registry of issued IDs.
      * @param type the vehicle type ("car" or "van")
      * @return a new unique VehicleID
      * @throws IllegalArgumentException if type is null or not "car"/"van"
      */
-    public static VehicleID getInstance(String type) {
+    public static synchronized VehicleID getInstance(String type) {
         if (type == null) {
             throw new IllegalArgumentException("Vehicle type cannot be null");
         }
@@ -65,6 +66,31 @@ public final class VehicleID implements Comparable<VehicleID> {
         return newID;
     }
 
+    /**
+     * Returns the issued VehicleID with the given string form.
+     * @param id the string form, e.g. "CA1-234"
+     * @return the VehicleID, or null if no such ID has been issued
+     */
+    public static synchronized VehicleID lookup(String id) {
+        return all_IDs.get(id);
+    }
+
+    /**
+     * Returns the VehicleID with the given string form, registering it if it has not been issued,
+     * so vehicles read back from a repository keep their IDs and no new vehicle is given one of them.
+     * @param id the string form, e.g. "CA1-234"
+     * @return the VehicleID
+     * @throws IllegalArgumentException if id is not a valid car or van ID
+     */
+    static synchronized VehicleID restore(String id) {
+        // Car IDs end with an even number and van IDs with an odd one
+        if (id == null || !id.matches("[CV][A-Z][0-9]-[0-9]{3}")
+                || (id.charAt(0) == 'C') != ((id.charAt(id.length() - 1) - '0') % 2 == 0)) {
+            throw new IllegalArgumentException("Invalid vehicle ID: " + id);
+        }
+        return all_IDs.computeIfAbsent(id, VehicleID::new);
+    }
+
     /**
      * Compares this VehicleID with another.
      * @param o the other VehicleID to compare
@@ -1,21 +1,481 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class represents the vehicle management system.
  * It manages vehicles, customers, and hire operations.
+ * Mutations are serialized on the manager; readers on other threads should use snapshot(), which never blocks.
+ * This includes hires and returns: vehicles change state with compare-and-set, but the manager's
+ * own indexes do not, so hire throughput is that of one thread holding the lock.
+ * Each mutation publishes a new immutable snapshot before the manager's lock is released, sharing
+ * everything but the changed paths with the previous one.
  */
 public class VehicleManager {
-    private final Map<VehicleID, Vehicle> vehicles;
-    private final Map<String, CustomerRecord> customers;
-    private final Map<String, Set<Vehicle>> vehiclesOnRent;
+    // Emptied rented sets kept for reuse, so steady hires and returns allocate none
+    private static final int FREE_SETS = 16;
+    private static final String NO_CAR_MESSAGE = "No available vehicle: car";
+    private static final String NO_VAN_MESSAGE = "No available vehicle: van";
+    // The current year and when it ends, so age checks need no Calendar
+    private static volatile CalendarYear year = CalendarYear.current();
+
+    private final VehicleRepository vehicles;
+    private final CustomerRepository customers;
+    // The vehicles each renting customer holds, at index customer number - 1; null for everyone else
+    private RentedVehicles[] vehiclesOnRent = new RentedVehicles[16];
+    private final ArrayDeque<RentedVehicles> freeSets = new ArrayDeque<>();
+    private final Map<VehicleID, HireHistory> histories;
+    // Receives every completed hire while logging is on; null otherwise
+    private HireLogWriter hireLog;
+    private IOException hireLogFailure;
+    // Customers by name and date of birth, for duplicate checks
+    private final CustomerKeyIndex customerKeys;
+    private final CustomerNameIndex nameIndex;
+    // Replaced as a whole on reload, so hires never see a half-updated rule set
+    private volatile HireRules rules;
+    private final FleetAnalytics analytics;
+    private final QuoteEngine quotes;
+    private final TelematicsIngestor telematics;
+    // Null when vehicles are serviced instantly on return
+    private volatile WorkshopScheduler workshop;
+    private final HireWaitlist waitlist;
+    private volatile RequestCache requests;
+    // Null when admission control is off
+    private volatile AdmissionController admission;
+    private final FleetEventPublisher events;
+    private final VehicleSelectionStrategy selection;
+
+    // Bumped by every mutation; a snapshot is stale when its version differs
+    private volatile long version;
+    private volatile FleetSnapshot snapshot;
+    // When off, mutations publish nothing and snapshot() builds a snapshot under the lock when stale
+    private volatile boolean publishing = true;
+    // The parts of the next snapshot, kept up to date by each mutation while publishing
+    private SnapshotVector<Vehicle> vehicleViews = SnapshotVector.empty();
+    // The repository's own view when it has one, so records are not held twice; otherwise a SnapshotVector
+    private Collection<CustomerRecord> customerViews = SnapshotVector.empty();
+    // Each customer's ID and hired vehicle views, at index customer number - 1
+    private SnapshotVector<Map.Entry<String, Set<Vehicle>>> rentalViews = SnapshotVector.empty();
+    private int renting;
+    // The number of runBatch calls in progress; snapshots are published when it drops to 0
+    private int batchDepth;
+    // The index of each vehicle in vehicleViews
+    private final Map<VehicleID, Integer> slots;
+    private volatile boolean logRejections = true;
 
     /**
-     * Constructs a new VehicleManager with empty collections.
+     * Constructs a new VehicleManager with empty collections and first-fit vehicle selection.
      */
     public VehicleManager() {
-        vehicles = new HashMap<>();
-        customers = new HashMap<>();
-        vehiclesOnRent = new HashMap<>();
+        this(VehicleSelectionStrategy.firstFit());
+    }
+
+    /**
+     * Constructs a new VehicleManager with empty collections and the given vehicle selection.
+     * @param selection the strategy that chooses which free vehicle a hire receives
+     * @throws IllegalArgumentException if selection is null
+     */
+    public VehicleManager(VehicleSelectionStrategy selection) {
+        this(selection, new InMemoryVehicleRepository(), new InMemoryCustomerRepository());
+    }
+
+    /**
+     * Constructs a new VehicleManager that keeps customer records in a disk-backed store.
+     * Customers already in the store are kept, and their IDs are not issued again.
+     * @param selection the strategy that chooses which free vehicle a hire receives
+     * @param customerStore the store that holds customer records
+     * @throws IllegalArgumentException if selection or customerStore is null
+     */
+    public VehicleManager(VehicleSelectionStrategy selection, DiskCustomerStore customerStore) {
+        this(selection, new InMemoryVehicleRepository(), customerStore);
+    }
+
+    /**
+     * Constructs a new VehicleManager that keeps vehicles and customers in the given repositories.
+     * Customers already in the customer repository are kept and indexed with one pass over them.
+     * Vehicles already in the vehicle repository are kept with their hires; one hired by a customer
+     * the manager does not know is taken back as returned, and one left in the workshop is serviced.
+     * @param selection the strategy that chooses which free vehicle a hire receives
+     * @param vehicleRepository the repository that holds vehicles
+     * @param customerRepository the repository that holds customer records
+     * @throws IllegalArgumentException if any argument is null, or the vehicle repository holds a vehicle
+     *                                  that does not extend AbstractVehicle
+     */
+    public VehicleManager(VehicleSelectionStrategy selection, VehicleRepository vehicleRepository,
+                          CustomerRepository customerRepository) {
+        if (selection == null) {
+            throw new IllegalArgumentException("Selection strategy can not be null");
+        }
+        if (vehicleRepository == null) {
+            throw new IllegalArgumentException("Vehicle store can not be null");
+        }
+        if (customerRepository == null) {
+            throw new IllegalArgumentException("Customer store can not be null");
+        }
+        this.selection = selection;
+        vehicles = vehicleRepository;
+        customers = customerRepository;
+        histories = new HashMap<>();
+        customerKeys = new CustomerKeyIndex(n -> customers.find("Customer" + n));
+        nameIndex = new CustomerNameIndex(customers::find);
+        rules = HireRules.defaults();
+        analytics = new FleetAnalytics(this);
+        quotes = new QuoteEngine(analytics);
+        telematics = new TelematicsIngestor(this);
+        waitlist = new HireWaitlist(10_000);
+        requests = new RequestCache(10_000, 10 * 60_000L);
+        events = new FleetEventPublisher();
+        slots = new HashMap<>();
+        // Index the customers a persistent repository already holds
+        Collection<CustomerRecord> existing = customers.size() == 0 ? SnapshotVector.empty() : customers.snapshot();
+        for (CustomerRecord c : existing) {
+            customerKeys.add(c);
+            nameIndex.add(c);
+        }
+        customerViews = customers.hasSnapshotView() ? existing : SnapshotVector.copyOf(existing);
+        rentalViews = SnapshotVector.copyOf(Collections.nCopies(existing.size(), null));
+        snapshot = new FleetSnapshot(0, vehicleViews, customerViews, rentalViews, 0);
+        if (vehicles.size() > 0) {
+            restoreVehicles();
+        }
+    }
+
+    /**
+     * Registers the vehicles a persistent repository already holds, with their hires,
+     * and publishes a snapshot of them.
+     */
+    private void restoreVehicles() {
+        for (Vehicle v : vehicles.findAll()) {
+            if (!(v instanceof AbstractVehicle)) {
+                throw new IllegalArgumentException("Vehicle store can not hold " + v.getVehicleType());
+            }
+            VehicleID id = v.getVehicleID();
+            ((AbstractVehicle) v).setOwner(this);
+            if (v.isHired()) {
+                String custID = vehicles.findRenter(id);
+                if (custID != null && customers.find(custID) != null) {
+                    rentedSetOf(custID).add(v);
+                    ((AbstractVehicle) v).setRenterID(custID);
+                } else {
+                    // Nobody can return it, so take it back with the mileage it has
+                    v.tryReturn(0);
+                    v.performServiceIfDue();
+                    vehicles.update(v, null);
+                }
+            } else if (v.getState() == VehicleState.IN_SERVICE) {
+                v.setCurrentMileage(0);
+                v.transition(VehicleState.IN_SERVICE, VehicleState.AVAILABLE);
+                vehicles.update(v, null);
+            }
+            histories.put(id, new HireHistory(HireHistory.DEFAULT_CAPACITY));
+            analytics.vehicleAdded(v);
+            if (v.isHired()) analytics.hireStatusChanged(v, true);
+            selection.vehicleAdded(v);
+        }
+        version++;
+        rebuildSnapshot();
+    }
+
+    /**
+     * Returns the publisher of add, hire, return, service and inspection events.
+     * @return the FleetEventPublisher for this manager
+     */
+    public FleetEventPublisher getEvents() {
+        return events;
+    }
+
+    /**
+     * Turns the allocation-free mode on or off. The mode turns off snapshot publishing and rejection
+     * logging, so that steady-state hires and returns allocate nothing once every vehicle and renting
+     * customer has been seen. By default the mode is off: every mutation publishes a snapshot.
+     * @param allocationFree true to turn the mode on, false to publish snapshots and log rejections again
+     */
+    public synchronized void setAllocationFree(boolean allocationFree) {
+        setSnapshotPublishing(!allocationFree);
+        setLogRejections(!allocationFree);
+    }
+
+    /**
+     * Indicates whether the allocation-free mode is on.
+     * @return true if snapshots are built on demand and rejections are not logged, false otherwise
+     */
+    public boolean isAllocationFree() {
+        return !publishing && !logRejections;
+    }
+
+    /**
+     * Sets whether rejected hires are explained on standard output.
+     * Simulations and benchmarks turn this off.
+     * @param logRejections true to print rejection reasons, false to stay silent
+     */
+    public void setLogRejections(boolean logRejections) {
+        this.logRejections = logRejections;
+    }
+
+    /**
+     * Reports a rejected hire.
+     * @param reason the reason for rejection
+     * @return false, so callers can return the result directly
+     */
+    private boolean reject(String reason) {
+        if (logRejections) {
+            System.out.println(reason);
+        }
+        return false;
+    }
+
+    /**
+     * Returns a consistent point-in-time view of vehicles, customers and hires.
+     * While snapshots are published, this returns the latest one without locking.
+     * @return the latest FleetSnapshot
+     */
+    public FleetSnapshot snapshot() {
+        FleetSnapshot current = snapshot;
+        if (publishing || current.getVersion() == version) {
+            return current;
+        }
+        return rebuildSnapshot();
+    }
+
+    /**
+     * Sets whether every mutation publishes a new snapshot. Publishing costs a few small arrays per
+     * mutation; with it off, mutations allocate nothing for snapshots, and the first snapshot() call
+     * after a change builds a whole new snapshot while holding the manager's lock.
+     * Publishing is one of the two settings setAllocationFree changes.
+     * @param publishing true to publish a snapshot with every mutation, false to build them on demand
+     */
+    public synchronized void setSnapshotPublishing(boolean publishing) {
+        if (publishing && !this.publishing) {
+            // The parts were not kept up to date while off
+            rebuildSnapshot();
+        }
+        this.publishing = publishing;
+    }
+
+    /**
+     * Builds every part of a snapshot from the current state and publishes it.
+     * @return the newly published snapshot
+     */
+    private synchronized FleetSnapshot rebuildSnapshot() {
+        FleetSnapshot previous = snapshot;
+        if (previous.getVersion() == version) {
+            return previous;
+        }
+        List<Vehicle> views = new ArrayList<>(vehicles.size());
+        Map<String, List<Vehicle>> hired = new HashMap<>();
+        slots.clear();
+        for (Vehicle v : vehicles.findAll()) {
+            String renter = renterOf(v);
+            VehicleView view = new VehicleView(v, renter);
+            slots.put(v.getVehicleID(), views.size());
+            views.add(view);
+            if (renter != null) hired.computeIfAbsent(renter, k -> new ArrayList<>()).add(view);
+        }
+        vehicleViews = SnapshotVector.copyOf(views);
+        customerViews = customers.hasSnapshotView() ? customers.snapshot()
+                : SnapshotVector.copyOf(customers.snapshot());
+        List<Map.Entry<String, Set<Vehicle>>> rentals =
+                new ArrayList<>(Collections.nCopies(customerViews.size(), null));
+        for (Map.Entry<String, List<Vehicle>> e : hired.entrySet()) {
+            rentals.set(HireHistory.customerNumber(e.getKey()) - 1,
+                    new AbstractMap.SimpleImmutableEntry<>(e.getKey(), Set.copyOf(e.getValue())));
+        }
+        rentalViews = SnapshotVector.copyOf(rentals);
+        renting = hired.size();
+        FleetSnapshot published = new FleetSnapshot(version, vehicleViews, customerViews, rentalViews, renting);
+        snapshot = published;
+        return published;
+    }
+
+    /**
+     * Publishes the parts of the next snapshot, if anything changed since the last one.
+     * Called at the end of each mutation, so readers never see one half done; inside a batch,
+     * nothing is published until the batch ends.
+     */
+    private void publish() {
+        if (publishing && batchDepth == 0 && snapshot.getVersion() != version) {
+            snapshot = new FleetSnapshot(version, vehicleViews, customerViews, rentalViews, renting);
+        }
+    }
+
+    /**
+     * Copies the current state of a changed vehicle into the next snapshot, moving it between
+     * its old and new renter's hires.
+     * @param v the changed vehicle
+     * @param previousRenter the ID of the customer hiring it before the change, or null
+     */
+    private void vehicleChanged(Vehicle v, String previousRenter) {
+        if (!publishing) return;
+        VehicleID id = v.getVehicleID();
+        String renter = renterOf(v);
+        VehicleView view = new VehicleView(v, renter);
+        vehicleViews = vehicleViews.with(slots.get(id), view);
+        if (previousRenter != null && !previousRenter.equals(renter)) {
+            rentalChanged(previousRenter, id, null);
+        }
+        if (renter != null) {
+            rentalChanged(renter, id, view);
+        }
+    }
+
+    /**
+     * Replaces one vehicle in a customer's hires in the next snapshot.
+     * @param custID the customer ID
+     * @param id the vehicle ID
+     * @param view the vehicle's new view, or null if the customer no longer hires it
+     */
+    private void rentalChanged(String custID, VehicleID id, VehicleView view) {
+        int n = HireHistory.customerNumber(custID) - 1;
+        if (n < 0 || n >= rentalViews.size()) return;
+        Map.Entry<String, Set<Vehicle>> old = rentalViews.get(n);
+        List<Vehicle> held = new ArrayList<>(4);
+        if (old != null) {
+            for (Vehicle h : old.getValue()) {
+                if (!h.getVehicleID().equals(id)) held.add(h);
+            }
+        }
+        if (view != null) held.add(view);
+        if (old == null && !held.isEmpty()) {
+            renting++;
+        } else if (old != null && held.isEmpty()) {
+            renting--;
+        }
+        rentalViews = rentalViews.with(n,
+                held.isEmpty() ? null : new AbstractMap.SimpleImmutableEntry<>(custID, Set.copyOf(held)));
+    }
+
+    /**
+     * Returns the fleet analytics, whose per-type rollups are kept up to date by this manager.
+     * @return the FleetAnalytics for this fleet
+     */
+    public FleetAnalytics getAnalytics() {
+        return analytics;
+    }
+
+    /**
+     * Returns the quote engine, which prices hires against this fleet's live availability.
+     * @return the QuoteEngine for this fleet
+     */
+    public QuoteEngine getQuotes() {
+        return quotes;
+    }
+
+    /**
+     * Returns the telematics ingestor, which applies streaming mileage readings to hired vehicles.
+     * @return the TelematicsIngestor for this fleet
+     */
+    public TelematicsIngestor getTelematics() {
+        return telematics;
+    }
+
+    /**
+     * Returns the waitlist of hire requests that found no free vehicle.
+     * @return the HireWaitlist for this fleet
+     */
+    public HireWaitlist getWaitlist() {
+        return waitlist;
+    }
+
+    /**
+     * Returns the number of hire requests waiting for a vehicle type.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the number of waiting requests
+     */
+    public synchronized int getWaitingCount(String vehicleType) {
+        return waitlist.getWaitingCount(vehicleType);
+    }
+
+    /**
+     * Returns the cache of recent client request IDs used to answer retried hires and returns.
+     * @return the current RequestCache
+     */
+    public RequestCache getRequestCache() {
+        return requests;
+    }
+
+    /**
+     * Replaces the request cache, for example to change its size or expiry.
+     * Requests remembered by the old cache are forgotten.
+     * @param cache the new cache
+     * @throws IllegalArgumentException if cache is null
+     */
+    public void setRequestCache(RequestCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("Request cache can not be null");
+        }
+        this.requests = cache;
+    }
+
+    /**
+     * Returns the admission controller that limits client and customer request rates.
+     * @return the current AdmissionController, or null if admission control is off
+     */
+    public AdmissionController getAdmissionControl() {
+        return admission;
+    }
+
+    /**
+     * Sets the admission controller used by the client-facing hire and availability methods.
+     * @param controller the new controller, or null to turn admission control off
+     */
+    public void setAdmissionControl(AdmissionController controller) {
+        this.admission = controller;
+    }
+
+    /**
+     * Returns the hire rules currently in use.
+     * @return the current HireRules
+     */
+    public HireRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Replaces the hire rules. Hires already in progress finish with the old rules.
+     * @param newRules the new rules
+     * @throws IllegalArgumentException if newRules is null
+     */
+    public void setRules(HireRules newRules) {
+        if (newRules == null) {
+            throw new IllegalArgumentException("Hire rules can not be null");
+        }
+        this.rules = newRules;
+    }
+
+    /**
+     * Reloads the hire rules from a properties file without restarting the system.
+     * The current rules are kept if the file can not be read or is invalid.
+     * @param path the path of the rules file
+     * @return the newly loaded HireRules
+     * @throws IOException if the file can not be read
+     * @throws IllegalArgumentException if the file contains invalid values
+     */
+    public HireRules reloadRules(Path path) throws IOException {
+        HireRules loaded = HireRules.load(path);
+        this.rules = loaded;
+        return loaded;
+    }
+
+    /**
+     * Runs several calls on this manager as one batch, e.g. the rows of a bulk import.
+     * No other thread's call runs between them, and one snapshot is published when the batch ends
+     * instead of one per call, so readers see the whole batch or none of it.
+     * Hires and returns wait for the batch, so keep it short.
+     * @param batch the calls to run; if one throws, the batch ends and the changes made so far are published
+     * @throws IllegalArgumentException if batch is null
+     */
+    public synchronized void runBatch(Runnable batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch can not be null");
+        }
+        batchDepth++;
+        try {
+            batch.run();
+        } finally {
+            batchDepth--;
+            publish();
+        }
     }
 
     /**
@@ -24,7 +484,7 @@ public class VehicleManager {
      * @return the number of available vehicles
      * @throws IllegalArgumentException if vehicleType is not "car" or "van"
      */
-    public Vehicle addVehicle(String vehicleType) {
+    public synchronized Vehicle addVehicle(String vehicleType) {
         Vehicle newVehicle;
         VehicleID id = VehicleID.getInstance(vehicleType);
 
@@ -37,7 +497,26 @@ public class VehicleManager {
             throw new IllegalArgumentException("Invalid vehicle type: " + vehicleType);
         }
 
-        vehicles.put(id, newVehicle);
+        ((AbstractVehicle) newVehicle).setOwner(this);
+        vehicles.add(newVehicle);
+        histories.put(id, new HireHistory(HireHistory.DEFAULT_CAPACITY));
+        analytics.vehicleAdded(newVehicle);
+        selection.vehicleAdded(newVehicle);
+        slots.put(id, slots.size());
+        if (publishing) {
+            vehicleViews = vehicleViews.plus(new VehicleView(newVehicle, null));
+        }
+        version++;
+        events.publish(FleetEvent.Type.VEHICLE_ADDED, newVehicle, null);
+
+        // A new vehicle goes to the head of the waitlist, through the strategy that now holds it
+        if (waitlist.hasWaiters(vehicleType)) {
+            Vehicle free = selection.select(vehicleType);
+            if (free != null && !handOff(free)) {
+                selection.vehicleReleased(free);
+            }
+        }
+        publish();
         return newVehicle;
     }
 
@@ -47,14 +526,21 @@ public class VehicleManager {
      * @return the number of available vehicles
      */
     public int noOfAvailableVehicles(String vehicleType) {
-        int count = 0;
-        for (Vehicle v : vehicles.values()) {
-            // Count only matching type and not currently hired
-            if (v.getVehicleType().equalsIgnoreCase(vehicleType) && !v.isHired()) {
-                count++;
-            }
-        }
-        return count;
+        // Read the running per-type totals instead of scanning the fleet
+        return analytics.getAvailableCount(vehicleType);
+    }
+
+    /**
+     * Returns the number of available vehicles of the given type for a rate-limited client.
+     * The client's limit is checked before any fleet data is read.
+     * @param clientID the calling client
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the number of available vehicles, or -1 if the request was not admitted
+     */
+    public int noOfAvailableVehicles(String clientID, String vehicleType) {
+        AdmissionController controller = admission;
+        if (controller != null && !controller.tryAdmit(clientID, null)) return -1;
+        return noOfAvailableVehicles(vehicleType);
     }
 
     /**
@@ -65,158 +551,912 @@ public class VehicleManager {
      * @param hasCommercialLicense whether the customer has a commercial license
      * @return the newly created CustomerRecord
      * @throws IllegalArgumentException if a customer with same name and DOB already exists
+     * @throws RepositoryException if the customer repository can not store the record; nothing is added
      */
-    public CustomerRecord addCustomerRecord(String firstName, String lastName, Date dob, Boolean hasCommercialLicense) {
+    public synchronized CustomerRecord addCustomerRecord(String firstName, String lastName, Date dob, Boolean hasCommercialLicense) {
         Name newName = new Name(firstName, lastName);
 
         // Check for duplicate customer (same name and DOB)
-        for (CustomerRecord cr : customers.values()) {
-            if (cr.getName().equals(newName) && cr.getDateOfBirth().equals(dob)) {
-                throw new IllegalArgumentException("This customer record already exists");
-            }
+        if (dob != null && customerKeys.contains(newName, dob)) {
+            throw new IllegalArgumentException("This customer record already exists");
         }
 
         // Generate unique customer ID
         String idString = "Customer" + (customers.size() + 1);
         CustomerRecord newRecord = new CustomerRecord(newName, dob, hasCommercialLicense, idString);
 
-        customers.put(newRecord.getCustomerID(), newRecord);
+        customers.add(newRecord);
+        customerKeys.add(newRecord);
+        nameIndex.add(newRecord);
+        if (publishing) {
+            customerViews = customers.hasSnapshotView() ? customers.snapshot()
+                    : ((SnapshotVector<CustomerRecord>) customerViews).plus(newRecord);
+            rentalViews = rentalViews.plus(null);
+        }
+        version++;
+        publish();
         return newRecord;
     }
 
+    /**
+     * Returns the vehicle with the given ID.
+     * @param vehicleID the vehicle ID
+     * @return the Vehicle, or null if it is not in this fleet
+     */
+    public synchronized Vehicle getVehicle(VehicleID vehicleID) {
+        return vehicles.find(vehicleID);
+    }
+
+    /**
+     * Returns the customer with the given ID.
+     * @param customerID the customer ID
+     * @return the CustomerRecord, or null if there is none
+     */
+    public CustomerRecord getCustomer(String customerID) {
+        return customers.find(customerID);
+    }
+
+    /**
+     * Finds customers whose first or last name starts with the given prefix, ignoring case.
+     * @param prefix the name prefix
+     * @param offset the number of matches to skip
+     * @param limit the maximum number of matches to return
+     * @return one page of matching customers
+     * @throws IllegalArgumentException if prefix is null, offset is negative or limit is not positive
+     */
+    public List<CustomerRecord> searchCustomers(String prefix, int offset, int limit) {
+        return nameIndex.find(prefix, offset, limit);
+    }
+
+    /**
+     * Returns the customer name index, for searches on first or last name only.
+     * @return the CustomerNameIndex
+     */
+    public CustomerNameIndex getCustomerNameIndex() {
+        return nameIndex;
+    }
+
     /**
      * Attempts to hire a vehicle of the specified type for the given customer and duration.
      * Enforces age limits (18+ for car, 23+ for van), commercial license for van, and max 3 vehicles per customer.
+     * The limits come from the current HireRules.
      * @param customerRecord the customer requesting the hire
      * @param vehicleType the type of vehicle ("car" or "van")
      * @param duration the rental duration in days
      * @return true if hire was successful, false otherwise
      */
-    public boolean hireVehicle(CustomerRecord customerRecord, String vehicleType, int duration) {
+    public synchronized boolean hireVehicle(CustomerRecord customerRecord, String vehicleType, int duration) {
+        return hire(customerRecord, vehicleType, duration) != null;
+    }
+
+    /**
+     * Attempts to hire a vehicle for the customer with the given ID, like hireVehicle.
+     * The record is read from the customer repository before the manager's lock is taken,
+     * so a disk-backed store serves it from its cache and a miss does not hold up other hires.
+     * @param customerID the ID of the customer requesting the hire
+     * @param vehicleType the type of vehicle ("car" or "van")
+     * @param duration the rental duration in days
+     * @return true if hire was successful, false if the customer is unknown or the hire was rejected
+     */
+    public boolean hireVehicle(String customerID, String vehicleType, int duration) {
+        CustomerRecord customerRecord = customers.find(customerID);
+        if (customerRecord == null) {
+            return reject("Unknown customer: " + customerID);
+        }
+        return hireVehicle(customerRecord, vehicleType, duration);
+    }
+
+    /**
+     * Attempts a hire like hireVehicle, returning the vehicle the customer received.
+     * @param customerRecord the customer requesting the hire
+     * @param vehicleType the type of vehicle ("car" or "van")
+     * @param duration the rental duration in days
+     * @return the hired Vehicle, or null if the hire was rejected
+     */
+    synchronized Vehicle hire(CustomerRecord customerRecord, String vehicleType, int duration) {
         String custID = customerRecord.getCustomerID();
+        // Read the rules once so the whole hire uses one consistent rule set
+        HireRules hireRules = rules;
+        String reason = refusal(customerRecord, vehicleType, hireRules);
+        if (reason != null) {
+            reject(reason);
+            return null;
+        }
 
-        // Check rental limit: max 3 vehicles per customer
-        Set<Vehicle> rentedSet = vehiclesOnRent.get(custID);
-        if (rentedSet != null && rentedSet.size() >= 3) {
-            System.out.println("Customer has already hired 3 vehicles.");
-            return false;
+        // Find an available vehicle (not hired, no inspection due, within service mileage)
+        Vehicle selectedVehicle = selection.select(vehicleType);
+
+        // Claim the vehicle; fails only if it changed state after selection
+        if (selectedVehicle == null || !selectedVehicle.tryHire()) {
+            reject(noVehicleMessage(vehicleType));
+            return null;
+        }
+        recordHire(custID, selectedVehicle, duration, hireRules);
+        publish();
+        return selectedVehicle;
+    }
+
+    /**
+     * Attempts to hire several vehicles for a customer as one all-or-nothing transaction,
+     * e.g. two cars and a van. The combined number of vehicles is checked against the vehicle cap,
+     * and the customer must be eligible for every requested type.
+     * All vehicles are claimed first; if any type runs out, every claimed vehicle is released
+     * and nothing is hired. Claimed vehicles are committed and rolled back in VehicleID order.
+     * @param customerRecord the customer requesting the hire
+     * @param vehicleCounts the number of vehicles wanted per type ("car" or "van")
+     * @param duration the rental duration in days
+     * @return true if every vehicle was hired, false if none were
+     * @throws IllegalArgumentException if vehicleCounts is empty, or has an invalid type or a count below 1
+     */
+    public synchronized boolean hireVehicles(CustomerRecord customerRecord, Map<String, Integer> vehicleCounts,
+                                             int duration) {
+        if (vehicleCounts == null || vehicleCounts.isEmpty()) {
+            throw new IllegalArgumentException("At least one vehicle must be requested");
+        }
+        int total = 0;
+        for (Map.Entry<String, Integer> e : vehicleCounts.entrySet()) {
+            if (!e.getKey().equalsIgnoreCase("car") && !e.getKey().equalsIgnoreCase("van")) {
+                throw new IllegalArgumentException("Invalid vehicle type: " + e.getKey());
+            }
+            if (e.getValue() == null || e.getValue() < 1) {
+                throw new IllegalArgumentException("Vehicle counts must be positive");
+            }
+            total += e.getValue();
+        }
+
+        String custID = customerRecord.getCustomerID();
+        HireRules hireRules = rules;
+        Set<Vehicle> rentedSet = rentedBy(custID);
+        int held = rentedSet == null ? 0 : rentedSet.size();
+        if (held + total > hireRules.getMaxVehiclesPerCustomer()) {
+            return reject("Customer can not hold more than " + hireRules.getMaxVehiclesPerCustomer() + " vehicles.");
+        }
+        for (String vehicleType : vehicleCounts.keySet()) {
+            String reason = ineligibility(customerRecord, vehicleType, hireRules);
+            if (reason != null) {
+                return reject(reason);
+            }
+        }
+
+        // Reserve: claim every vehicle before recording anything
+        List<Vehicle> claimed = new ArrayList<>(total);
+        for (Map.Entry<String, Integer> e : vehicleCounts.entrySet()) {
+            for (int i = 0; i < e.getValue(); i++) {
+                Vehicle v = selection.select(e.getKey());
+                if (v == null || !v.tryHire()) {
+                    // Abort: release the claims in reverse ID order
+                    claimed.sort(Comparator.comparing(Vehicle::getVehicleID).reversed());
+                    for (Vehicle c : claimed) {
+                        c.transition(VehicleState.HIRED, VehicleState.AVAILABLE);
+                        selection.vehicleReleased(c);
+                    }
+                    return reject(noVehicleMessage(e.getKey()));
+                }
+                claimed.add(v);
+            }
+        }
+
+        // Commit
+        claimed.sort(Comparator.comparing(Vehicle::getVehicleID));
+        for (Vehicle v : claimed) {
+            recordHire(custID, v, duration, hireRules);
+        }
+        publish();
+        return true;
+    }
+
+    /**
+     * Checks a customer's age and license against the rules for a vehicle type.
+     * Customers this manager did not issue an ID to are refused before any vehicle is claimed.
+     * @param customerRecord the customer
+     * @param vehicleType the type of vehicle ("car" or "van")
+     * @param hireRules the rules to apply
+     * @return the reason for rejection, or null if the customer is eligible
+     */
+    private String ineligibility(CustomerRecord customerRecord, String vehicleType, HireRules hireRules) {
+        // Hires are indexed by customer number, so only IDs issued here can hold vehicles
+        int n = HireHistory.customerNumber(customerRecord.getCustomerID());
+        if (n < 1 || n > customers.size()) {
+            return "Unknown customer: " + customerRecord.getCustomerID();
         }
 
         // Calculate customer age
-        Calendar currentCal = Calendar.getInstance();
-        int currentYear = currentCal.get(Calendar.YEAR);
-        Calendar birthCal = Calendar.getInstance();
-        birthCal.setTime(customerRecord.getDateOfBirth());
-        int age = currentYear - birthCal.get(Calendar.YEAR);
+        int age = currentYear() - customerRecord.getBirthYear();
 
         // Enforce age and license requirements
         if (vehicleType.equalsIgnoreCase("car")) {
-            if (age < 18) {
-                System.out.println("Underage for car hire.");
-                return false;
+            if (age < hireRules.getMinCarAge()) {
+                return "Underage for car hire.";
             }
         } else if (vehicleType.equalsIgnoreCase("van")) {
-            if (age < 23 || !customerRecord.hasCommercialLicense()) {
-                System.out.println("Ineligible for van hire.");
-                return false;
+            if (age < hireRules.getMinVanAge()
+                    || (hireRules.isVanLicenseRequired() && !customerRecord.hasCommercialLicense())) {
+                return "Ineligible for van hire.";
             }
         }
+        return null;
+    }
 
-        // Find an available vehicle (not hired, no inspection due, within service mileage)
-        Vehicle selectedVehicle = null;
-        for (Vehicle v : vehicles.values()) {
-            if (v.getVehicleType().equalsIgnoreCase(vehicleType) && !v.isHired()) {
-                if (v instanceof Van && ((Van) v).getInspection()) continue;
-                if (v.getCurrentMileage() >= v.getDistanceRequirement()) continue;
+    /**
+     * Returns the message given when no vehicle of a type is free, without building it for cars and vans.
+     * @param vehicleType the vehicle type
+     * @return the message
+     */
+    private static String noVehicleMessage(String vehicleType) {
+        if (vehicleType.equalsIgnoreCase("car")) return NO_CAR_MESSAGE;
+        if (vehicleType.equalsIgnoreCase("van")) return NO_VAN_MESSAGE;
+        return "No available vehicle: " + vehicleType;
+    }
+
+    /**
+     * A calendar year and the time it ends.
+     */
+    private static final class CalendarYear {
+        private final int value;
+        private final long endsAt;
+
+        /**
+         * Constructs a year.
+         * @param value the year
+         * @param endsAt the start of the next year, in milliseconds since the epoch
+         */
+        private CalendarYear(int value, long endsAt) {
+            this.value = value;
+            this.endsAt = endsAt;
+        }
+
+        /**
+         * Returns the year it is now, in the default time zone.
+         * @return the current CalendarYear
+         */
+        private static CalendarYear current() {
+            Calendar cal = Calendar.getInstance();
+            int value = cal.get(Calendar.YEAR);
+            cal.clear();
+            cal.set(value + 1, Calendar.JANUARY, 1);
+            return new CalendarYear(value, cal.getTimeInMillis());
+        }
+    }
 
-                selectedVehicle = v;
-                break;
+    /**
+     * Returns the current year, recomputing it only when a new year has begun.
+     * @return the current year
+     */
+    private static int currentYear() {
+        CalendarYear y = year;
+        if (System.currentTimeMillis() >= y.endsAt) {
+            y = CalendarYear.current();
+            year = y;
+        }
+        return y.value;
+    }
+
+    /**
+     * Checks whether a customer may hire one more vehicle of a type.
+     * @param customerRecord the customer requesting the hire
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @param hireRules the rules to check against
+     * @return the reason the hire is refused, or null if it is allowed
+     */
+    private String refusal(CustomerRecord customerRecord, String vehicleType, HireRules hireRules) {
+        // Check rental limit: max 3 vehicles per customer
+        Set<Vehicle> rentedSet = rentedBy(customerRecord.getCustomerID());
+        if (rentedSet != null && rentedSet.size() >= hireRules.getMaxVehiclesPerCustomer()) {
+            return hireRules.getCapMessage();
+        }
+        return ineligibility(customerRecord, vehicleType, hireRules);
+    }
+
+    /**
+     * Hires a vehicle now if one is free, or else joins the waitlist for the type.
+     * Waiting requests are served in arrival order: a returned, serviced, inspected or new vehicle
+     * is handed straight to the oldest one. The customer's eligibility is checked again at hand-off.
+     * The hire is recorded before the future completes, so its callbacks see the vehicle hired by the
+     * customer and may return it. They run while the manager's lock is held, so they must not block.
+     * @param customerRecord the customer requesting the hire
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @param duration the rental duration in days
+     * @param timeoutMillis how long to wait for a vehicle, in milliseconds
+     * @return a future completed with the hired vehicle; it fails with an IllegalStateException
+     *         if the hire is refused, or a TimeoutException if no vehicle is freed in time
+     * @throws IllegalArgumentException if timeoutMillis is not positive
+     */
+    public synchronized CompletableFuture<Vehicle> hireVehicleOrWait(CustomerRecord customerRecord,
+                                                                     String vehicleType, int duration,
+                                                                     long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Wait timeout must be positive");
+        }
+        HireRules hireRules = rules;
+        String reason = refusal(customerRecord, vehicleType, hireRules);
+        if (reason != null) {
+            return CompletableFuture.failedFuture(new IllegalStateException(reason));
+        }
+
+        // Only take a free vehicle if nobody is queued ahead
+        if (!waitlist.hasWaiters(vehicleType)) {
+            Vehicle v = selection.select(vehicleType);
+            if (v != null && v.tryHire()) {
+                recordHire(customerRecord.getCustomerID(), v, duration, hireRules);
+                publish();
+                return CompletableFuture.completedFuture(v);
             }
         }
+        try {
+            return waitlist.enqueue(vehicleType, customerRecord, duration, timeoutMillis);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-        if (selectedVehicle == null) {
-            System.out.println("No available vehicle: " + vehicleType);
-            return false;
+    /**
+     * Makes a freed vehicle hireable: it goes to the oldest waiting request, or back to the selection strategy.
+     * A vehicle awaiting inspection or service is released again once it is cleared.
+     * @param v the freed vehicle
+     */
+    private void release(Vehicle v) {
+        if (VehicleSelectionStrategy.isHireable(v) && !handOff(v)) {
+            selection.vehicleReleased(v);
         }
+    }
 
-        // Add to rented set and mark as hired
-        if (rentedSet == null) {
-            rentedSet = new HashSet<>();
-            vehiclesOnRent.put(custID, rentedSet);
+    /**
+     * Hires a free vehicle to the oldest waiting request of its type that is still allowed the hire.
+     * The vehicle is claimed before any request is taken from the waitlist. The hire is recorded before
+     * the request is completed; if the request was cancelled after it was taken, the hire is taken back
+     * and the vehicle goes to the next request.
+     * @param v the free vehicle
+     * @return true if the vehicle was handed off, false if it could not be claimed or nobody took it
+     */
+    private boolean handOff(Vehicle v) {
+        String type = AbstractVehicle.typeKey(v);
+        if (!waitlist.hasWaiters(type) || !v.tryHire()) return false;
+        HireWaitlist.Waiter w;
+        boolean takenBack = false;
+        while ((w = waitlist.next(type)) != null) {
+            HireRules hireRules = rules;
+            CustomerRecord c = w.getCustomer();
+            String reason = refusal(c, type, hireRules);
+            if (reason != null) {
+                w.refuse(reason);
+                continue;
+            }
+            // Recorded first, so the request's callbacks see the hire
+            recordHire(c.getCustomerID(), v, w.getDuration(), hireRules);
+            if (w.deliver(v)) return true;
+            undoHire(c.getCustomerID(), v);
+            takenBack = true;
+        }
+        // Nobody took it, so undo the claim
+        v.transition(VehicleState.HIRED, VehicleState.AVAILABLE);
+        if (takenBack) {
+            vehicles.update(v, null);
+            vehicleChanged(v, null);
         }
+        return false;
+    }
 
-        rentedSet.add(selectedVehicle);
-        selectedVehicle.setHired(true);
+    /**
+     * Records a claimed vehicle as hired by a customer and publishes the hire.
+     * @param custID the customer ID
+     * @param v the claimed vehicle
+     * @param duration the rental duration in days
+     * @param hireRules the rules the hire was approved under
+     */
+    private void recordHire(String custID, Vehicle v, int duration, HireRules hireRules) {
+        rentedSetOf(custID).add(v);
+        ((AbstractVehicle) v).setRenterID(custID);
+        telematics.hireStarted(v.getVehicleID());
+        analytics.hireStatusChanged(v, true);
+        histories.get(v.getVehicleID()).recordHire(HireHistory.customerNumber(custID), System.currentTimeMillis());
+        version++;
 
         // Van rental for 10+ days requires inspection on return
-        if (selectedVehicle instanceof Van && duration >= 10) {
-            ((Van) selectedVehicle).setInspection(true);
+        if (v instanceof Van && duration >= hireRules.getVanInspectionDays()) {
+            ((Van) v).setInspection(true);
+            events.publish(FleetEvent.Type.INSPECTION_REQUIRED, v, custID);
         }
+        vehicles.update(v, custID);
+        vehicleChanged(v, null);
+        events.publish(FleetEvent.Type.VEHICLE_HIRED, v, custID);
+    }
 
-        return true;
+    /**
+     * Takes back a hire recorded for a waiting request that was cancelled before the vehicle reached it.
+     * The hire stays in the vehicle's history as one returned at once with no mileage, and the vehicle
+     * stays claimed so it can be offered to the next request.
+     * @param custID the customer ID
+     * @param v the vehicle hired to them
+     */
+    private void undoHire(String custID, Vehicle v) {
+        // Clears any inspection the hire asked for, as the vehicle never left
+        ((AbstractVehicle) v).setInspectionDue(false);
+        ((AbstractVehicle) v).setRenterID(null);
+        telematics.hireEnded(v.getVehicleID());
+        analytics.hireStatusChanged(v, false);
+        HireHistory history = histories.get(v.getVehicleID());
+        history.recordReturn(System.currentTimeMillis(), 0);
+        logHire(v, history);
+        removeRented(custID, v);
+        vehicles.update(v, null);
+        version++;
+        vehicleChanged(v, custID);
+        events.publish(FleetEvent.Type.VEHICLE_RETURNED, v, custID);
+    }
+
+    /**
+     * Attempts a hire that a client may retry. If a request with the same ID was made recently,
+     * its outcome is returned and no vehicle is hired again.
+     * @param requestID the client's unique ID for this request, or null to skip the duplicate check
+     * @param customerRecord the customer requesting the hire
+     * @param vehicleType the type of vehicle ("car" or "van")
+     * @param duration the rental duration in days
+     * @return true if the hire was (or had already been) successful, false otherwise
+     * @throws IllegalArgumentException if the request ID was used by another customer
+     */
+    public synchronized boolean hireVehicle(String requestID, CustomerRecord customerRecord,
+                                            String vehicleType, int duration) {
+        if (requestID == null) {
+            return hireVehicle(customerRecord, vehicleType, duration);
+        }
+        RequestCache cache = requests;
+        Boolean earlier = cache.lookup(requestID, customerRecord.getCustomerID());
+        if (earlier != null) return earlier;
+        boolean result = hireVehicle(customerRecord, vehicleType, duration);
+        cache.record(requestID, customerRecord.getCustomerID(), result);
+        return result;
+    }
+
+    /**
+     * Attempts a hire for a rate-limited client. The client's and customer's limits are checked
+     * before the manager is locked, so rejected requests never wait behind other hires.
+     * @param clientID the calling client
+     * @param requestID the client's unique ID for this request, or null to skip the duplicate check
+     * @param customerRecord the customer requesting the hire
+     * @param vehicleType the type of vehicle ("car" or "van")
+     * @param duration the rental duration in days
+     * @return true if the hire was (or had already been) successful, false if it was rejected or not admitted
+     * @throws IllegalArgumentException if the request ID was used by another customer
+     */
+    public boolean hireVehicle(String clientID, String requestID, CustomerRecord customerRecord,
+                               String vehicleType, int duration) {
+        AdmissionController controller = admission;
+        if (controller != null && !controller.tryAdmit(clientID, customerRecord.getCustomerID())) {
+            return reject("Request not admitted: rate limit exceeded.");
+        }
+        return hireVehicle(requestID, customerRecord, vehicleType, duration);
+    }
+
+    /**
+     * Processes a return that a client may retry. If a request with the same ID was made recently,
+     * nothing is done, so a retry can not return a vehicle that has since been hired again.
+     * @param requestID the client's unique ID for this request, or null to skip the duplicate check
+     * @param vehicleID the ID of the vehicle being returned
+     * @param customerRecord the customer returning the vehicle
+     * @param mileage the additional mileage
+     * @throws IllegalArgumentException if the request ID was used by another customer
+     */
+    public synchronized void returnVehicle(String requestID, VehicleID vehicleID,
+                                           CustomerRecord customerRecord, int mileage) {
+        if (requestID == null) {
+            returnVehicle(vehicleID, customerRecord, mileage);
+            return;
+        }
+        RequestCache cache = requests;
+        if (cache.lookup(requestID, customerRecord.getCustomerID()) != null) return;
+        boolean result = returnVehicle(vehicleID, customerRecord.getCustomerID(), mileage);
+        cache.record(requestID, customerRecord.getCustomerID(), result);
     }
 
     /**
      * Processes the return of a vehicle, updating mileage and performing service if due.
+     * The return is rejected if the vehicle is not hired by the given customer.
      * @param vehicleID the ID of the vehicle being returned
      * @param customerRecord the customer returning the vehicle
      * @param mileage the additional mileage
      */
-    public void returnVehicle(VehicleID vehicleID, CustomerRecord customerRecord, int mileage) {
-        Vehicle v = vehicles.get(vehicleID);
-        if (v == null || !v.isHired()) return;
+    public synchronized void returnVehicle(VehicleID vehicleID, CustomerRecord customerRecord, int mileage) {
+        returnVehicle(vehicleID, customerRecord.getCustomerID(), mileage);
+    }
 
-        // Update hire status and mileage
-        v.setHired(false);
-        v.setCurrentMileage(v.getCurrentMileage() + mileage);
-        v.performServiceIfDue();
+    /**
+     * Processes the return of a vehicle by a customer, reporting whether it was accepted.
+     * @param vehicleID the ID of the vehicle being returned
+     * @param customerRecord the customer returning the vehicle
+     * @param mileage the additional mileage
+     * @return true if the vehicle was hired by the customer and has been returned, false otherwise
+     */
+    synchronized boolean returnHiredVehicle(VehicleID vehicleID, CustomerRecord customerRecord, int mileage) {
+        return returnVehicle(vehicleID, customerRecord.getCustomerID(), mileage);
+    }
 
-        // Remove from customer's rented set
-        String custID = customerRecord.getCustomerID();
-        Set<Vehicle> rentedSet = vehiclesOnRent.get(custID);
-        if (rentedSet != null) {
-            rentedSet.remove(v);
-            if (rentedSet.isEmpty()) {
-                vehiclesOnRent.remove(custID);
+    /**
+     * Processes the return of a vehicle by whoever hired it, updating mileage and performing service if due.
+     * @param vehicleID the ID of the vehicle being returned
+     * @param mileage the additional mileage
+     * @return true if the vehicle was hired and has been returned, false otherwise
+     */
+    public synchronized boolean returnVehicle(VehicleID vehicleID, int mileage) {
+        String custID = renterOf(vehicleID);
+        return custID != null && returnVehicle(vehicleID, custID, mileage);
+    }
+
+    /**
+     * Returns the customer currently hiring a vehicle. The renter is kept on the vehicle, and its
+     * record is read after the manager's lock is released.
+     * @param vehicleID the vehicle ID
+     * @return the renter's CustomerRecord, or null if the vehicle is not hired
+     */
+    public CustomerRecord getCurrentRenter(VehicleID vehicleID) {
+        String custID;
+        synchronized (this) {
+            custID = renterOf(vehicleID);
+        }
+        return custID == null ? null : customers.find(custID);
+    }
+
+    /**
+     * Returns the ID of the customer currently hiring a vehicle.
+     * @param vehicleID the vehicle ID
+     * @return the renter's customer ID, or null if the vehicle is not hired
+     */
+    private String renterOf(VehicleID vehicleID) {
+        Vehicle v = vehicles.find(vehicleID);
+        return v == null ? null : renterOf(v);
+    }
+
+    /**
+     * Returns the ID of the customer hiring a vehicle.
+     * @param v the vehicle
+     * @return the customer ID, or null if the vehicle is not hired
+     */
+    private static String renterOf(Vehicle v) {
+        return v instanceof AbstractVehicle ? ((AbstractVehicle) v).getRenterID() : null;
+    }
+
+    /**
+     * Returns the vehicles a customer holds.
+     * @param custID the customer ID
+     * @return the customer's rented set, or null if they hold no vehicle
+     */
+    private RentedVehicles rentedBy(String custID) {
+        int n = HireHistory.customerNumber(custID);
+        return n > 0 && n <= vehiclesOnRent.length ? vehiclesOnRent[n - 1] : null;
+    }
+
+    /**
+     * Returns the vehicles a customer holds, taking a set from the free pool if they hold none.
+     * @param custID the customer ID
+     * @return the customer's rented set
+     */
+    private RentedVehicles rentedSetOf(String custID) {
+        int n = HireHistory.customerNumber(custID);
+        if (n > vehiclesOnRent.length) {
+            vehiclesOnRent = Arrays.copyOf(vehiclesOnRent, Math.max(n, vehiclesOnRent.length * 2));
+        }
+        RentedVehicles rentedSet = vehiclesOnRent[n - 1];
+        if (rentedSet == null) {
+            rentedSet = freeSets.isEmpty() ? new RentedVehicles() : freeSets.pop();
+            vehiclesOnRent[n - 1] = rentedSet;
+        }
+        return rentedSet;
+    }
+
+    /**
+     * Removes a vehicle from a customer's rented set; an emptied set goes back to the free pool.
+     * @param custID the customer ID
+     * @param v the vehicle they no longer hold
+     */
+    private void removeRented(String custID, Vehicle v) {
+        RentedVehicles rentedSet = rentedBy(custID);
+        if (rentedSet != null && rentedSet.remove(v) && rentedSet.isEmpty()) {
+            vehiclesOnRent[HireHistory.customerNumber(custID) - 1] = null;
+            if (freeSets.size() < FREE_SETS) {
+                freeSets.push(rentedSet);
             }
         }
     }
 
+    /**
+     * Returns a vehicle if it is hired by the given customer.
+     * @param vehicleID the ID of the vehicle being returned
+     * @param custID the ID of the customer returning it
+     * @param mileage the additional mileage
+     * @return true if the vehicle has been returned, false otherwise
+     */
+    private boolean returnVehicle(VehicleID vehicleID, String custID, int mileage) {
+        Vehicle v = vehicles.find(vehicleID);
+        if (v == null) return false;
+        if (!custID.equals(renterOf(v))) {
+            return reject("Vehicle " + vehicleID + " is not hired by " + custID + ".");
+        }
+
+        // Release the vehicle and add its mileage in one step, less what telematics already reported
+        int oldMileage = v.getCurrentMileage();
+        int reported = telematics.hireEnded(vehicleID);
+        if (!v.tryReturn(Math.max(0, mileage - reported))) return false;
+        ((AbstractVehicle) v).setRenterID(null);
+        // Published before any service, so the event carries the mileage the vehicle came back with
+        events.publish(FleetEvent.Type.VEHICLE_RETURNED, v, custID);
+        boolean serviced = false;
+        WorkshopScheduler shop = workshop;
+        if (shop == null) {
+            serviced = v.performServiceIfDue();
+        } else if (v.getCurrentMileage() >= v.getDistanceRequirement()) {
+            // Out of the pool until the workshop has serviced it
+            v.transition(v.getState(), VehicleState.IN_SERVICE);
+            analytics.serviceStatusChanged(v, true);
+            shop.enqueue(v);
+        }
+        vehicles.update(v, null);
+        analytics.hireStatusChanged(v, false);
+        analytics.mileageChanged(v, oldMileage);
+        HireHistory history = histories.get(vehicleID);
+        history.recordReturn(System.currentTimeMillis(), mileage);
+        logHire(v, history);
+        if (serviced) {
+            events.publish(FleetEvent.Type.SERVICE_PERFORMED, v, null);
+        }
+
+        removeRented(custID, v);
+        version++;
+        vehicleChanged(v, custID);
+        release(v);
+        publish();
+        return true;
+    }
+
+    /**
+     * Returns the workshop scheduler.
+     * @return the current WorkshopScheduler, or null if vehicles are serviced instantly on return
+     */
+    public WorkshopScheduler getWorkshop() {
+        return workshop;
+    }
+
+    /**
+     * Sets the workshop that services vehicles returned past their service distance.
+     * Without a workshop, such vehicles are serviced instantly on return.
+     * @param scheduler the workshop scheduler
+     * @throws IllegalArgumentException if scheduler is null
+     * @throws IllegalStateException if a workshop is already set
+     */
+    public synchronized void setWorkshop(WorkshopScheduler scheduler) {
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Workshop scheduler can not be null");
+        }
+        if (workshop != null) {
+            throw new IllegalStateException("A workshop is already set");
+        }
+        this.workshop = scheduler;
+    }
+
+    /**
+     * Books the most urgent vehicles waiting for service into today's workshop bays.
+     * @return the booked vehicles, most urgent first
+     * @throws IllegalStateException if no workshop is set
+     */
+    public synchronized List<Vehicle> planWorkshopDay() {
+        WorkshopScheduler shop = workshop;
+        if (shop == null) {
+            throw new IllegalStateException("No workshop is set");
+        }
+        return shop.planDay(analytics.getUtilization("car"), analytics.getUtilization("van"));
+    }
+
+    /**
+     * Finishes the service of a vehicle booked into the workshop, making it available again.
+     * A van serviced this way is also inspected.
+     * @param vehicleID the serviced vehicle
+     * @return true if the vehicle was booked and is now available, false otherwise
+     */
+    public synchronized boolean completeService(VehicleID vehicleID) {
+        Vehicle v = vehicles.find(vehicleID);
+        WorkshopScheduler shop = workshop;
+        if (v == null || shop == null || !shop.complete(v)) return false;
+        int oldMileage = v.getCurrentMileage();
+        v.setCurrentMileage(0);
+        v.transition(VehicleState.IN_SERVICE, VehicleState.AVAILABLE);
+        vehicles.update(v, null);
+        analytics.serviceStatusChanged(v, false);
+        analytics.mileageChanged(v, oldMileage);
+        version++;
+        vehicleChanged(v, null);
+        events.publish(FleetEvent.Type.SERVICE_PERFORMED, v, null);
+        release(v);
+        publish();
+        return true;
+    }
+
+    /**
+     * Records a completed inspection of a returned van, making it available again.
+     * @param vehicleID the inspected vehicle
+     * @return true if the vehicle was awaiting inspection and is now available, false otherwise
+     */
+    public synchronized boolean completeInspection(VehicleID vehicleID) {
+        Vehicle v = vehicles.find(vehicleID);
+        if (v == null || !v.transition(VehicleState.AWAITING_INSPECTION, VehicleState.AVAILABLE)) return false;
+        vehicles.update(v, null);
+        version++;
+        vehicleChanged(v, null);
+        events.publish(FleetEvent.Type.INSPECTION_CLEARED, v, null);
+        release(v);
+        publish();
+        return true;
+    }
+
+    /**
+     * Adds reported trip miles to a hired vehicle and raises a SERVICE_DUE event if the vehicle
+     * has just reached its service distance.
+     * @param vehicleID the vehicle
+     * @param addedMiles the miles driven since the last applied reading
+     * @return -1 if the vehicle is not hired, 1 if it has just become due for service, 0 otherwise
+     */
+    synchronized int applyTripMileage(VehicleID vehicleID, int addedMiles) {
+        Vehicle v = vehicles.find(vehicleID);
+        if (v == null || !v.isHired()) return -1;
+        int oldMileage = v.getCurrentMileage();
+        int newMileage = (int) Math.min(Integer.MAX_VALUE, (long) oldMileage + addedMiles);
+        v.setCurrentMileage(newMileage);
+        vehicles.update(v, renterOf(vehicleID));
+        analytics.mileageChanged(v, oldMileage);
+        version++;
+        vehicleChanged(v, null);
+        publish();
+        if (oldMileage < v.getDistanceRequirement() && newMileage >= v.getDistanceRequirement()) {
+            events.publish(FleetEvent.Type.SERVICE_DUE, v, renterOf(vehicleID));
+            return 1;
+        }
+        return 0;
+    }
+
     /**
      * Returns the collection of vehicles currently hired by the given customer.
+     * The result is a copy, so it stays valid while other threads hire and return.
      * @param customerRecord the customer
      * @return a collection of hired vehicles
      */
-    public Collection<Vehicle> getVechilesByCustomer(CustomerRecord customerRecord) {
+    public synchronized Collection<Vehicle> getVechilesByCustomer(CustomerRecord customerRecord) {
         String custID = customerRecord.getCustomerID();
-        Set<Vehicle> list = vehiclesOnRent.get(custID);
+        Set<Vehicle> list = rentedBy(custID);
         if (list == null) {
             return Collections.emptyList();
         }
-        return Collections.unmodifiableCollection(list);
+        return Set.copyOf(list);
+    }
+
+    /**
+     * Returns the most recent hires of a vehicle, oldest first.
+     * @param vehicleID the vehicle ID
+     * @return a copy of the vehicle's hire history, or null if there is no such vehicle
+     */
+    public synchronized HireHistory getHireHistory(VehicleID vehicleID) {
+        HireHistory history = histories.get(vehicleID);
+        return history == null ? null : history.copy();
+    }
+
+    /**
+     * Starts writing every completed hire to a columnar hire log as it is returned.
+     * Hires reach the file a block at a time, in order of return time; the last, partly filled
+     * block is written by stopHireLog. A HireLogReader can scan the file while logging goes on.
+     * @param file the file to write; an existing file is replaced
+     * @param blockSize the number of hires per block
+     * @throws IOException if the file can not be created
+     * @throws IllegalArgumentException if blockSize is not positive
+     * @throws IllegalStateException if hires are already being logged
+     */
+    public synchronized void startHireLog(Path file, int blockSize) throws IOException {
+        if (hireLog != null) {
+            throw new IllegalStateException("Hires are already being logged");
+        }
+        hireLog = new HireLogWriter(file, blockSize);
+        hireLogFailure = null;
+    }
+
+    /**
+     * Stops logging hires, writing the hires still buffered and closing the file.
+     * @return the number of hires written
+     * @throws IOException if the log could not be written or closed; logging stopped at the first failure
+     * @throws IllegalStateException if hires are not being logged and no failure is pending
+     */
+    public synchronized long stopHireLog() throws IOException {
+        IOException failure = hireLogFailure;
+        hireLogFailure = null;
+        if (failure != null) throw failure;
+        if (hireLog == null) {
+            throw new IllegalStateException("Hires are not being logged");
+        }
+        HireLogWriter writer = hireLog;
+        hireLog = null;
+        writer.close();
+        return writer.getWrittenCount();
+    }
+
+    /**
+     * Appends a completed hire to the hire log, if logging is on.
+     * A write failure stops logging and is reported by stopHireLog, as the return itself succeeded.
+     * @param v the returned vehicle
+     * @param history its hire history, whose latest hire has just been returned
+     */
+    private void logHire(Vehicle v, HireHistory history) {
+        HireLogWriter writer = hireLog;
+        if (writer == null) return;
+        int last = history.size() - 1;
+        try {
+            writer.append(v.getVehicleType(), history.getCustomerNumber(last), history.getHireTime(last),
+                    history.getReturnTime(last), history.getMileage(last));
+        } catch (IOException e) {
+            hireLog = null;
+            hireLogFailure = e;
+            try {
+                writer.close();
+            } catch (IOException closing) {
+                e.addSuppressed(closing);
+            }
+        }
+    }
+
+    /**
+     * Writes the completed hires still in the vehicles' histories to a columnar hire log.
+     * The histories are ring buffers, so only each vehicle's last HireHistory.DEFAULT_CAPACITY hires
+     * are exported and older hires are lost; use startHireLog to record every hire.
+     * Hires are written in order of return time, so HireLogReader can skip blocks outside a queried period.
+     * @param file the file to write; an existing file is replaced
+     * @param blockSize the number of hires per block
+     * @return the number of hires written
+     * @throws IOException if the file can not be written
+     * @throws IllegalArgumentException if blockSize is not positive
+     */
+    public synchronized long exportHireHistory(Path file, int blockSize) throws IOException {
+        List<Vehicle> fleet = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (Vehicle v : vehicles.findAll()) {
+            HireHistory history = histories.get(v.getVehicleID());
+            for (int i = 0; i < history.size(); i++) {
+                if (history.getReturnTime(i) >= 0) {
+                    fleet.add(v);
+                    positions.add(i);
+                }
+            }
+        }
+        Integer[] order = new Integer[fleet.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong(
+                i -> histories.get(fleet.get(i).getVehicleID()).getReturnTime(positions.get(i))));
+
+        try (HireLogWriter writer = new HireLogWriter(file, blockSize)) {
+            for (int i : order) {
+                Vehicle v = fleet.get(i);
+                HireHistory history = histories.get(v.getVehicleID());
+                int p = positions.get(i);
+                writer.append(v.getVehicleType(), history.getCustomerNumber(p), history.getHireTime(p),
+                        history.getReturnTime(p), history.getMileage(p));
+            }
+        }
+        return order.length;
     }
 
     /**
-     * Returns all vehicles.
+     * Returns all vehicles, as of the latest snapshot.
      * @return a collection of all vehicles
      */
     public Collection<Vehicle> getAllVehicles() {
-        return Collections.unmodifiableCollection(vehicles.values());
+        return snapshot().getAllVehicles();
     }
 
     /**
-     * Returns all customer records.
+     * Returns all customer records, as of the latest snapshot.
      * @return a collection of all customers
      */
     public Collection<CustomerRecord> getCustomers() {
-        return Collections.unmodifiableCollection(customers.values());
+        return snapshot().getCustomers();
     }
 
     /**
-     * Returns the hired vehicles by customer.
+     * Returns the hired vehicles by customer, as of the latest snapshot.
      * @return a map of customer IDs to their hired vehicles
      */
     public Map<String, Set<Vehicle>> getHiredVehicles() {
-        return Collections.unmodifiableMap(vehiclesOnRent);
+        return snapshot().getHiredVehicles();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+import java.util.Collection;
+
+/**
+ * Storage for the vehicles of a VehicleManager.
+ * The manager keeps working with the Vehicle objects it adds, and calls update after changing one
+ * so persistent repositories can record the new state and renter.
+ * Vehicles a persistent repository already holds are taken over by the manager when it is constructed.
+ * Repositories are only called while the manager's lock is held.
+ * Calls to add and update come after the manager has changed its own state, so they must not fail:
+ * a repository that writes behind keeps changes it could not write and retries them later.
+ */
+public interface VehicleRepository {
+
+    /**
+     * Stores a new vehicle.
+     * @param v the vehicle to store
+     */
+    void add(Vehicle v);
+
+    /**
+     * Finds a vehicle by ID.
+     * @param id the vehicle ID
+     * @return the vehicle, or null if there is none
+     */
+    Vehicle find(VehicleID id);
+
+    /**
+     * Records a change to a stored vehicle's state, mileage or renter.
+     * @param v the changed vehicle
+     * @param renterID the ID of the customer hiring it, or null if it is not hired
+     */
+    void update(Vehicle v, String renterID);
+
+    /**
+     * Returns the customer recorded as hiring a stored vehicle.
+     * @param id the vehicle ID
+     * @return the renter's customer ID, or null if none is recorded
+     */
+    default String findRenter(VehicleID id) {
+        return null;
+    }
+
+    /**
+     * Returns all stored vehicles, in the order they were added.
+     * @return an unmodifiable collection of vehicles
+     */
+    Collection<Vehicle> findAll();
+
+    /**
+     * Returns the number of stored vehicles.
+     * @return the vehicle count
+     */
+    int size();
+}
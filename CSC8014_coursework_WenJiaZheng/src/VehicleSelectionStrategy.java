@@ -0,0 +1,76 @@
+import java.util.Comparator;
+
+/**
+ * Strategy for choosing which free vehicle a hire receives.
+ * The manager tells the strategy about every new vehicle and every returned one,
+ * and asks it for a vehicle when a hire is approved.
+ * Strategies are only called while the manager's lock is held.
+ */
+public interface VehicleSelectionStrategy {
+
+    /**
+     * Registers a new vehicle in the fleet.
+     * @param v the new vehicle
+     */
+    void vehicleAdded(Vehicle v);
+
+    /**
+     * Chooses a hireable vehicle of the given type. The vehicle is not offered again until it is released.
+     * @param vehicleType the vehicle type ("car" or "van")
+     * @return the chosen vehicle, or null if none is hireable
+     */
+    Vehicle select(String vehicleType);
+
+    /**
+     * Makes a returned vehicle available for selection again.
+     * The manager only releases vehicles that are hireable.
+     * @param v the returned vehicle
+     */
+    void vehicleReleased(Vehicle v);
+
+    /**
+     * Indicates whether a vehicle can be hired now: AVAILABLE and not due for service.
+     * @param v the vehicle to check
+     * @return true if the vehicle can be hired, false otherwise
+     */
+    static boolean isHireable(Vehicle v) {
+        // Hired, awaiting inspection, in service and retired vehicles are all not AVAILABLE
+        if (v.getState() != VehicleState.AVAILABLE) return false;
+        return v.getCurrentMileage() < v.getDistanceRequirement();
+    }
+
+    /**
+     * Returns a strategy that picks the first hireable vehicle in the order vehicles were added.
+     * @return the first-fit strategy
+     */
+    static VehicleSelectionStrategy firstFit() {
+        return new FirstFitStrategy();
+    }
+
+    /**
+     * Returns a strategy that picks the hireable vehicle with the lowest mileage since service,
+     * using a heap per vehicle type.
+     * @return the least-mileage strategy
+     */
+    static VehicleSelectionStrategy leastMileage() {
+        return new HeapSelectionStrategy(Comparator.comparingInt(Vehicle::getCurrentMileage));
+    }
+
+    /**
+     * Returns a strategy that picks the hireable vehicle with the most miles left before its next service,
+     * using a heap per vehicle type.
+     * @return the most-miles-to-service strategy
+     */
+    static VehicleSelectionStrategy mostMilesToService() {
+        return new HeapSelectionStrategy(
+                Comparator.comparingInt((Vehicle v) -> v.getDistanceRequirement() - v.getCurrentMileage()).reversed());
+    }
+
+    /**
+     * Returns a strategy that rotates through the vehicles of each type.
+     * @return the round-robin strategy
+     */
+    static VehicleSelectionStrategy roundRobin() {
+        return new RoundRobinStrategy();
+    }
+}
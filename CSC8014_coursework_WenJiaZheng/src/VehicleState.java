@@ -0,0 +1,48 @@
+/**
+ * The lifecycle states of a vehicle.
+ * A vehicle starts AVAILABLE, and only the transitions listed by canBecome are allowed.
+ */
+public enum VehicleState {
+    /** Free to hire. */
+    AVAILABLE,
+    /** Out with a customer. */
+    HIRED,
+    /** Returned, but must be inspected before it can be hired again. */
+    AWAITING_INSPECTION,
+    /** In the workshop. */
+    IN_SERVICE,
+    /** Permanently withdrawn from the fleet. */
+    RETIRED;
+
+    // values() copies the array on every call
+    private static final VehicleState[] STATES = values();
+
+    /**
+     * Returns the state with the given ordinal.
+     * @param ordinal the ordinal
+     * @return the state
+     */
+    static VehicleState of(int ordinal) {
+        return STATES[ordinal];
+    }
+
+    /**
+     * Indicates whether a vehicle in this state may move to the given state.
+     * @param next the target state
+     * @return true if the transition is allowed, false otherwise
+     */
+    public boolean canBecome(VehicleState next) {
+        switch (this) {
+            case AVAILABLE:
+                return next == HIRED || next == IN_SERVICE || next == RETIRED;
+            case HIRED:
+                return next == AVAILABLE || next == AWAITING_INSPECTION;
+            case AWAITING_INSPECTION:
+                return next == AVAILABLE || next == IN_SERVICE || next == RETIRED;
+            case IN_SERVICE:
+                return next == AVAILABLE || next == RETIRED;
+            default:
+                return false;
+        }
+    }
+}
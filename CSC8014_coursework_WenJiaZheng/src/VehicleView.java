@@ -0,0 +1,200 @@
+/**
+ * This class is an immutable copy of a vehicle's state, as published in a FleetSnapshot.
+ * It also records who was hiring the vehicle, so a snapshot's vehicles and hires always agree.
+ * Like vehicles, views are equal when they have the same vehicle ID, so a live vehicle is found
+ * among a snapshot's views.
+ */
+public final class VehicleView implements Vehicle {
+    private final VehicleID id;
+    private final String vehicleType;
+    private final int distanceRequirement;
+    private final VehicleState state;
+    private final int mileage;
+    private final boolean inspectionDue;
+    private final String renterID;
+
+    /**
+     * Copies the current state of a vehicle.
+     * @param v the live vehicle
+     * @param renterID the ID of the customer hiring it, or null if it is not hired
+     */
+    VehicleView(Vehicle v, String renterID) {
+        this.id = v.getVehicleID();
+        this.vehicleType = v.getVehicleType();
+        this.distanceRequirement = v.getDistanceRequirement();
+        this.state = v.getState();
+        this.mileage = v.getCurrentMileage();
+        this.inspectionDue = v instanceof AbstractVehicle ? ((AbstractVehicle) v).isInspectionDue()
+                : state == VehicleState.AWAITING_INSPECTION;
+        this.renterID = renterID;
+    }
+
+    /**
+     * Returns the vehicle ID.
+     * @return the VehicleID
+     */
+    @Override
+    public VehicleID getVehicleID() {
+        return id;
+    }
+
+    /**
+     * Returns the vehicle type.
+     * @return "Car" or "Van"
+     */
+    @Override
+    public String getVehicleType() {
+        return vehicleType;
+    }
+
+    /**
+     * Indicates whether the vehicle was hired.
+     * @return true if hired, false otherwise
+     */
+    @Override
+    public boolean isHired() {
+        return state == VehicleState.HIRED;
+    }
+
+    /**
+     * Not supported: a view can not be changed.
+     * @param hired ignored
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void setHired(boolean hired) {
+        throw unchangeable();
+    }
+
+    /**
+     * Returns the distance between services.
+     * @return the service distance requirement
+     */
+    @Override
+    public int getDistanceRequirement() {
+        return distanceRequirement;
+    }
+
+    /**
+     * Returns the mileage since the last service.
+     * @return the mileage
+     */
+    @Override
+    public int getCurrentMileage() {
+        return mileage;
+    }
+
+    /**
+     * Not supported: a view can not be changed.
+     * @param mileage ignored
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void setCurrentMileage(int mileage) {
+        throw unchangeable();
+    }
+
+    /**
+     * Not supported: a view can not be changed.
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean performServiceIfDue() {
+        throw unchangeable();
+    }
+
+    /**
+     * Returns the lifecycle state.
+     * @return the VehicleState
+     */
+    @Override
+    public VehicleState getState() {
+        return state;
+    }
+
+    /**
+     * Not supported: a view can not be changed.
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean tryHire() {
+        throw unchangeable();
+    }
+
+    /**
+     * Not supported: a view can not be changed.
+     * @param addedMileage ignored
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean tryReturn(int addedMileage) {
+        throw unchangeable();
+    }
+
+    /**
+     * Not supported: a view can not be changed.
+     * @param expected ignored
+     * @param next ignored
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public boolean transition(VehicleState expected, VehicleState next) {
+        throw unchangeable();
+    }
+
+    /**
+     * Indicates whether an inspection was due on return or awaited.
+     * @return true if an inspection was due, false otherwise
+     */
+    public boolean isInspectionDue() {
+        return inspectionDue;
+    }
+
+    /**
+     * Returns the ID of the customer hiring the vehicle.
+     * @return the renter's customer ID, or null if the vehicle was not hired
+     */
+    public String getRenterID() {
+        return renterID;
+    }
+
+    /**
+     * Builds the exception thrown by every mutator.
+     * @return the exception
+     */
+    private static UnsupportedOperationException unchangeable() {
+        return new UnsupportedOperationException("A snapshot vehicle can not be changed");
+    }
+
+    /**
+     * Compares this view with another object.
+     * @param obj the object to compare with
+     * @return true if obj is a vehicle or view with the same vehicle ID, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Vehicle && id.equals(((Vehicle) obj).getVehicleID());
+    }
+
+    /**
+     * Returns the hash code for this view, the same as the live vehicle's.
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return 17 * 37 + id.hashCode();
+    }
+
+    /**
+     * Returns the vehicle's type and ID as a string.
+     * @return the type and ID
+     */
+    @Override
+    public String toString() {
+        return vehicleType + id;
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class plans workshop visits for vehicles that are due for service.
+ * Due vehicles wait in a queue, out of the hireable pool, until they are booked into one of a fixed
+ * number of bays per day. Each day the queue is ranked by how far each vehicle is past its service
+ * distance, weighted by current demand for its type, and the top vehicles are booked.
+ * Ranking keeps only the best candidates in a small heap of array indices, so a plan over n queued
+ * vehicles takes O(n log bays) time and allocates only the day's bookings.
+ * It is only used while the manager's lock is held.
+ */
+public final class WorkshopScheduler {
+    private final int baysPerDay;
+    private final List<Vehicle> queue = new ArrayList<>();
+    private final Set<Vehicle> booked = new HashSet<>();
+    private double[] scores = new double[64];
+    private final int[] heap;
+
+    /**
+     * Constructs a scheduler.
+     * @param baysPerDay the number of vehicles the workshop can service per day
+     * @throws IllegalArgumentException if baysPerDay is not positive
+     */
+    public WorkshopScheduler(int baysPerDay) {
+        if (baysPerDay <= 0) {
+            throw new IllegalArgumentException("Workshop must have at least one bay");
+        }
+        this.baysPerDay = baysPerDay;
+        this.heap = new int[baysPerDay];
+    }
+
+    /**
+     * Queues a vehicle for service.
+     * @param v the vehicle, already moved to IN_SERVICE
+     */
+    void enqueue(Vehicle v) {
+        queue.add(v);
+    }
+
+    /**
+     * Computes a vehicle's priority: the share of its service distance it is overdue by,
+     * scaled up by the demand for its type.
+     * @param v the vehicle
+     * @param carDemand the share of cars on hire, between 0 and 1
+     * @param vanDemand the share of vans on hire, between 0 and 1
+     * @return the priority; higher is more urgent
+     */
+    private static double score(Vehicle v, double carDemand, double vanDemand) {
+        int required = v.getDistanceRequirement();
+        double overdue = (double) (v.getCurrentMileage() - required) / required;
+        double demand = v instanceof Van ? vanDemand : carDemand;
+        return (1.0 + Math.max(0.0, overdue)) * (1.0 + demand);
+    }
+
+    /**
+     * Books the most urgent queued vehicles into today's bays and removes them from the queue.
+     * @param carDemand the share of cars on hire, between 0 and 1
+     * @param vanDemand the share of vans on hire, between 0 and 1
+     * @return the booked vehicles, most urgent first
+     */
+    List<Vehicle> planDay(double carDemand, double vanDemand) {
+        int n = queue.size();
+        if (n == 0) return Collections.emptyList();
+        if (scores.length < n) scores = new double[Math.max(n, scores.length * 2)];
+        for (int i = 0; i < n; i++) {
+            scores[i] = score(queue.get(i), carDemand, vanDemand);
+        }
+
+        // Keep the best candidates in a min-heap whose root is the weakest booking so far
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (size < baysPerDay) {
+                heap[size] = i;
+                siftUp(size++);
+            } else if (scores[i] > scores[heap[0]]) {
+                heap[0] = i;
+                siftDown(0, size);
+            }
+        }
+
+        // Pop weakest first, filling the booking list from the back
+        Vehicle[] today = new Vehicle[size];
+        int[] chosen = new int[size];
+        for (int k = size - 1; k >= 0; k--) {
+            chosen[k] = heap[0];
+            today[k] = queue.get(heap[0]);
+            heap[0] = heap[--size];
+            siftDown(0, size);
+        }
+
+        // Remove the booked vehicles from the queue in one pass
+        Arrays.sort(chosen);
+        int write = 0;
+        for (int read = 0, c = 0; read < n; read++) {
+            if (c < chosen.length && chosen[c] == read) {
+                c++;
+            } else {
+                queue.set(write++, queue.get(read));
+            }
+        }
+        queue.subList(write, n).clear();
+        Collections.addAll(booked, today);
+        return Collections.unmodifiableList(Arrays.asList(today));
+    }
+
+    /**
+     * Marks a booked vehicle's service as done.
+     * @param v the vehicle
+     * @return true if the vehicle was booked, false otherwise
+     */
+    boolean complete(Vehicle v) {
+        return booked.remove(v);
+    }
+
+    /**
+     * Moves a heap entry up until its parent scores no higher.
+     * @param i the heap position
+     */
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (scores[heap[parent]] <= scores[heap[i]]) return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Moves a heap entry down until its children score no lower.
+     * @param i the heap position
+     * @param size the number of heap entries
+     */
+    private void siftDown(int i, int size) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && scores[heap[left]] < scores[heap[smallest]]) smallest = left;
+            if (right < size && scores[heap[right]] < scores[heap[smallest]]) smallest = right;
+            if (smallest == i) return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    /**
+     * Swaps two heap entries.
+     * @param a the first position
+     * @param b the second position
+     */
+    private void swap(int a, int b) {
+        int t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+    }
+
+    /**
+     * Returns the number of bays available per day.
+     * @return the bay count
+     */
+    public int getBaysPerDay() {
+        return baysPerDay;
+    }
+
+    /**
+     * Returns the number of vehicles waiting for a bay.
+     * @return the queue length
+     */
+    public int getQueueLength() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of vehicles booked into a bay whose service is not done yet.
+     * @return the booked count
+     */
+    public int getBookedCount() {
+        return booked.size();
+    }
+}